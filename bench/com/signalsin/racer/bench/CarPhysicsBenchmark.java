@@ -0,0 +1,226 @@
+package com.signalsin.racer.bench;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.World;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+import com.signalsin.racer.car.BoxProp;
+import com.signalsin.racer.car.Car;
+import com.signalsin.racer.car.LightCar;
+import com.signalsin.racer.car.Wheel;
+
+/**
+ * Headless benchmarks for the car physics hot paths. Runs without any GL
+ * context, straight against a Box2D World, so it can be started from the IDE
+ * or a CI box. Needs gdx-natives.jar (or the unpacked natives) on the classpath
+ * next to gdx.jar.
+ *
+ * For every workload and car count it prints ticks per second, nanoseconds per
+ * car per tick and bytes allocated per tick, the same numbers a JMH run with
+ * the GC profiler would give us.
+ *
+ * Usage: CarPhysicsBenchmark [warmupSeconds] [measureSeconds]
+ */
+public class CarPhysicsBenchmark {
+
+	private static final int[] CAR_COUNTS = {1, 10, 100, 1000};
+	private static final float STEP = 1 / 60f;
+	private static final int VELOCITY_ITERATIONS = 3;
+	private static final int POSITION_ITERATIONS = 3;
+	
+	//ticks run between clock checks, keeps timer overhead out of the numbers
+	private static final int BATCH = 16;
+	
+	private interface Workload {
+		String name();
+		void tick(Arena arena);
+	}
+	
+	private static final Workload CAR_UPDATE = new Workload() {
+		public String name() { return "Car.update"; }
+		public void tick(Arena arena) {
+			for (int i = 0; i < arena.cars.size(); i++)
+				arena.cars.get(i).update(STEP);
+		}
+	};
+	
+	private static final Workload KILL_SIDEWAYS = new Workload() {
+		public String name() { return "Wheel.killSidewaysVelocity"; }
+		public void tick(Arena arena) {
+			for (int i = 0; i < arena.cars.size(); i++) {
+				List<Wheel> wheels = arena.cars.get(i).wheels;
+				for (int j = 0; j < wheels.size(); j++)
+					wheels.get(j).killSidewaysVelocity();
+			}
+		}
+	};
+	
+	private static final Workload WORLD_STEP = new Workload() {
+		public String name() { return "World.step"; }
+		public void tick(Arena arena) {
+			arena.world.step(STEP, VELOCITY_ITERATIONS, POSITION_ITERATIONS);
+		}
+	};
+	
+	private static final Workload FULL_TICK = new Workload() {
+		public String name() { return "Car.update+World.step"; }
+		public void tick(Arena arena) {
+			for (int i = 0; i < arena.cars.size(); i++)
+				arena.cars.get(i).update(STEP);
+			arena.world.step(STEP, VELOCITY_ITERATIONS, POSITION_ITERATIONS);
+		}
+	};
+	
+	//same tick with single body cars, to compare against FULL_TICK
+	private static final Workload LIGHT_FULL_TICK = new Workload() {
+		public String name() { return "LightCar.update+World.step"; }
+		public void tick(Arena arena) {
+			for (int i = 0; i < arena.lightCars.size(); i++)
+				arena.lightCars.get(i).update(STEP);
+			arena.world.step(STEP, VELOCITY_ITERATIONS, POSITION_ITERATIONS);
+		}
+	};
+	
+	private static final Workload[] WORKLOADS = {CAR_UPDATE, KILL_SIDEWAYS, WORLD_STEP, FULL_TICK, LIGHT_FULL_TICK};
+	
+	public static void main(String[] args) {
+		float warmupSeconds = args.length > 0 ? Float.parseFloat(args[0]) : 2;
+		float measureSeconds = args.length > 1 ? Float.parseFloat(args[1]) : 5;
+		
+		GdxNativesLoader.load();
+		
+		System.out.println(String.format("%-28s %6s %14s %16s %14s",
+				"workload", "cars", "ticks/s", "ns/car-tick", "bytes/tick"));
+		for (Workload workload : WORKLOADS) {
+			for (int cars : CAR_COUNTS) {
+				Result result = run(workload, cars, warmupSeconds, measureSeconds);
+				System.out.println(String.format("%-28s %6d %14.1f %16.1f %14s",
+						workload.name(), cars, result.ticksPerSecond(), result.nanosPerCarTick(),
+						result.bytesPerTick() < 0 ? "n/a" : String.format("%.1f", result.bytesPerTick())));
+			}
+		}
+	}
+	
+	private static Result run(Workload workload, int carCount, float warmupSeconds, float measureSeconds) {
+		Arena arena = new Arena(carCount, workload == LIGHT_FULL_TICK);
+		try {
+			//warm up the JIT and let the cars get moving
+			measure(workload, arena, (long) (warmupSeconds * 1e9f));
+			return measure(workload, arena, (long) (measureSeconds * 1e9f));
+		} finally {
+			arena.dispose();
+		}
+	}
+	
+	private static Result measure(Workload workload, Arena arena, long durationNanos) {
+		long startBytes = allocatedBytes();
+		long start = System.nanoTime();
+		long elapsed;
+		long ticks = 0;
+		do {
+			for (int i = 0; i < BATCH; i++)
+				workload.tick(arena);
+			ticks += BATCH;
+			elapsed = System.nanoTime() - start;
+		} while (elapsed < durationNanos);
+		long endBytes = allocatedBytes();
+		
+		Result result = new Result();
+		result.cars = arena.carCount;
+		result.ticks = ticks;
+		result.nanos = elapsed;
+		result.bytes = (startBytes < 0 || endBytes < 0) ? -1 : endBytes - startBytes;
+		return result;
+	}
+	
+	/**
+	 * Bytes allocated so far by the current thread, or -1 if the JVM can't
+	 * tell us (only HotSpot style VMs expose this).
+	 */
+	private static long allocatedBytes() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean))
+			return -1;
+		com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+		if (!sunBean.isThreadAllocatedMemorySupported() || !sunBean.isThreadAllocatedMemoryEnabled())
+			return -1;
+		return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+	
+	public static class Result {
+		public int cars;
+		public long ticks;
+		public long nanos;
+		public long bytes;
+		
+		public double ticksPerSecond() {
+			return ticks * 1e9 / nanos;
+		}
+		
+		public double nanosPerCarTick() {
+			return (double) nanos / ticks / cars;
+		}
+		
+		public double bytesPerTick() {
+			return bytes < 0 ? -1 : (double) bytes / ticks;
+		}
+	}
+	
+	/**
+	 * A walled square with the cars parked in a grid, all of them on the
+	 * throttle and most of them steering, so the step has real contacts and
+	 * joints to solve.
+	 */
+	private static class Arena {
+		private static final float SPACING_X = 3;
+		private static final float SPACING_Y = 4;
+		private static final float MARGIN = 10;
+		
+		final World world;
+		final int carCount;
+		final List<Car> cars;
+		final List<LightCar> lightCars;
+		
+		Arena(int carCount, boolean light) {
+			world = new World(new Vector2(0.0f, 0.0f), true);
+			this.carCount = carCount;
+			cars = new ArrayList<Car>(carCount);
+			lightCars = new ArrayList<LightCar>(carCount);
+			
+			int columns = (int) Math.ceil(Math.sqrt(carCount));
+			int rows = (carCount + columns - 1) / columns;
+			float width = columns * SPACING_X + MARGIN * 2;
+			float height = rows * SPACING_Y + MARGIN * 2;
+			
+			new BoxProp(world, width, 1, new Vector2(width / 2, 0.5f)); //bottom
+			new BoxProp(world, width, 1, new Vector2(width / 2, height - 0.5f)); //top
+			new BoxProp(world, 1, height - 2, new Vector2(0.5f, height / 2)); //left
+			new BoxProp(world, 1, height - 2, new Vector2(width - 0.5f, height / 2)); //right
+			
+			for (int i = 0; i < carCount; i++) {
+				float x = MARGIN + (i % columns) * SPACING_X;
+				float y = MARGIN + (i / columns) * SPACING_Y;
+				//spread the cars over every steering mode so the steering branches get exercised
+				if (light) {
+					LightCar car = new LightCar(world, 1, 2, new Vector2(x, y), (float) Math.PI, 60, 15, 25, 100);
+					car.setAccelerate(Car.ACC_ACCELERATE);
+					car.setSteer(i % (Car.STEER_HARD_RIGHT + 1));
+					lightCars.add(car);
+				} else {
+					Car car = new Car(world, 1, 2, new Vector2(x, y), (float) Math.PI, 60, 15, 25, 100);
+					car.setAccelerate(Car.ACC_ACCELERATE);
+					car.setSteer(i % (Car.STEER_HARD_RIGHT + 1));
+					cars.add(car);
+				}
+			}
+		}
+		
+		void dispose() {
+			world.dispose();
+		}
+	}
+}
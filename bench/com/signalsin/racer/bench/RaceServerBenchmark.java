@@ -0,0 +1,180 @@
+package com.signalsin.racer.bench;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+import com.signalsin.racer.car.Car;
+import com.signalsin.racer.headless.RaceDescription;
+import com.signalsin.racer.server.Protocol;
+import com.signalsin.racer.server.RaceServer;
+import com.signalsin.racer.server.ServerMetrics;
+import com.signalsin.racer.server.Snapshot;
+import com.signalsin.racer.server.SnapshotCodec;
+import com.signalsin.racer.server.SnapshotHistory;
+
+/**
+ * Starts a RaceServer on loopback and connects simulated clients to it. The
+ * clients join rooms, drive with changing inputs, decode every snapshot
+ * against their own history and acknowledge it, just like a game client
+ * would. Prints bytes per client per second and server tick time for 8, 32
+ * and 128 players.
+ *
+ * Usage: RaceServerBenchmark [playersPerRoom] [seconds]
+ */
+public class RaceServerBenchmark {
+	
+	private static final int[] PLAYER_COUNTS = {8, 32, 128};
+	
+	private static class SimulatedClient {
+		final DatagramChannel channel;
+		final SnapshotHistory history = new SnapshotHistory(Protocol.HISTORY, 8);
+		final ByteBuffer buffer = ByteBuffer.allocate(Protocol.MAX_PACKET);
+		final int seed;
+		int car = -1;
+		int ackTick = SnapshotCodec.NO_BASELINE;
+		int snapshots;
+		
+		SimulatedClient(InetSocketAddress server, int seed) throws IOException {
+			this.seed = seed;
+			channel = DatagramChannel.open();
+			channel.configureBlocking(false);
+			channel.connect(server);
+		}
+		
+		void join(int room) throws IOException {
+			buffer.clear();
+			buffer.put(Protocol.JOIN).putInt(room);
+			buffer.flip();
+			channel.write(buffer);
+		}
+		
+		void receive() throws IOException {
+			while (true) {
+				buffer.clear();
+				if (channel.read(buffer) <= 0)
+					return;
+				buffer.flip();
+				byte type = buffer.get();
+				if (type == Protocol.WELCOME) {
+					buffer.getInt();
+					car = buffer.getShort();
+				} else if (type == Protocol.SNAPSHOT) {
+					int baselineTick = SnapshotCodec.peekBaselineTick(buffer);
+					Snapshot baseline = baselineTick == SnapshotCodec.NO_BASELINE ? null : history.get(baselineTick);
+					if (baselineTick != SnapshotCodec.NO_BASELINE && baseline == null)
+						continue; //baseline lost, wait for the server to fall back to a full snapshot
+					int tick = buffer.getInt(buffer.position());
+					SnapshotCodec.read(buffer, baseline, history.slot(tick));
+					ackTick = Math.max(ackTick, tick);
+					snapshots++;
+				}
+			}
+		}
+		
+		void sendInput(int frame) throws IOException {
+			if (car < 0)
+				return;
+			//wander around: change steering every second or so, mostly on the throttle
+			int phase = (frame / 60 + seed) % 8;
+			int steer = phase < 3 ? Car.STEER_NONE : (phase % 2 == 0 ? Car.STEER_LEFT : Car.STEER_RIGHT);
+			int accelerate = phase == 7 ? Car.ACC_BRAKE : Car.ACC_ACCELERATE;
+			buffer.clear();
+			buffer.put(Protocol.INPUT).put((byte) steer).put((byte) accelerate).putInt(ackTick);
+			buffer.flip();
+			channel.write(buffer);
+		}
+		
+		void close() throws IOException {
+			buffer.clear();
+			buffer.put(Protocol.LEAVE);
+			buffer.flip();
+			channel.write(buffer);
+			channel.close();
+		}
+	}
+	
+	public static void main(String[] args) throws Exception {
+		int playersPerRoom = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+		float seconds = args.length > 1 ? Float.parseFloat(args[1]) : 10;
+		
+		System.out.println(String.format("%8s %6s %18s %14s %14s %10s",
+				"players", "rooms", "bytes/client/s", "avg tick ms", "max tick ms", "delta %"));
+		for (int players : PLAYER_COUNTS)
+			run(players, playersPerRoom, seconds);
+	}
+	
+	private static void run(int players, int playersPerRoom, float seconds) throws Exception {
+		RaceDescription track = arena(playersPerRoom);
+		final RaceServer server = new RaceServer(new InetSocketAddress("127.0.0.1", 0), track);
+		server.open();
+		Thread serverThread = new Thread(new Runnable() {
+			public void run() {
+				try {
+					server.run();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}, "race-server");
+		serverThread.start();
+		
+		InetSocketAddress address = new InetSocketAddress("127.0.0.1", server.getPort());
+		SimulatedClient[] clients = new SimulatedClient[players];
+		for (int i = 0; i < players; i++) {
+			clients[i] = new SimulatedClient(address, i);
+			clients[i].join(i / playersPerRoom);
+		}
+		
+		//settle in for a second before measuring
+		long frameNanos = (long) (1000000000L / track.stepsPerSecond);
+		int frame = drive(clients, 0, (int) track.stepsPerSecond, frameNanos);
+		ServerMetrics metrics = server.getMetrics();
+		metrics.reset();
+		drive(clients, frame, (int) (seconds * track.stepsPerSecond), frameNanos);
+		
+		double deltaShare = 100.0 * metrics.deltaSnapshots / Math.max(1, metrics.deltaSnapshots + metrics.fullSnapshots);
+		System.out.println(String.format("%8d %6d %18.1f %14.3f %14.3f %10.1f",
+				players, metrics.rooms, metrics.getBytesPerClientPerSecond(track.stepsPerSecond),
+				metrics.getAverageTickNanos() / 1e6, metrics.maxTickNanos / 1e6, deltaShare));
+		
+		for (SimulatedClient client : clients)
+			client.close();
+		server.stop();
+		serverThread.join();
+		server.close();
+	}
+	
+	private static int drive(SimulatedClient[] clients, int frame, int frames, long frameNanos) throws Exception {
+		long next = System.nanoTime();
+		for (int f = 0; f < frames; f++, frame++) {
+			for (SimulatedClient client : clients) {
+				client.receive();
+				client.sendInput(frame);
+			}
+			next += frameNanos;
+			long sleep = next - System.nanoTime();
+			if (sleep > 0)
+				Thread.sleep(sleep / 1000000L, (int) (sleep % 1000000L));
+		}
+		return frame;
+	}
+	
+	private static RaceDescription arena(int slots) {
+		RaceDescription track = new RaceDescription();
+		int columns = (int) Math.ceil(Math.sqrt(slots));
+		int rows = (slots + columns - 1) / columns;
+		float width = columns * 3 + 40;
+		float height = rows * 4 + 40;
+		track.addProp(width / 2, 0.5f, width, 1);
+		track.addProp(width / 2, height - 0.5f, width, 1);
+		track.addProp(0.5f, height / 2, 1, height - 2);
+		track.addProp(width - 0.5f, height / 2, 1, height - 2);
+		for (int i = 0; i < slots; i++) {
+			track.addEntry(new RaceDescription.Entry(20 + (i % columns) * 3, 20 + (i / columns) * 4,
+					(float) Math.PI, 1, 2, 60, 15, 25, 100));
+		}
+		return track;
+	}
+}
@@ -2,8 +2,35 @@ package com.signalsin.racer;
 
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.Texture.TextureFilter;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.glutils.FrameBuffer;
 import com.badlogic.gdx.math.Matrix4;
-public class CameraHelper {
+import com.badlogic.gdx.utils.Disposable;
+
+/**
+ * Sets up the camera for the virtual resolution and, optionally, renders at
+ * a lower resolution than the screen. With a render scale set the scene is
+ * drawn into an offscreen FrameBuffer that size and stretched onto the
+ * screen in endFrame(); the camera and viewport stay the same, so the game
+ * sees exactly the same view either way, just with fewer pixels filled.
+ *
+ * The scale follows the frame rate: when frames miss their deadline while
+ * the CPU side of the frame is well inside budget, the GPU is the holdup
+ * (on high-DPI phones that is usually fill rate) and the scale steps down.
+ * GLES has no GPU timers, so going back up is a probe: after a long run of
+ * on-time frames the scale steps up, and if that makes frames late again it
+ * steps back down and waits twice as long before the next try.
+ *
+ * Needs GL20 for the FrameBuffer; without it everything renders at native
+ * resolution as before.
+ */
+public class CameraHelper implements Disposable {
+	
+	//scale moves in these steps between the bounds
+	private static final float SCALE_STEP = 0.125f;
 
 	private OrthographicCamera camera;
 	private int screenWidth;
@@ -12,6 +39,30 @@ public class CameraHelper {
 	private int viewportHeight;
 	private float aspect;
 	
+	//render scale, off while maxScale is 0
+	private float minScale, maxScale;
+	private float scale = 1;
+	private FrameBuffer frameBuffer;
+	private final Matrix4 screenProjection = new Matrix4();
+	private boolean inFrame;
+	
+	//adaptation, frame time thresholds as a share of the budget
+	public float lateLoad = 1.15f;
+	public float onTimeLoad = 1.05f;
+	//CPU share under which a late frame is blamed on the GPU
+	public float gpuBoundCpuLoad = 0.8f;
+	public int lateFrames = 10;
+	public int probeFrames = 300;
+	public int maxProbeFrames = 300 * 16;
+	public int cooldownFrames = 60;
+	private long budgetNanos = 1000000000L / 60;
+	private float averageFrameLoad, averageCpuLoad;
+	private int late, onTime, cooldown;
+	private int probeWait = 300;
+	//frames left in which a slowdown is put down to the last step up
+	private int probing;
+	private int changes;
+	
 	public CameraHelper(int virtualWidth, int virtualHeight){
 	    
 		camera = new OrthographicCamera();
@@ -53,4 +104,131 @@ public class CameraHelper {
 		return camera.combined;
 	}
 	
+	/**
+	 * Turns on scaled rendering between the given bounds, starting at the
+	 * top. Bounds of 1 and 1 keep the offscreen pass with no scaling.
+	 * Ignored without GL20.
+	 */
+	public void setRenderScale(float min, float max, float targetFramesPerSecond){
+		if (min <= 0 || min > max || max > 1)
+			throw new IllegalArgumentException("Render scale must satisfy 0 < min <= max <= 1");
+		if (!Gdx.graphics.isGL20Available())
+			return;
+		minScale = min;
+		maxScale = max;
+		scale = max;
+		budgetNanos = (long) (1000000000L / targetFramesPerSecond);
+		probeWait = probeFrames;
+	}
+	
+	/**
+	 * Starts a frame; with a render scale everything drawn until endFrame()
+	 * goes to the offscreen buffer. Clear after calling this.
+	 */
+	public void beginFrame(){
+		if (maxScale == 0)
+			return;
+		int width = Math.max(1, Math.round(Gdx.graphics.getWidth() * scale));
+		int height = Math.max(1, Math.round(Gdx.graphics.getHeight() * scale));
+		if (frameBuffer == null || frameBuffer.getWidth() != width || frameBuffer.getHeight() != height) {
+			if (frameBuffer != null)
+				frameBuffer.dispose();
+			//no alpha or depth, 16 bits is plenty once it's stretched anyway
+			frameBuffer = new FrameBuffer(Pixmap.Format.RGB565, width, height, false);
+			frameBuffer.getColorBufferTexture().setFilter(TextureFilter.Linear, TextureFilter.Linear);
+		}
+		frameBuffer.begin();
+		inFrame = true;
+	}
+	
+	/**
+	 * Ends the frame and stretches the offscreen buffer over the screen with
+	 * the given batch, which must not be drawing. Leaves the batch set up for
+	 * screen pixels. Returns the draw calls that took, 0 when there was no
+	 * offscreen buffer.
+	 */
+	public int endFrame(SpriteBatch batch){
+		if (!inFrame)
+			return 0;
+		inFrame = false;
+		frameBuffer.end();
+		int width = Gdx.graphics.getWidth();
+		int height = Gdx.graphics.getHeight();
+		screenProjection.setToOrtho2D(0, 0, width, height);
+		batch.setProjectionMatrix(screenProjection);
+		batch.disableBlending();
+		batch.begin();
+		//framebuffer textures are upside down
+		Texture texture = frameBuffer.getColorBufferTexture();
+		batch.draw(texture, 0, 0, width, height, 0, 0, texture.getWidth(), texture.getHeight(), false, true);
+		batch.end();
+		batch.enableBlending();
+		return batch.renderCalls;
+	}
+	
+	/**
+	 * Feeds in the last frame's delta and the CPU time spent working on it,
+	 * both in nanoseconds. Returns true if the render scale changed.
+	 */
+	public boolean recordFrame(long frameNanos, long cpuNanos){
+		if (maxScale == 0 || minScale == maxScale)
+			return false;
+		float frameLoad = (float) frameNanos / budgetNanos;
+		float cpuLoad = (float) cpuNanos / budgetNanos;
+		averageFrameLoad = averageFrameLoad == 0 ? frameLoad : averageFrameLoad + (frameLoad - averageFrameLoad) * 0.1f;
+		averageCpuLoad = averageCpuLoad == 0 ? cpuLoad : averageCpuLoad + (cpuLoad - averageCpuLoad) * 0.1f;
+		
+		if (probing > 0)
+			probing--;
+		if (cooldown > 0) {
+			cooldown--;
+			return false;
+		}
+		
+		//late frames only count against the GPU when the CPU wasn't the problem
+		late = averageFrameLoad > lateLoad && averageCpuLoad < gpuBoundCpuLoad ? late + 1 : 0;
+		onTime = averageFrameLoad < onTimeLoad ? onTime + 1 : 0;
+		
+		if (late >= lateFrames && scale > minScale) {
+			if (probing > 0)
+				probeWait = Math.min(probeWait * 2, maxProbeFrames);
+			probing = 0;
+			return setScale(scale - SCALE_STEP);
+		}
+		if (onTime >= probeWait && scale < maxScale) {
+			//give the step up a few seconds to prove itself
+			probing = cooldownFrames + lateFrames * 4;
+			return setScale(scale + SCALE_STEP);
+		}
+		return false;
+	}
+	
+	private boolean setScale(float newScale){
+		newScale = Math.max(minScale, Math.min(maxScale, newScale));
+		late = 0;
+		onTime = 0;
+		cooldown = cooldownFrames;
+		if (newScale == scale)
+			return false;
+		scale = newScale;
+		changes++;
+		return true;
+	}
+	
+	/** Share of the screen resolution being rendered, 1 when off. */
+	public float getRenderScale(){
+		return maxScale == 0 ? 1 : scale;
+	}
+	
+	/** Times the render scale has changed. */
+	public int getRenderScaleChanges(){
+		return changes;
+	}
+	
+	@Override
+	public void dispose(){
+		if (frameBuffer != null)
+			frameBuffer.dispose();
+		frameBuffer = null;
+	}
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package com.signalsin.racer;
 
 import com.badlogic.gdx.Game;
 
+import com.signalsin.racer.physics.SimulationHost;
 import com.signalsin.racer.screens.GameScreen;
 
 public class RacerGame extends Game {
@@ -9,6 +10,25 @@ public class RacerGame extends Game {
 	//declare all of the games screens
 	GameScreen gameScreen;
 	
+	//runs physics off the render thread, null to step it from render()
+	private final SimulationHost physicsHost;
+	
+	public RacerGame() {
+		this(null);
+	}
+	
+	/**
+	 * @param physicsHost runs the simulation on its own thread, e.g. a
+	 * PhysicsThread from the desktop and Android launchers
+	 */
+	public RacerGame(SimulationHost physicsHost) {
+		this.physicsHost = physicsHost;
+	}
+	
+	public SimulationHost getPhysicsHost() {
+		return physicsHost;
+	}
+	
 	@Override
 	public void create() {
 		//load the screens
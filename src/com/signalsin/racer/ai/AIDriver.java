@@ -0,0 +1,163 @@
+package com.signalsin.racer.ai;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.Body;
+import com.signalsin.racer.car.Car;
+import com.signalsin.racer.car.CarFleet;
+
+/**
+ * Drives the cars of a CarFleet round a RacingLine, through the same steer
+ * and accelerate inputs the player uses. Each car looks ahead along the line
+ * to steer, keeps to the line's target speed, and casts a small fan of rays
+ * to steer round and brake for whatever is in front of it.
+ *
+ * Only every decisionInterval-th car thinks on a given tick, the others
+ * keep their last inputs, so the cost per tick stays bounded: with 100 cars
+ * and an interval of 4, 25 cars project onto the line and 25 ray fans go out
+ * in one batched pass.
+ */
+public class AIDriver {
+	
+	//ray fan, relative to the car's heading, in degrees
+	private static final float[] RAY_ANGLES = {-40, -15, 0, 15, 40};
+	private static final float MIN_RAY_LENGTH = 4;
+	//ray length per km/h
+	private static final float RAY_LENGTH_PER_KMH = 0.12f;
+	
+	private final RacingLine line;
+	private final int decisionInterval;
+	private final RaycastBatch rays;
+	
+	//per car
+	private final float[] progress;
+	private final boolean[] located;
+	private final Body[][] ownBodies;
+	
+	//cars deciding this tick, and where their first ray is in the batch
+	private final int[] deciding;
+	private final int[] firstRay;
+	
+	private final Vector2 target = new Vector2();
+	
+	public float steerThreshold = 3;
+	public float hardSteerThreshold = 20;
+	/** How far ahead along the line to aim, in meters, plus lookAheadPerKMH per km/h. */
+	public float lookAhead = 4;
+	public float lookAheadPerKMH = 0.08f;
+	/** Heading correction in degrees for an obstacle right at the car. */
+	public float avoidance = 45;
+	
+	/**
+	 * @param capacity most cars this driver will see in a fleet
+	 * @param decisionInterval ticks between decisions of one car
+	 */
+	public AIDriver(RacingLine line, int capacity, int decisionInterval) {
+		this.line = line;
+		this.decisionInterval = Math.max(1, decisionInterval);
+		int perTick = (capacity + this.decisionInterval - 1) / this.decisionInterval;
+		this.rays = new RaycastBatch(perTick * RAY_ANGLES.length);
+		this.progress = new float[capacity];
+		this.located = new boolean[capacity];
+		this.ownBodies = new Body[capacity][];
+		this.deciding = new int[perTick];
+		this.firstRay = new int[perTick];
+	}
+	
+	/**
+	 * Sets new inputs for this tick's share of the fleet. Call once per
+	 * physics tick, before fleet.update().
+	 */
+	public void update(CarFleet fleet, int tick) {
+		int cars = Math.min(fleet.size(), progress.length);
+		int count = 0;
+		
+		//1. where is everyone deciding this tick, and queue their ray fans
+		rays.clear();
+		for (int i = tick % decisionInterval; i < cars && count < deciding.length; i += decisionInterval) {
+			Car car = fleet.getCar(i);
+			if (ownBodies[i] == null) {
+				ownBodies[i] = new Body[1 + car.wheels.size()];
+				ownBodies[i][0] = car.body;
+				for (int w = 0; w < car.wheels.size(); w++)
+					ownBodies[i][w + 1] = car.wheels.get(w).body;
+			}
+			Vector2 position = car.body.getPosition();
+			float x = position.x, y = position.y;
+			progress[i] = located[i] ? line.project(x, y, progress[i]) : line.locate(x, y);
+			located[i] = true;
+			
+			float angle = car.body.getAngle();
+			float length = MIN_RAY_LENGTH + fleet.getSpeedKMH(i) * RAY_LENGTH_PER_KMH;
+			firstRay[count] = rays.size();
+			for (int r = 0; r < RAY_ANGLES.length; r++) {
+				//cars drive towards local -y
+				float rayAngle = angle + RAY_ANGLES[r] * MathUtils.degreesToRadians;
+				rays.add(ownBodies[i], x, y, x + MathUtils.sin(rayAngle) * length, y - MathUtils.cos(rayAngle) * length);
+			}
+			deciding[count++] = i;
+		}
+		
+		//2. one pass for every ray
+		rays.cast(fleet.getWorld());
+		
+		//3. decide
+		for (int d = 0; d < count; d++)
+			decide(fleet, deciding[d], firstRay[d]);
+	}
+	
+	private void decide(CarFleet fleet, int i, int ray) {
+		Body body = fleet.getCar(i).body;
+		float speed = fleet.getSpeedKMH(i);
+		float x = body.getPosition().x, y = body.getPosition().y;
+		float angle = body.getAngle();
+		float forwardX = MathUtils.sin(angle);
+		float forwardY = -MathUtils.cos(angle);
+		
+		line.getPoint(progress[i] + lookAhead + speed * lookAheadPerKMH, target);
+		float toX = target.x - x, toY = target.y - y;
+		//signed angle from heading to target, positive is to the left
+		float error = MathUtils.radiansToDegrees
+				* (float) Math.atan2(forwardX * toY - forwardY * toX, forwardX * toX + forwardY * toY);
+		
+		//steer away from the side with the closer obstacles
+		float push = 0;
+		for (int r = 0; r < RAY_ANGLES.length; r++) {
+			float closeness = 1 - rays.getFraction(ray + r);
+			if (RAY_ANGLES[r] != 0)
+				push -= Math.signum(RAY_ANGLES[r]) * closeness;
+		}
+		error += push * avoidance;
+		
+		if (error > hardSteerThreshold)
+			fleet.setSteer(i, Car.STEER_HARD_LEFT);
+		else if (error > steerThreshold)
+			fleet.setSteer(i, Car.STEER_LEFT);
+		else if (error < -hardSteerThreshold)
+			fleet.setSteer(i, Car.STEER_HARD_RIGHT);
+		else if (error < -steerThreshold)
+			fleet.setSteer(i, Car.STEER_RIGHT);
+		else
+			fleet.setSteer(i, Car.STEER_NONE);
+		
+		//the middle ray decides whether something is about to be hit
+		float ahead = rays.getFraction(ray + RAY_ANGLES.length / 2);
+		float targetSpeed = line.getTargetSpeed(progress[i] + speed * lookAheadPerKMH * 4);
+		if (speed > targetSpeed || (ahead < 0.5f && speed > 20))
+			fleet.setAccelerate(i, Car.ACC_BRAKE);
+		else if (speed > targetSpeed * 0.95f)
+			fleet.setAccelerate(i, Car.ACC_NONE);
+		else
+			fleet.setAccelerate(i, Car.ACC_ACCELERATE);
+	}
+	
+	/** How far along the racing line the car was at its last decision. */
+	public float getProgress(int car) {
+		return progress[car];
+	}
+	
+	/** Forgets where the car was, e.g. after it has been moved. */
+	public void relocate(int car) {
+		located[car] = false;
+	}
+}
@@ -0,0 +1,224 @@
+package com.signalsin.racer.ai;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Vector2;
+
+/**
+ * The line AI cars follow around a closed track, resampled at a fixed
+ * spacing along its length so that anything about the line at a given
+ * distance (position, direction, target speed) is an array lookup.
+ *
+ * Finding where a car is on the line is constant time too: a car that knows
+ * roughly where it was last time only searches a few samples around that,
+ * and one that doesn't goes through a coarse grid that stores the nearest
+ * sample for every cell, worked out when the line is built.
+ */
+public class RacingLine {
+	
+	//samples searched either side of the hint by project()
+	private static final int SEARCH_WINDOW = 8;
+	//stretch of line, in meters, that curvature is measured over
+	private static final float CURVATURE_WINDOW = 8;
+	
+	private final float spacing;
+	private final int count;
+	private final float length;
+	private final float[] x, y, dirX, dirY;
+	/** target speed at each sample, in km/h */
+	private final float[] speed;
+	
+	//nearest sample per grid cell
+	private final float gridX, gridY, gridCell;
+	private final int gridColumns, gridRows;
+	private final int[] gridNearest;
+	
+	/**
+	 * @param points x, y pairs of the line, in driving order; the last point
+	 * connects back to the first
+	 * @param spacing rough distance between samples in meters
+	 * @param maxSpeedKMH target speed on the straights
+	 * @param lateralGrip sideways acceleration a car can take in a corner, m/s^2
+	 * @param braking deceleration a car manages when braking, m/s^2
+	 */
+	public RacingLine(float[] points, float spacing, float maxSpeedKMH, float lateralGrip, float braking) {
+		if (points.length < 6 || points.length % 2 != 0)
+			throw new IllegalArgumentException("A racing line needs at least three x, y pairs");
+		
+		//total length of the closed polyline
+		int pointCount = points.length / 2;
+		float total = 0;
+		for (int i = 0; i < pointCount; i++) {
+			int next = (i + 1) % pointCount;
+			total += distance(points[i * 2], points[i * 2 + 1], points[next * 2], points[next * 2 + 1]);
+		}
+		//stretch the spacing a little so the samples close the loop exactly
+		count = Math.max(3, (int) Math.ceil(total / spacing));
+		length = total;
+		this.spacing = total / count;
+		spacing = this.spacing;
+		x = new float[count];
+		y = new float[count];
+		dirX = new float[count];
+		dirY = new float[count];
+		speed = new float[count];
+		
+		//walk the polyline, dropping a sample every spacing
+		int segment = 0;
+		float segmentStart = 0;
+		float segmentLength = distance(points[0], points[1], points[2], points[3]);
+		for (int i = 0; i < count; i++) {
+			float s = i * spacing;
+			while (s > segmentStart + segmentLength && segment < pointCount - 1) {
+				segmentStart += segmentLength;
+				segment++;
+				int next = (segment + 1) % pointCount;
+				segmentLength = distance(points[segment * 2], points[segment * 2 + 1], points[next * 2], points[next * 2 + 1]);
+			}
+			int next = (segment + 1) % pointCount;
+			float t = segmentLength > 0 ? (s - segmentStart) / segmentLength : 0;
+			x[i] = points[segment * 2] + (points[next * 2] - points[segment * 2]) * t;
+			y[i] = points[segment * 2 + 1] + (points[next * 2 + 1] - points[segment * 2 + 1]) * t;
+		}
+		
+		//directions, and a cornering speed from the curvature
+		for (int i = 0; i < count; i++) {
+			int next = (i + 1) % count;
+			float dx = x[next] - x[i], dy = y[next] - y[i];
+			float len = (float) Math.sqrt(dx * dx + dy * dy);
+			dirX[i] = len > 0 ? dx / len : 1;
+			dirY[i] = len > 0 ? dy / len : 0;
+		}
+		float maxSpeed = maxSpeedKMH / 3.6f;
+		//measured over a few meters, a polyline only turns at its corners
+		int window = Math.max(1, Math.round(CURVATURE_WINDOW / spacing / 2));
+		for (int i = 0; i < count; i++) {
+			int previous = (i + count - window) % count;
+			int next = (i + window) % count;
+			float turn = Math.abs((float) Math.atan2(dirX[previous] * dirY[next] - dirY[previous] * dirX[next],
+					dirX[previous] * dirX[next] + dirY[previous] * dirY[next]));
+			float curvature = turn / (2 * window * spacing);
+			float cornerSpeed = curvature > 0 ? (float) Math.sqrt(lateralGrip / curvature) : maxSpeed;
+			speed[i] = Math.min(maxSpeed, cornerSpeed);
+		}
+		//brake in time: going backwards, nothing may be faster than it can slow down from
+		//twice round, so the corners just after the start line are seen too
+		for (int pass = 0; pass < 2; pass++) {
+			for (int i = count - 1; i >= 0; i--) {
+				float after = speed[(i + 1) % count];
+				speed[i] = Math.min(speed[i], (float) Math.sqrt(after * after + 2 * braking * spacing));
+			}
+		}
+		for (int i = 0; i < count; i++)
+			speed[i] *= 3.6f;
+		
+		//nearest sample for every cell of a grid around the line
+		float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+		for (int i = 0; i < count; i++) {
+			minX = Math.min(minX, x[i]);
+			minY = Math.min(minY, y[i]);
+			maxX = Math.max(maxX, x[i]);
+			maxY = Math.max(maxY, y[i]);
+		}
+		gridCell = spacing * 4;
+		gridX = minX - gridCell * 2;
+		gridY = minY - gridCell * 2;
+		gridColumns = (int) Math.ceil((maxX - gridX) / gridCell) + 2;
+		gridRows = (int) Math.ceil((maxY - gridY) / gridCell) + 2;
+		gridNearest = new int[gridColumns * gridRows];
+		for (int row = 0; row < gridRows; row++) {
+			for (int column = 0; column < gridColumns; column++) {
+				float cx = gridX + (column + 0.5f) * gridCell;
+				float cy = gridY + (row + 0.5f) * gridCell;
+				gridNearest[row * gridColumns + column] = nearestSample(cx, cy, 0, count);
+			}
+		}
+	}
+	
+	public float getLength() {
+		return length;
+	}
+	
+	public float getSpacing() {
+		return spacing;
+	}
+	
+	/** Wraps a distance along the line into 0..length. */
+	public float wrap(float s) {
+		s %= length;
+		return s < 0 ? s + length : s;
+	}
+	
+	private int index(float s) {
+		return Math.min(count - 1, (int) (wrap(s) / spacing));
+	}
+	
+	public Vector2 getPoint(float s, Vector2 out) {
+		s = wrap(s);
+		int i = Math.min(count - 1, (int) (s / spacing));
+		int next = (i + 1) % count;
+		float t = (s - i * spacing) / spacing;
+		return out.set(x[i] + (x[next] - x[i]) * t, y[i] + (y[next] - y[i]) * t);
+	}
+	
+	public float getDirectionX(float s) {
+		return dirX[index(s)];
+	}
+	
+	public float getDirectionY(float s) {
+		return dirY[index(s)];
+	}
+	
+	/** Speed to be doing at this point of the line, in km/h. */
+	public float getTargetSpeed(float s) {
+		return speed[index(s)];
+	}
+	
+	/**
+	 * Distance along the line of the point closest to x, y, searching only
+	 * near hint, the result of the previous call for the same car.
+	 */
+	public float project(float px, float py, float hint) {
+		int center = index(hint);
+		int best = nearestSample(px, py, center - SEARCH_WINDOW, center + SEARCH_WINDOW + 1);
+		return refine(px, py, best);
+	}
+	
+	/** Distance along the line of the point closest to x, y, from anywhere. */
+	public float locate(float px, float py) {
+		int column = MathUtils.clamp((int) ((px - gridX) / gridCell), 0, gridColumns - 1);
+		int row = MathUtils.clamp((int) ((py - gridY) / gridCell), 0, gridRows - 1);
+		int near = gridNearest[row * gridColumns + column];
+		return project(px, py, near * spacing);
+	}
+	
+	//nearest sample in from..to (exclusive), indices wrap round the loop
+	private int nearestSample(float px, float py, int from, int to) {
+		int best = 0;
+		float bestDistance = Float.MAX_VALUE;
+		for (int j = from; j < to; j++) {
+			int i = ((j % count) + count) % count;
+			float dx = x[i] - px, dy = y[i] - py;
+			float d = dx * dx + dy * dy;
+			if (d < bestDistance) {
+				bestDistance = d;
+				best = i;
+			}
+		}
+		return best;
+	}
+	
+	//project onto the segment leaving sample i, or the one arriving at it
+	private float refine(float px, float py, int i) {
+		float along = (px - x[i]) * dirX[i] + (py - y[i]) * dirY[i];
+		if (along >= 0)
+			return wrap(i * spacing + Math.min(along, spacing));
+		int previous = (i + count - 1) % count;
+		along = (px - x[previous]) * dirX[previous] + (py - y[previous]) * dirY[previous];
+		return wrap(previous * spacing + MathUtils.clamp(along, 0, spacing));
+	}
+	
+	private static float distance(float x1, float y1, float x2, float y2) {
+		float dx = x2 - x1, dy = y2 - y1;
+		return (float) Math.sqrt(dx * dx + dy * dy);
+	}
+}
@@ -0,0 +1,103 @@
+package com.signalsin.racer.ai;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.physics.box2d.Fixture;
+import com.badlogic.gdx.physics.box2d.RayCastCallback;
+import com.badlogic.gdx.physics.box2d.World;
+
+/**
+ * Rays collected over a tick and cast against the world in one pass, with
+ * the closest hit of each written into preallocated arrays. One callback
+ * object and two scratch vectors serve every ray, so casting doesn't
+ * allocate however many cars are looking around.
+ */
+public class RaycastBatch implements RayCastCallback {
+	
+	private final int capacity;
+	private final float[] fromX, fromY, toX, toY;
+	private final Body[][] ignore;
+	private final float[] fraction;
+	private final Body[] hitBody;
+	private int size;
+	
+	private final Vector2 from = new Vector2();
+	private final Vector2 to = new Vector2();
+	private int current;
+	
+	public RaycastBatch(int capacity) {
+		this.capacity = capacity;
+		fromX = new float[capacity];
+		fromY = new float[capacity];
+		toX = new float[capacity];
+		toY = new float[capacity];
+		ignore = new Body[capacity][];
+		fraction = new float[capacity];
+		hitBody = new Body[capacity];
+	}
+	
+	/**
+	 * Queues a ray for the next cast().
+	 * @param ignoreBodies bodies the ray goes through, normally the caster's
+	 * own; kept by reference, so don't change it before cast()
+	 * @return the ray's index, or -1 if the batch is full
+	 */
+	public int add(Body[] ignoreBodies, float x1, float y1, float x2, float y2) {
+		if (size == capacity)
+			return -1;
+		fromX[size] = x1;
+		fromY[size] = y1;
+		toX[size] = x2;
+		toY[size] = y2;
+		ignore[size] = ignoreBodies;
+		return size++;
+	}
+	
+	/** Casts every queued ray. */
+	public void cast(World world) {
+		for (current = 0; current < size; current++) {
+			fraction[current] = 1;
+			hitBody[current] = null;
+			world.rayCast(this, from.set(fromX[current], fromY[current]), to.set(toX[current], toY[current]));
+		}
+	}
+	
+	@Override
+	public float reportRayFixture(Fixture fixture, Vector2 point, Vector2 normal, float hitFraction) {
+		if (fixture.isSensor())
+			return -1;
+		Body body = fixture.getBody();
+		Body[] skip = ignore[current];
+		if (skip != null) {
+			for (int i = 0; i < skip.length; i++) {
+				if (skip[i] == body)
+					return -1;
+			}
+		}
+		fraction[current] = hitFraction;
+		hitBody[current] = body;
+		//clip the ray, later reports are only ever closer
+		return hitFraction;
+	}
+	
+	/** How far along the ray the closest hit is, 1 if nothing was hit. */
+	public float getFraction(int ray) {
+		return fraction[ray];
+	}
+	
+	public Body getHitBody(int ray) {
+		return hitBody[ray];
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			ignore[i] = null;
+			hitBody[i] = null;
+		}
+		size = 0;
+	}
+}
@@ -3,18 +3,27 @@ package com.signalsin.racer.car;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.physics.box2d.Body;
 import com.badlogic.gdx.physics.box2d.BodyDef;
+import com.badlogic.gdx.physics.box2d.Fixture;
 import com.badlogic.gdx.physics.box2d.FixtureDef;
 import com.badlogic.gdx.physics.box2d.PolygonShape;
 import com.badlogic.gdx.physics.box2d.World;
 
 public class BoxProp {
 	public float width, height;
+	//center in world meters; props never move or rotate
+	public float x, y;
+	/**
+	 * The body holding this prop's fixture. Props merged by a
+	 * TrackGeometryBuilder share one body, so use x and y for the position.
+	 */
 	public Body body;
 
 	public BoxProp(World world, float width, float height, Vector2 position) {
 		super();
 		this.width = width;
 		this.height = height;
+		this.x = position.x;
+		this.y = position.y;
 	    
 		//initialize body 
 		BodyDef bodyDef = new BodyDef();
@@ -23,6 +32,52 @@ public class BoxProp {
 		bodyDef.fixedRotation = true;
 		this.body = world.createBody(bodyDef);
 	    
+		createFixture();
+	}
+	
+	public BoxProp(Body body, float width, float height, float x, float y) {
+		/*
+		reuses an empty static body, e.g. one handed back by release()
+		*/
+		super();
+		this.width = width;
+		this.height = height;
+		this.x = x;
+		this.y = y;
+		this.body = body;
+		this.body.setTransform(x, y, 0);
+		this.body.setActive(true);
+		
+		createFixture();
+	}
+	
+	public BoxProp(float width, float height, float x, float y) {
+		/*
+		geometry only, TrackGeometryBuilder creates the fixture and sets body
+		*/
+		super();
+		this.width = width;
+		this.height = height;
+		this.x = x;
+		this.y = y;
+	}
+	
+	public Body release() {
+		/*
+		strips the prop's fixture and takes the body out of the simulation so it
+		can be reused for another prop; returns the empty body
+		*/
+		while (this.body.getFixtureList().size() > 0) {
+			Fixture fixture = this.body.getFixtureList().get(0);
+			this.body.destroyFixture(fixture);
+		}
+		this.body.setActive(false);
+		Body released = this.body;
+		this.body = null;
+		return released;
+	}
+	
+	private void createFixture() {
 	    //initialize shape
 		FixtureDef fixtureDef = new FixtureDef();
 		PolygonShape boxShape = new PolygonShape();
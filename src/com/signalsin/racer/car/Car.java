@@ -3,13 +3,13 @@ package com.signalsin.racer.car;
 import java.util.ArrayList;
 import java.util.List;
 
-import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.physics.box2d.Body;
 import com.badlogic.gdx.physics.box2d.BodyDef;
 import com.badlogic.gdx.physics.box2d.FixtureDef;
 import com.badlogic.gdx.physics.box2d.PolygonShape;
 import com.badlogic.gdx.physics.box2d.World;
+import com.signalsin.racer.telemetry.Telemetry;
 
 public class Car {
 	public Body body;
@@ -18,6 +18,19 @@ public class Car {
 	private int steer, accelerate;
 	public List<Wheel> wheels;
 	
+	//wheel subsets never change after construction, so build them once
+	private List<Wheel> poweredWheels;
+	private List<Wheel> revolvingWheels;
+	
+	//scratch vectors so update() doesn't allocate every tick
+	private static final Vector2 ORIGIN = new Vector2(0, 0);
+	private final Vector2 localVelocity = new Vector2();
+	private final Vector2 forceVector = new Vector2();
+	
+	//chassis transform as of the previous physics step, used to interpolate rendering
+	public final Vector2 previousPosition = new Vector2();
+	public float previousAngle;
+	
 	public static final int STEER_NONE=0;
 	public static final int STEER_LEFT=1;
 	public static final int STEER_RIGHT=2;
@@ -66,32 +79,70 @@ public class Car {
 		this.wheels.add(new Wheel(world, this, 0.5f, -0.6f, 0.2f, 0.4f, true,  true)); //top right
 		this.wheels.add(new Wheel(world, this, -0.5f, 0.6f, 0.2f, 0.4f, false,  false)); //back left
 		this.wheels.add(new Wheel(world, this, 0.5f, 0.6f, 0.2f, 0.4f, false,  false)); //back right
-	}
-	
-	public List<Wheel> getPoweredWheels () {
-		List<Wheel> poweredWheels = new ArrayList<Wheel>();
+		
+		this.poweredWheels = new ArrayList<Wheel>();
+		this.revolvingWheels = new ArrayList<Wheel>();
 		for (Wheel wheel:this.wheels) {
 			if (wheel.powered)
-				poweredWheels.add(wheel);
+				this.poweredWheels.add(wheel);
+			if (wheel.revolving)
+				this.revolvingWheels.add(wheel);
 		}
-		return poweredWheels;
+		
+		storePreviousTransform();
+	}
+	
+	public void storePreviousTransform() {
+		/*
+		remember where the chassis is before the next physics step
+		*/
+		this.previousPosition.set(this.body.getPosition());
+		this.previousAngle = this.body.getAngle();
+	}
+	
+	public Vector2 getInterpolatedPosition(float alpha, Vector2 out) {
+		/*
+		alpha - 0..1 between the previous and the current physics step
+		writes the blended chassis position into out and returns it
+		*/
+		Vector2 position = this.body.getPosition();
+		return out.set(this.previousPosition.x + (position.x - this.previousPosition.x) * alpha,
+				this.previousPosition.y + (position.y - this.previousPosition.y) * alpha);
+	}
+	
+	public float getInterpolatedAngle(float alpha) {
+		//box2d angles are not wrapped, so a plain lerp is safe
+		return this.previousAngle + (this.body.getAngle() - this.previousAngle) * alpha;
+	}
+	
+	public List<Wheel> getPoweredWheels () {
+		return this.poweredWheels;
 	}
 	
 	public Vector2 getLocalVelocity() {
 	    /*
 	    returns car's velocity vector relative to the car
 	    */
-		return this.body.getLocalVector(this.body.getLinearVelocityFromLocalPoint(new Vector2(0, 0)));
+		return getLocalVelocity(new Vector2());
+	}
+	
+	public Vector2 getLocalVelocity(Vector2 out) {
+	    /*
+	    same as getLocalVelocity() but writes into out instead of allocating
+	    */
+		return out.set(this.body.getLocalVector(this.body.getLinearVelocityFromLocalPoint(ORIGIN)));
 	}
 
 	
 	public List<Wheel> getRevolvingWheels () {
-		List<Wheel> revolvingWheels = new ArrayList<Wheel>();
-		for (Wheel wheel:this.wheels) {
-			if (wheel.revolving)
-				revolvingWheels.add(wheel);
-		}
-		return revolvingWheels;
+		return this.revolvingWheels;
+	}
+	
+	public float getBoundingRadius(){
+	    /*
+	    radius of a circle around the chassis centre that contains the whole car
+	    */
+	    return (float) Math.sqrt(this.width * this.width + this.length * this.length) / 2;
 	}
 	
 	public float getSpeedKMH(){
@@ -105,93 +156,126 @@ public class Car {
 	    speed - speed in kilometers per hour
 	    */
 	    Vector2 velocity=this.body.getLinearVelocity();
-	    velocity=velocity.nor();
-	    velocity=new Vector2(velocity.x*((speed*1000.0f)/3600.0f),
-	    				velocity.y*((speed*1000.0f)/3600.0f));
-	    this.body.setLinearVelocity(velocity);
+	    float len=velocity.len();
+	    float nx=velocity.x, ny=velocity.y;
+	    if (len != 0) {
+	    	nx /= len;
+	    	ny /= len;
+	    }
+	    this.body.setLinearVelocity(nx*((speed*1000.0f)/3600.0f),
+	    				ny*((speed*1000.0f)/3600.0f));
 	}
 	
 	public void setSteer(int value){
 		this.steer = value;
 	}
 	
+	public int getSteer(){
+		return this.steer;
+	}
+	
 	public void setAccelerate(int value){
 		this.accelerate = value;
 	}
 	
+	public int getAccelerate(){
+		return this.accelerate;
+	}
+	
+	public float getWheelAngle(){
+		return this.wheelAngle;
+	}
+	
+	public void setWheelAngle(float wheelAngle){
+		/*
+		only meant for restoring saved state, steering goes through setSteer
+		*/
+		this.wheelAngle = wheelAngle;
+	}
+	
+	static float steerWheelAngle(float wheelAngle, int steer, float deltaTime, float minSteerAngle, float maxSteerAngle){
+		/*
+		returns the front wheel angle after one update with the given steer value,
+		shared by every car model so they all turn the same
+		*/
+        //calculate the change in wheel's angle for this update
+        float incr=(maxSteerAngle) * deltaTime * 5;
+        
+        if(steer== STEER_LEFT){
+            Telemetry.count(Telemetry.STEER_LEFT);
+            return Math.min(Math.max(wheelAngle, 0)+incr, minSteerAngle); //increment angle without going over max steer
+        }
+        else if(steer== STEER_RIGHT){
+            Telemetry.count(Telemetry.STEER_RIGHT);
+            return Math.max(Math.min(wheelAngle, 0)-incr, -minSteerAngle); //decrement angle without going over max steer
+        }
+        else if(steer== STEER_HARD_LEFT){
+            Telemetry.count(Telemetry.STEER_HARD_LEFT);
+            return Math.max(Math.min(wheelAngle, 0)+incr, maxSteerAngle);
+        }
+        else if(steer== STEER_HARD_RIGHT){
+            Telemetry.count(Telemetry.STEER_HARD_RIGHT);
+            return Math.max(Math.min(wheelAngle, 0)-incr, -maxSteerAngle);
+        }
+        return 0;
+	}
+	
 	public void update (float deltaTime){
 	    
         //1. KILL SIDEWAYS VELOCITY
         
-        for(Wheel wheel:wheels){
-        	wheel.killSidewaysVelocity();
+        for(int i=0; i<this.wheels.size(); i++){
+        	this.wheels.get(i).killSidewaysVelocity();
         }
         
         //2. SET WHEEL ANGLE
   
-        //calculate the change in wheel's angle for this update
-        float incr=(this.maxSteerAngle) * deltaTime * 5;
-        
-        if(this.steer== STEER_LEFT){
-            this.wheelAngle=Math.min(Math.max(this.wheelAngle, 0)+incr, this.minSteerAngle); //increment angle without going over max steer
-            Gdx.app.log("Steer", "left");
-        }
-        else if(this.steer== STEER_RIGHT){
-            this.wheelAngle=Math.max(Math.min(this.wheelAngle, 0)-incr, -this.minSteerAngle); //decrement angle without going over max steer
-            Gdx.app.log("Steer", "right");
-        }
-        else if(this.steer== STEER_HARD_LEFT){
-            this.wheelAngle=Math.max(Math.min(this.wheelAngle, 0)+incr, this.maxSteerAngle);
-            Gdx.app.log("Steer", "Hard left");
-        }
-        else if(this.steer== STEER_HARD_RIGHT){
-            this.wheelAngle=Math.max(Math.min(this.wheelAngle, 0)-incr, -this.maxSteerAngle);
-            Gdx.app.log("Steer", "Hard right");
-        }
-        else {
-            this.wheelAngle=0;        
-        }
+        this.wheelAngle=steerWheelAngle(this.wheelAngle, this.steer, deltaTime, this.minSteerAngle, this.maxSteerAngle);
 
         //update revolving wheels
-        for(Wheel wheel:this.getRevolvingWheels()) {
-        	wheel.setAngle(this.wheelAngle);
+        for(int i=0; i<this.revolvingWheels.size(); i++) {
+        	this.revolvingWheels.get(i).setAngle(this.wheelAngle);
         }
         
         //3. APPLY FORCE TO WHEELS
-        Vector2 baseVector; //vector pointing in the direction force will be applied to a wheel ; relative to the wheel.
+        //direction force will be applied to a wheel ; relative to the wheel.
+        float baseX, baseY;
         
         //if accelerator is pressed down and speed limit has not been reached, go forwards
         if((this.accelerate== ACC_ACCELERATE) && (this.getSpeedKMH() < this.maxSpeed)){
-        	baseVector= new Vector2(0, -1);
+        	baseX=0; baseY=-1;
         }
         else if(this.accelerate== ACC_BRAKE){
+        	baseX=0;
             //braking, but still moving forwards - increased force
-            if(this.getLocalVelocity().y<0)
-            	baseVector= new Vector2(0f, 1.3f);
+            if(this.getLocalVelocity(localVelocity).y<0)
+            	baseY=1.3f;
             //going in reverse - less force
             else 
-            	baseVector=new Vector2(0f, 0.7f);
+            	baseY=0.7f;
         }
         else if (this.accelerate== ACC_NONE ) {
         	//slow down if not accelerating
-        	baseVector=new Vector2(0, 0);
+        	baseX=0; baseY=0;
             if (this.getSpeedKMH()<7)
                 this.setSpeed(0);
-            else if (this.getLocalVelocity().y<0)
-        		baseVector=new Vector2(0, 0.7f);
-            else if (this.getLocalVelocity().y>0)
-        		baseVector=new Vector2(0, -0.7f);
+            else if (this.getLocalVelocity(localVelocity).y<0)
+        		baseY=0.7f;
+            else if (localVelocity.y>0)
+        		baseY=-0.7f;
+        }
+        else {
+        	baseX=0; baseY=0;
         }
-        else 
-        	baseVector=new Vector2(0, 0);
 
         //multiply by engine power, which gives us a force vector relative to the wheel
-        Vector2 forceVector= new Vector2(this.power*baseVector.x, this.power*baseVector.y);
+        float forceX=this.power*baseX, forceY=this.power*baseY;
 
         //apply force to each wheel
-        for(Wheel wheel:this.getPoweredWheels()){
+        for(int i=0; i<this.poweredWheels.size(); i++){
+           Wheel wheel=this.poweredWheels.get(i);
            Vector2 position= wheel.body.getWorldCenter();
-           wheel.body.applyForce(wheel.body.getWorldVector(new Vector2(forceVector.x, forceVector.y)), position );
+           wheel.body.applyForce(wheel.body.getWorldVector(forceVector.set(forceX, forceY)), position );
         }
         
         //if going very slow, stop - to prevent endless sliding
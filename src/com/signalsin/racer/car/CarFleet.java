@@ -0,0 +1,322 @@
+package com.signalsin.racer.car;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.physics.box2d.Transform;
+import com.badlogic.gdx.physics.box2d.World;
+
+/**
+ * Runs the same driving model as Car.update() for a whole field of cars at
+ * once. Every piece of per-car state lives in flat primitive arrays, and a tick
+ * is done in three passes: read the body state out of Box2D, do all the maths
+ * in plain Java, then write velocities, wheel angles and forces back. Compared
+ * to calling Car.update() on each car this cuts the JNI round trips per car from
+ * dozens down to a handful and keeps the inner loops free of objects.
+ *
+ * Cars are still built through the Car constructor so bodies, fixtures and
+ * joints are identical to the player's car. Don't call update() on a Car that
+ * belongs to a fleet, drive it through the fleet's setters instead.
+ */
+public class CarFleet {
+	
+	public static final int WHEELS_PER_CAR = 4;
+	
+	private final World world;
+	private final int capacity;
+	private int size;
+	
+	private final Car[] cars;
+	private final Body[] chassis;
+	private final Body[] wheels; //WHEELS_PER_CAR entries per car
+	
+	//fixed per car
+	private final float[] power, minSteerAngle, maxSteerAngle, maxSpeed;
+	private final float[] chassisCenterX, chassisCenterY;
+	
+	//fixed per wheel
+	private final boolean[] wheelRevolving, wheelPowered;
+	private final float[] wheelCenterX, wheelCenterY;
+	
+	//inputs and steering state per car
+	private final int[] steer, accelerate;
+	private final float[] wheelAngle;
+	
+	//chassis state read at the start of a tick
+	private final float[] angle, cos, sin, velX, velY, angularVel;
+	private final float[] speedKMH, localVelY;
+	
+	//wheel state read at the start of a tick
+	private final float[] wheelX, wheelY, wheelCos, wheelSin, wheelVelX, wheelVelY;
+	//sideways speed taken off each wheel, same as Wheel.slip
+	private final float[] wheelSlip;
+	
+	//wheel relative drive force per car, and whether the car should be stopped dead
+	private final float[] forceX, forceY;
+	private final boolean[] stop;
+	
+	public CarFleet(World world, int capacity) {
+		this.world = world;
+		this.capacity = capacity;
+		this.size = 0;
+		
+		this.cars = new Car[capacity];
+		this.chassis = new Body[capacity];
+		this.wheels = new Body[capacity * WHEELS_PER_CAR];
+		
+		this.power = new float[capacity];
+		this.minSteerAngle = new float[capacity];
+		this.maxSteerAngle = new float[capacity];
+		this.maxSpeed = new float[capacity];
+		this.chassisCenterX = new float[capacity];
+		this.chassisCenterY = new float[capacity];
+		
+		this.wheelRevolving = new boolean[capacity * WHEELS_PER_CAR];
+		this.wheelPowered = new boolean[capacity * WHEELS_PER_CAR];
+		this.wheelCenterX = new float[capacity * WHEELS_PER_CAR];
+		this.wheelCenterY = new float[capacity * WHEELS_PER_CAR];
+		
+		this.steer = new int[capacity];
+		this.accelerate = new int[capacity];
+		this.wheelAngle = new float[capacity];
+		
+		this.angle = new float[capacity];
+		this.cos = new float[capacity];
+		this.sin = new float[capacity];
+		this.velX = new float[capacity];
+		this.velY = new float[capacity];
+		this.angularVel = new float[capacity];
+		this.speedKMH = new float[capacity];
+		this.localVelY = new float[capacity];
+		
+		this.wheelX = new float[capacity * WHEELS_PER_CAR];
+		this.wheelY = new float[capacity * WHEELS_PER_CAR];
+		this.wheelCos = new float[capacity * WHEELS_PER_CAR];
+		this.wheelSin = new float[capacity * WHEELS_PER_CAR];
+		this.wheelVelX = new float[capacity * WHEELS_PER_CAR];
+		this.wheelVelY = new float[capacity * WHEELS_PER_CAR];
+		this.wheelSlip = new float[capacity * WHEELS_PER_CAR];
+		
+		this.forceX = new float[capacity];
+		this.forceY = new float[capacity];
+		this.stop = new boolean[capacity];
+	}
+	
+	/**
+	 * Creates a car in the fleet's world and returns its index. Arguments are
+	 * the same as for the Car constructor.
+	 */
+	public int add(float width, float length, Vector2 position,
+			float angle, float power, float minSteerAngle, float maxSteerAngle, float maxSpeed) {
+		if (size == capacity)
+			throw new IllegalStateException("CarFleet is full: " + capacity);
+		
+		Car car = new Car(world, width, length, position, angle, power, minSteerAngle, maxSteerAngle, maxSpeed);
+		if (car.wheels.size() != WHEELS_PER_CAR)
+			throw new IllegalStateException("CarFleet expects " + WHEELS_PER_CAR + " wheels per car");
+		
+		int i = size++;
+		this.cars[i] = car;
+		this.chassis[i] = car.body;
+		this.power[i] = power;
+		this.minSteerAngle[i] = minSteerAngle;
+		this.maxSteerAngle[i] = maxSteerAngle;
+		this.maxSpeed[i] = maxSpeed;
+		this.chassisCenterX[i] = car.body.getLocalCenter().x;
+		this.chassisCenterY[i] = car.body.getLocalCenter().y;
+		this.steer[i] = Car.STEER_NONE;
+		this.accelerate[i] = Car.ACC_NONE;
+		this.wheelAngle[i] = 0;
+		
+		for (int w = 0; w < WHEELS_PER_CAR; w++) {
+			Wheel wheel = car.wheels.get(w);
+			int j = i * WHEELS_PER_CAR + w;
+			this.wheels[j] = wheel.body;
+			this.wheelRevolving[j] = wheel.revolving;
+			this.wheelPowered[j] = wheel.powered;
+			this.wheelCenterX[j] = wheel.body.getLocalCenter().x;
+			this.wheelCenterY[j] = wheel.body.getLocalCenter().y;
+		}
+		return i;
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	public Car getCar(int index) {
+		return cars[index];
+	}
+	
+	public World getWorld() {
+		return world;
+	}
+	
+	public void setSteer(int index, int value) {
+		steer[index] = value;
+	}
+	
+	public void setAccelerate(int index, int value) {
+		accelerate[index] = value;
+	}
+	
+	public float getWheelAngle(int index) {
+		return wheelAngle[index];
+	}
+	
+	/**
+	 * Sideways speed the last update() took off a wheel, in meters per second.
+	 */
+	public float getWheelSlip(int index, int wheel) {
+		return wheelSlip[index * WHEELS_PER_CAR + wheel];
+	}
+	
+	/**
+	 * Wheel position as of the start of the last update().
+	 */
+	public float getWheelX(int index, int wheel) {
+		return wheelX[index * WHEELS_PER_CAR + wheel];
+	}
+	
+	public float getWheelY(int index, int wheel) {
+		return wheelY[index * WHEELS_PER_CAR + wheel];
+	}
+	
+	/**
+	 * Speed as of the start of the last update(), in kilometers per hour.
+	 */
+	public float getSpeedKMH(int index) {
+		return speedKMH[index];
+	}
+	
+	public void update(float deltaTime) {
+		readState();
+		killSidewaysVelocity();
+		updateSteering(deltaTime);
+		updateForces();
+		writeForces();
+	}
+	
+	private void readState() {
+		for (int i = 0; i < size; i++) {
+			Body body = chassis[i];
+			float[] t = body.getTransform().vals;
+			cos[i] = t[Transform.COS];
+			sin[i] = t[Transform.SIN];
+			angle[i] = body.getAngle();
+			Vector2 velocity = body.getLinearVelocity();
+			velX[i] = velocity.x;
+			velY[i] = velocity.y;
+			angularVel[i] = body.getAngularVelocity();
+			
+			speedKMH[i] = ((float) Math.sqrt(velX[i] * velX[i] + velY[i] * velY[i]) / 1000) * 3600;
+			//velocity at the chassis origin, rotated into car space
+			localVelY[i] = -sin[i] * velX[i] + cos[i] * velY[i] + angularVel[i] * -chassisCenterX[i];
+		}
+		
+		int wheelCount = size * WHEELS_PER_CAR;
+		for (int j = 0; j < wheelCount; j++) {
+			Body body = wheels[j];
+			float[] t = body.getTransform().vals;
+			wheelX[j] = t[Transform.POS_X];
+			wheelY[j] = t[Transform.POS_Y];
+			wheelCos[j] = t[Transform.COS];
+			wheelSin[j] = t[Transform.SIN];
+			Vector2 velocity = body.getLinearVelocity();
+			wheelVelX[j] = velocity.x;
+			wheelVelY[j] = velocity.y;
+		}
+	}
+	
+	private void killSidewaysVelocity() {
+		for (int i = 0; i < size; i++) {
+			for (int w = 0; w < WHEELS_PER_CAR; w++) {
+				int j = i * WHEELS_PER_CAR + w;
+				
+				//same quantity as Wheel.getLocalVelocity(): the chassis velocity
+				//at the wheel's position, seen from the car
+				float localY = -sin[i] * velX[i] + cos[i] * velY[i]
+						+ angularVel[i] * (wheelX[j] - chassisCenterX[i]);
+				float direction = localY > 0 ? 1 : -1;
+				
+				//(0, direction) rotated by the wheel angle
+				float dirX = -direction * wheelSin[j];
+				float dirY = direction * wheelCos[j];
+				float dotprod = wheelVelX[j] * dirX + wheelVelY[j] * dirY;
+				
+				float keptX = dirX * dotprod, keptY = dirY * dotprod;
+				float slipX = wheelVelX[j] - keptX, slipY = wheelVelY[j] - keptY;
+				wheelSlip[j] = (float) Math.sqrt(slipX * slipX + slipY * slipY);
+				wheelVelX[j] = keptX;
+				wheelVelY[j] = keptY;
+				wheels[j].setLinearVelocity(wheelVelX[j], wheelVelY[j]);
+			}
+		}
+	}
+	
+	private void updateSteering(float deltaTime) {
+		for (int i = 0; i < size; i++) {
+			float current = Car.steerWheelAngle(wheelAngle[i], steer[i], deltaTime, minSteerAngle[i], maxSteerAngle[i]);
+			wheelAngle[i] = current;
+			
+			//turn the revolving wheels, keeping our copy of their rotation in sync
+			float wheelRadians = angle[i] + (float) Math.toRadians(current);
+			float c = (float) Math.cos(wheelRadians);
+			float s = (float) Math.sin(wheelRadians);
+			for (int w = 0; w < WHEELS_PER_CAR; w++) {
+				int j = i * WHEELS_PER_CAR + w;
+				if (!wheelRevolving[j])
+					continue;
+				wheels[j].setTransform(wheelX[j], wheelY[j], wheelRadians);
+				wheelCos[j] = c;
+				wheelSin[j] = s;
+			}
+		}
+	}
+	
+	private void updateForces() {
+		for (int i = 0; i < size; i++) {
+			float baseX = 0, baseY = 0;
+			stop[i] = false;
+			
+			int acc = accelerate[i];
+			if (acc == Car.ACC_ACCELERATE && speedKMH[i] < maxSpeed[i]) {
+				baseY = -1;
+			}
+			else if (acc == Car.ACC_BRAKE) {
+				baseY = localVelY[i] < 0 ? 1.3f : 0.7f;
+			}
+			else if (acc == Car.ACC_NONE) {
+				if (speedKMH[i] < 7)
+					stop[i] = true;
+				else if (localVelY[i] < 0)
+					baseY = 0.7f;
+				else if (localVelY[i] > 0)
+					baseY = -0.7f;
+			}
+			
+			forceX[i] = power[i] * baseX;
+			forceY[i] = power[i] * baseY;
+		}
+	}
+	
+	private void writeForces() {
+		for (int i = 0; i < size; i++) {
+			if (stop[i])
+				chassis[i].setLinearVelocity(0, 0);
+			
+			float fx = forceX[i], fy = forceY[i];
+			for (int w = 0; w < WHEELS_PER_CAR; w++) {
+				int j = i * WHEELS_PER_CAR + w;
+				if (!wheelPowered[j])
+					continue;
+				float c = wheelCos[j], s = wheelSin[j];
+				//wheel space force and centre of mass into world space
+				float worldFx = c * fx - s * fy;
+				float worldFy = s * fx + c * fy;
+				float centerX = wheelX[j] + c * wheelCenterX[j] - s * wheelCenterY[j];
+				float centerY = wheelY[j] + s * wheelCenterX[j] + c * wheelCenterY[j];
+				wheels[j].applyForce(worldFx, worldFy, centerX, centerY);
+			}
+		}
+	}
+}
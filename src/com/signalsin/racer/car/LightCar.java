@@ -0,0 +1,198 @@
+package com.signalsin.racer.car;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.physics.box2d.BodyDef;
+import com.badlogic.gdx.physics.box2d.FixtureDef;
+import com.badlogic.gdx.physics.box2d.PolygonShape;
+import com.badlogic.gdx.physics.box2d.Transform;
+import com.badlogic.gdx.physics.box2d.World;
+
+/**
+ * A car made of a single Box2D body, for AI and background cars where the
+ * full five body Car costs too much. The wheels only exist as points on the
+ * chassis: every update their sideways velocity is cancelled with an impulse
+ * at that point and the drive force is applied there, so there are no joints
+ * to solve and no wheel bodies to teleport when steering.
+ *
+ * Steering, drive and brake follow the same rules as Car and the wheels sit
+ * in the same places, so with grip at 1 it handles like the jointed car that
+ * kills all sideways velocity of its wheels. Lower grip lets it slide.
+ */
+public class LightCar {
+	public Body body;
+	float width, length, maxSteerAngle, minSteerAngle, maxSpeed, power;
+	float wheelAngle;
+	private int steer, accelerate;
+	
+	/** 0..1, share of the wheels' sideways velocity removed every update */
+	public float grip = 1;
+	
+	//wheel positions relative to the chassis, same as Car; front wheels steer and drive
+	private static final float[] WHEEL_X = {-0.5f, 0.5f, -0.5f, 0.5f};
+	private static final float[] WHEEL_Y = {-0.6f, -0.6f, 0.6f, 0.6f};
+	private static final int FRONT_WHEELS = 2;
+	//Car's wheels are 0.2 x 0.4 at density 1, their mass goes into the chassis
+	private static final float WHEEL_MASS = 0.2f * 0.4f;
+	
+	//chassis transform as of the previous physics step, used to interpolate rendering
+	public final Vector2 previousPosition = new Vector2();
+	public float previousAngle;
+	
+	public LightCar(World world, float width, float length, Vector2 position,
+			float angle, float power, float minSteerAngle, float maxSteerAngle, float maxSpeed) {
+		super();
+		this.steer = Car.STEER_NONE;
+		this.accelerate = Car.ACC_NONE;
+		
+		this.width = width;
+		this.length = length;
+		this.maxSteerAngle = maxSteerAngle;
+		this.minSteerAngle = minSteerAngle;
+		this.maxSpeed = maxSpeed;
+		this.power = power;
+		
+		BodyDef bodyDef = new BodyDef();
+		bodyDef.type = BodyDef.BodyType.DynamicBody;
+		bodyDef.position.set(position);
+		bodyDef.angle = angle;
+		this.body = world.createBody(bodyDef);
+		
+		FixtureDef fixtureDef = new FixtureDef();
+		//as heavy as Car's chassis and wheels together
+		fixtureDef.density = (width * length + WHEEL_X.length * WHEEL_MASS) / (width * length);
+		fixtureDef.friction = 0.4f;
+		fixtureDef.restitution = 0.2f;
+		PolygonShape carShape = new PolygonShape();
+		carShape.setAsBox(width / 2, length / 2);
+		fixtureDef.shape = carShape;
+		this.body.createFixture(fixtureDef);
+		carShape.dispose();
+		
+		storePreviousTransform();
+	}
+	
+	public void storePreviousTransform() {
+		this.previousPosition.set(this.body.getPosition());
+		this.previousAngle = this.body.getAngle();
+	}
+	
+	public Vector2 getInterpolatedPosition(float alpha, Vector2 out) {
+		Vector2 position = this.body.getPosition();
+		return out.set(this.previousPosition.x + (position.x - this.previousPosition.x) * alpha,
+				this.previousPosition.y + (position.y - this.previousPosition.y) * alpha);
+	}
+	
+	public float getInterpolatedAngle(float alpha) {
+		return this.previousAngle + (this.body.getAngle() - this.previousAngle) * alpha;
+	}
+	
+	public float getSpeedKMH() {
+		Vector2 velocity = this.body.getLinearVelocity();
+		return (velocity.len() / 1000) * 3600;
+	}
+	
+	public void setSteer(int value) {
+		this.steer = value;
+	}
+	
+	public int getSteer() {
+		return this.steer;
+	}
+	
+	public void setAccelerate(int value) {
+		this.accelerate = value;
+	}
+	
+	public int getAccelerate() {
+		return this.accelerate;
+	}
+	
+	public float getWheelAngle() {
+		return this.wheelAngle;
+	}
+	
+	public void update(float deltaTime) {
+		float[] transform = this.body.getTransform().vals;
+		float cos = transform[Transform.COS], sin = transform[Transform.SIN];
+		Vector2 velocity = this.body.getLinearVelocity();
+		float vx = velocity.x, vy = velocity.y;
+		float omega = this.body.getAngularVelocity();
+		float invMass = 1 / this.body.getMass();
+		float invInertia = 1 / this.body.getInertia();
+		
+		//1. KILL SIDEWAYS VELOCITY
+		//an impulse at each wheel cancels its sideways velocity, like the
+		//jointed car does by resetting the wheel bodies. The wheel angle used
+		//is last update's, which is what Car's wheels are at when they're killed.
+		//wheelAngle is in degrees, like Car's
+		float radians = this.wheelAngle * MathUtils.degreesToRadians;
+		float frontCos = (float) Math.cos(radians), frontSin = (float) Math.sin(radians);
+		for (int i = 0; i < WHEEL_X.length; i++) {
+			//wheel's sideways axis in car space, then world space
+			float localX = i < FRONT_WHEELS ? frontCos : 1;
+			float localY = i < FRONT_WHEELS ? frontSin : 0;
+			float sideX = cos * localX - sin * localY;
+			float sideY = sin * localX + cos * localY;
+			//lever arm from the centre of mass
+			float rx = cos * WHEEL_X[i] - sin * WHEEL_Y[i];
+			float ry = sin * WHEEL_X[i] + cos * WHEEL_Y[i];
+			
+			float pointVX = vx - omega * ry;
+			float pointVY = vy + omega * rx;
+			float sideSpeed = pointVX * sideX + pointVY * sideY;
+			float arm = rx * sideY - ry * sideX;
+			float impulse = -this.grip * sideSpeed / (invMass + arm * arm * invInertia);
+			
+			vx += sideX * impulse * invMass;
+			vy += sideY * impulse * invMass;
+			omega += arm * impulse * invInertia;
+		}
+		this.body.setLinearVelocity(vx, vy);
+		this.body.setAngularVelocity(omega);
+		
+		//2. SET WHEEL ANGLE
+		this.wheelAngle = Car.steerWheelAngle(this.wheelAngle, this.steer, deltaTime, this.minSteerAngle, this.maxSteerAngle);
+		
+		//3. APPLY FORCE TO WHEELS
+		//same force rules as Car, relative to the wheel
+		float forwardSpeed = -(vx * -sin + vy * cos); //>0 when moving towards the car's front (local -y)
+		float speedKMH = (float) Math.sqrt(vx * vx + vy * vy) * 3.6f;
+		float baseY = 0;
+		if (this.accelerate == Car.ACC_ACCELERATE && speedKMH < this.maxSpeed) {
+			baseY = -1;
+		} else if (this.accelerate == Car.ACC_BRAKE) {
+			//braking while still moving forwards gets more force than reversing
+			baseY = forwardSpeed > 0 ? 1.3f : 0.7f;
+		} else if (this.accelerate == Car.ACC_NONE) {
+			if (speedKMH < 7) {
+				this.body.setLinearVelocity(0, 0);
+			} else if (forwardSpeed > 0) {
+				baseY = 0.7f;
+			} else if (forwardSpeed < 0) {
+				baseY = -0.7f;
+			}
+		}
+		if (baseY == 0)
+			return;
+		
+		//the front wheels push along their rolling direction; sum them into one
+		//force and the torque it makes about the centre of mass
+		radians = this.wheelAngle * MathUtils.degreesToRadians;
+		float localForceX = -this.power * baseY * (float) Math.sin(radians);
+		float localForceY = this.power * baseY * (float) Math.cos(radians);
+		float forceX = cos * localForceX - sin * localForceY;
+		float forceY = sin * localForceX + cos * localForceY;
+		float totalX = 0, totalY = 0, torque = 0;
+		for (int i = 0; i < FRONT_WHEELS; i++) {
+			float rx = cos * WHEEL_X[i] - sin * WHEEL_Y[i];
+			float ry = sin * WHEEL_X[i] + cos * WHEEL_Y[i];
+			totalX += forceX;
+			totalY += forceY;
+			torque += rx * forceY - ry * forceX;
+		}
+		this.body.applyForceToCenter(totalX, totalY);
+		this.body.applyTorque(torque);
+	}
+}
@@ -24,6 +24,15 @@ public class Wheel {
 	public boolean revolving; // does this wheel revolve when steering?
 	public boolean powered; // is this wheel powered?
 	public Body body;
+	
+	//scratch vector so killSidewaysVelocity doesn't allocate every tick
+	private final Vector2 killVelocity = new Vector2();
+	
+	/**
+	 * Sideways speed the last killSidewaysVelocity() took away, in meters per
+	 * second: how hard the wheel is sliding, for skid marks and smoke.
+	 */
+	public float slip;
 
 	public Wheel(World world, Car car, float posX, float posY, float width, float length,
 			boolean revolving, boolean powered) {
@@ -76,20 +85,33 @@ public class Wheel {
 	public Vector2 getLocalVelocity () {
 	    /*returns get velocity vector relative to car
 	    */
-	    return this.car.body.getLocalVector(this.car.body.getLinearVelocityFromLocalPoint(this.body.getPosition()));
+	    return getLocalVelocity(new Vector2());
+	};
+
+	public Vector2 getLocalVelocity (Vector2 out) {
+	    /*
+	    same as getLocalVelocity() but writes into out instead of allocating
+	    */
+	    return out.set(this.car.body.getLocalVector(this.car.body.getLinearVelocityFromLocalPoint(this.body.getPosition())));
 	};
 
 	public Vector2 getDirectionVector () {
 	    /*
 	    returns a world unit vector pointing in the direction this wheel is moving
 	    */
-		Vector2 directionVector;
-		if (this.getLocalVelocity().y > 0)
-			directionVector = new Vector2(0,1);
+		return getDirectionVector(new Vector2());
+	};
+
+	public Vector2 getDirectionVector (Vector2 out) {
+	    /*
+	    same as getDirectionVector() but writes into out instead of allocating
+	    */
+		if (this.getLocalVelocity(out).y > 0)
+			out.set(0,1);
 		else
-			directionVector = new Vector2(0,-1);
+			out.set(0,-1);
 			
-		return directionVector.rotate((float) Math.toDegrees(this.body.getAngle()));	    
+		return out.rotate((float) Math.toDegrees(this.body.getAngle()));	    
 	};
 
 
@@ -97,16 +119,28 @@ public class Wheel {
 	    /*
 	    substracts sideways velocity from this wheel's velocity vector and returns the remaining front-facing velocity vector
 	    */
+	    return getKillVelocityVector(new Vector2());
+	};
+
+	public Vector2 getKillVelocityVector (Vector2 out){
+	    /*
+	    same as getKillVelocityVector() but writes into out instead of allocating
+	    */
+	    Vector2 sidewaysAxis=this.getDirectionVector(out);
 	    Vector2 velocity = this.body.getLinearVelocity();
-	    Vector2 sidewaysAxis=this.getDirectionVector();
 	    float dotprod = velocity.dot(sidewaysAxis);
-	    return new Vector2(sidewaysAxis.x*dotprod, sidewaysAxis.y*dotprod);
+	    return out.set(sidewaysAxis.x*dotprod, sidewaysAxis.y*dotprod);
 	};
 
 	public void killSidewaysVelocity (){
 	    /*
 	    removes all sideways velocity from this wheels velocity
 	    */
-	    this.body.setLinearVelocity(this.getKillVelocityVector());
+	    Vector2 velocity = this.body.getLinearVelocity();
+	    float velX = velocity.x, velY = velocity.y;
+	    Vector2 kept = this.getKillVelocityVector(this.killVelocity);
+	    float dx = velX - kept.x, dy = velY - kept.y;
+	    this.slip = (float) Math.sqrt(dx * dx + dy * dy);
+	    this.body.setLinearVelocity(kept);
 	};
 }
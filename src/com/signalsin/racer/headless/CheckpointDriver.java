@@ -0,0 +1,68 @@
+package com.signalsin.racer.headless;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.physics.box2d.Body;
+import com.signalsin.racer.car.Car;
+import com.signalsin.racer.car.CarFleet;
+
+/**
+ * Simplest possible race driver: full throttle, steer at the next checkpoint
+ * and brake for it when the turn is too tight at speed.
+ */
+public class CheckpointDriver implements RaceDriver {
+	
+	private final float steerThreshold;
+	private final float hardSteerThreshold;
+	private final float brakeAngle;
+	private final float brakeSpeed;
+	
+	public CheckpointDriver() {
+		this(3, 25, 60, 40);
+	}
+	
+	/**
+	 * @param steerThreshold heading error in degrees before the driver steers at all
+	 * @param hardSteerThreshold heading error in degrees before the driver steers hard
+	 * @param brakeAngle heading error in degrees above which it brakes...
+	 * @param brakeSpeed ...if going faster than this, in km/h
+	 */
+	public CheckpointDriver(float steerThreshold, float hardSteerThreshold, float brakeAngle, float brakeSpeed) {
+		this.steerThreshold = steerThreshold;
+		this.hardSteerThreshold = hardSteerThreshold;
+		this.brakeAngle = brakeAngle;
+		this.brakeSpeed = brakeSpeed;
+	}
+	
+	public void beginTick(CarFleet fleet, int tick) {
+	}
+	
+	public void drive(CarFleet fleet, int car, float targetX, float targetY) {
+		Body body = fleet.getCar(car).body;
+		float angle = body.getAngle();
+		//cars drive towards local -y
+		float forwardX = MathUtils.sin(angle);
+		float forwardY = -MathUtils.cos(angle);
+		float toX = targetX - body.getPosition().x;
+		float toY = targetY - body.getPosition().y;
+		
+		//signed angle from heading to target, positive is to the left
+		float error = MathUtils.radiansToDegrees
+				* (float) Math.atan2(forwardX * toY - forwardY * toX, forwardX * toX + forwardY * toY);
+		
+		if (error > hardSteerThreshold)
+			fleet.setSteer(car, Car.STEER_HARD_LEFT);
+		else if (error > steerThreshold)
+			fleet.setSteer(car, Car.STEER_LEFT);
+		else if (error < -hardSteerThreshold)
+			fleet.setSteer(car, Car.STEER_HARD_RIGHT);
+		else if (error < -steerThreshold)
+			fleet.setSteer(car, Car.STEER_RIGHT);
+		else
+			fleet.setSteer(car, Car.STEER_NONE);
+		
+		if (Math.abs(error) > brakeAngle && fleet.getSpeedKMH(car) > brakeSpeed)
+			fleet.setAccelerate(car, Car.ACC_BRAKE);
+		else
+			fleet.setAccelerate(car, Car.ACC_ACCELERATE);
+	}
+}
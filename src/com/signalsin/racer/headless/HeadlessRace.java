@@ -0,0 +1,187 @@
+package com.signalsin.racer.headless;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.physics.box2d.World;
+import com.signalsin.racer.car.CarFleet;
+import com.signalsin.racer.replay.Ghost;
+import com.signalsin.racer.replay.GhostRecorder;
+import com.signalsin.racer.track.TrackGeometryBuilder;
+import com.signalsin.racer.track.TrackStreamer;
+
+/**
+ * A single race simulated from a RaceDescription with no rendering at all.
+ * Owns its own Box2D World, so any number of these can run side by side as
+ * long as each one stays on one thread at a time.
+ */
+public class HeadlessRace {
+	
+	private static final float TRACK_REGION_SIZE = 32;
+	
+	private final RaceDescription description;
+	private final RaceDriver driver;
+	private World world;
+	private CarFleet fleet;
+	private TrackStreamer streamer;
+	
+	//per car race progress
+	private int[] nextCheckpoint;
+	private int[] lapsDone;
+	private float[] lapStart;
+	private float[] speedSum;
+	private float[] lastX, lastY;
+	private GhostRecorder[] ghosts;
+	private int[] ghostMark;
+	
+	public HeadlessRace(RaceDescription description, RaceDriver driver) {
+		//with only the start/finish line every car would finish a lap on its first tick
+		if (description.checkpoints.size() < 2)
+			throw new IllegalArgumentException("A race needs at least two checkpoints");
+		this.description = description;
+		this.driver = driver;
+	}
+	
+	/**
+	 * Builds the world, runs the race to the end (every car finished or the
+	 * time limit reached) and throws the world away again.
+	 */
+	public RaceResult run() {
+		long start = System.nanoTime();
+		RaceResult result = new RaceResult(description);
+		create();
+		try {
+			float step = 1f / description.stepsPerSecond;
+			int maxTicks = (int) (description.timeLimitSeconds * description.stepsPerSecond);
+			int tick = 0;
+			while (tick < maxTicks && !result.allFinished()) {
+				tick(tick, step, result);
+				tick++;
+			}
+			result.ticks = tick;
+			result.raceTime = tick * step;
+			for (int i = 0; i < result.cars.length; i++) {
+				if (tick > 0)
+					result.cars[i].averageSpeedKMH = speedSum[i] / tick;
+			}
+		} finally {
+			dispose();
+		}
+		result.nanos = System.nanoTime() - start;
+		return result;
+	}
+	
+	private void create() {
+		world = new World(new Vector2(0.0f, 0.0f), true);
+		if (description.streamChunkSize > 0) {
+			//no time budget, so the result doesn't depend on how fast the machine is
+			streamer = new TrackStreamer(world, description.streamChunkSize, description.streamRadius,
+					description.streamRadius + description.streamChunkSize, 0, 256);
+			if (description.track != null)
+				description.track.stream(world, streamer);
+			for (RaceDescription.Prop prop : description.props)
+				streamer.addProp(prop.x, prop.y, prop.width, prop.height);
+		} else {
+			TrackGeometryBuilder track = new TrackGeometryBuilder(TRACK_REGION_SIZE);
+			for (RaceDescription.Prop prop : description.props)
+				track.addBox(prop.width, prop.height, prop.x, prop.y);
+			if (description.track != null)
+				description.track.build(world, track);
+			else
+				track.build(world);
+		}
+		
+		int count = description.entries.size();
+		fleet = new CarFleet(world, count);
+		nextCheckpoint = new int[count];
+		lapsDone = new int[count];
+		lapStart = new float[count];
+		speedSum = new float[count];
+		lastX = new float[count];
+		lastY = new float[count];
+		if (description.ghostSampleRate > 0) {
+			ghosts = new GhostRecorder[count];
+			ghostMark = new int[count];
+			for (int i = 0; i < count; i++)
+				ghosts[i] = new GhostRecorder(description.ghostSampleRate, (int) description.stepsPerSecond,
+						description.timeLimitSeconds);
+		}
+		
+		//cars start on the start/finish checkpoint and head for the next one
+		for (int i = 0; i < count; i++) {
+			RaceDescription.Entry entry = description.entries.get(i);
+			fleet.add(entry.width, entry.length, new Vector2(entry.x, entry.y), entry.angle,
+					entry.power, entry.minSteerAngle, entry.maxSteerAngle, entry.maxSpeed);
+			nextCheckpoint[i] = 1;
+			lastX[i] = entry.x;
+			lastY[i] = entry.y;
+		}
+	}
+	
+	private void tick(int tick, float step, RaceResult result) {
+		driver.beginTick(fleet, tick);
+		for (int i = 0; i < fleet.size(); i++) {
+			RaceDescription.Checkpoint target = description.checkpoints.get(nextCheckpoint[i]);
+			driver.drive(fleet, i, target.x, target.y);
+		}
+		if (streamer != null)
+			streamer.update(lastX, lastY, fleet.size());
+		fleet.update(step);
+		world.step(step, description.velocityIterations, description.positionIterations);
+		
+		float now = (tick + 1) * step;
+		for (int i = 0; i < fleet.size(); i++) {
+			RaceResult.CarResult car = result.cars[i];
+			Body body = fleet.getCar(i).body;
+			float x = body.getPosition().x;
+			float y = body.getPosition().y;
+			
+			float speed = fleet.getSpeedKMH(i);
+			speedSum[i] += speed;
+			car.topSpeedKMH = Math.max(car.topSpeedKMH, speed);
+			float movedX = x - lastX[i], movedY = y - lastY[i];
+			car.distance += (float) Math.sqrt(movedX * movedX + movedY * movedY);
+			lastX[i] = x;
+			lastY[i] = y;
+			if (ghosts != null && !car.finished)
+				ghosts[i].update(body);
+			
+			if (car.finished)
+				continue;
+			
+			RaceDescription.Checkpoint target = description.checkpoints.get(nextCheckpoint[i]);
+			float dx = x - target.x, dy = y - target.y;
+			if (dx * dx + dy * dy > target.radius * target.radius)
+				continue;
+			
+			//checkpoint 0 is the start/finish line
+			if (nextCheckpoint[i] == 0) {
+				//keep the lap as a ghost if it's the car's fastest so far
+				if (ghosts != null) {
+					if (car.lapTimes.size == 0 || now - lapStart[i] < car.getBestLap()) {
+						Ghost lap = ghosts[i].cut(ghostMark[i]);
+						if (lap != null)
+							car.bestLapGhost = lap;
+					}
+					ghostMark[i] = ghosts[i].mark();
+				}
+				car.lapTimes.add(now - lapStart[i]);
+				lapStart[i] = now;
+				lapsDone[i]++;
+				if (lapsDone[i] >= description.laps) {
+					car.finished = true;
+					car.finishTime = now;
+				}
+			}
+			nextCheckpoint[i] = (nextCheckpoint[i] + 1) % description.checkpoints.size();
+		}
+	}
+	
+	private void dispose() {
+		if (world != null)
+			world.dispose();
+		world = null;
+		fleet = null;
+		streamer = null;
+		ghosts = null;
+	}
+}
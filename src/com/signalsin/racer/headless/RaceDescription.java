@@ -0,0 +1,116 @@
+package com.signalsin.racer.headless;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.signalsin.racer.trackfile.TrackFile;
+
+/**
+ * Everything needed to build and run a race without a screen: the track as a
+ * set of static boxes, where the cars start, the checkpoints that make up a lap
+ * and the settings of every car. Plain data, so descriptions can be generated in
+ * bulk for parameter sweeps and handed to a RaceRunner.
+ */
+public class RaceDescription {
+	
+	public static class Prop {
+		public final float x, y, width, height;
+		
+		public Prop(float x, float y, float width, float height) {
+			this.x = x;
+			this.y = y;
+			this.width = width;
+			this.height = height;
+		}
+	}
+	
+	public static class Checkpoint {
+		public final float x, y, radius;
+		
+		public Checkpoint(float x, float y, float radius) {
+			this.x = x;
+			this.y = y;
+			this.radius = radius;
+		}
+	}
+	
+	/**
+	 * One car on the grid: where it starts and the same tuning values the Car
+	 * constructor takes.
+	 */
+	public static class Entry {
+		public final float x, y, angle;
+		public final float width, length, power, minSteerAngle, maxSteerAngle, maxSpeed;
+		
+		public Entry(float x, float y, float angle, float width, float length,
+				float power, float minSteerAngle, float maxSteerAngle, float maxSpeed) {
+			this.x = x;
+			this.y = y;
+			this.angle = angle;
+			this.width = width;
+			this.length = length;
+			this.power = power;
+			this.minSteerAngle = minSteerAngle;
+			this.maxSteerAngle = maxSteerAngle;
+			this.maxSpeed = maxSpeed;
+		}
+	}
+	
+	public final List<Prop> props = new ArrayList<Prop>();
+	/**
+	 * A compiled track whose props are built instead of the props list. One
+	 * TrackFile can be shared by every description that races on it.
+	 */
+	public TrackFile track;
+	public final List<Checkpoint> checkpoints = new ArrayList<Checkpoint>();
+	public final List<Entry> entries = new ArrayList<Entry>();
+	
+	public int laps = 3;
+	public float stepsPerSecond = 60;
+	public int velocityIterations = 3;
+	public int positionIterations = 3;
+	/** Give up after this much simulated time even if not every car has finished. */
+	public float timeLimitSeconds = 600;
+	/**
+	 * When above zero the track is streamed in chunks of this size around the
+	 * cars instead of being built upfront, see TrackStreamer.
+	 */
+	public float streamChunkSize = 0;
+	/** Props within this distance of a car are in the world when streaming. */
+	public float streamRadius = 40;
+	/**
+	 * Samples per second for recording every car's best lap as a ghost, 0 to
+	 * not record. Has to divide stepsPerSecond.
+	 */
+	public int ghostSampleRate = 0;
+	
+	public RaceDescription addProp(float x, float y, float width, float height) {
+		props.add(new Prop(x, y, width, height));
+		return this;
+	}
+	
+	/**
+	 * Races on a compiled track: its props, checkpoints and lap count replace
+	 * whatever this description had. Entries still have to be added, usually
+	 * one per spawn point of the track.
+	 */
+	public RaceDescription useTrack(TrackFile track) {
+		this.track = track;
+		props.clear();
+		checkpoints.clear();
+		for (int i = 0; i < track.getCheckpointCount(); i++)
+			addCheckpoint(track.getCheckpointX(i), track.getCheckpointY(i), track.getCheckpointRadius(i));
+		laps = track.getLaps();
+		return this;
+	}
+	
+	public RaceDescription addCheckpoint(float x, float y, float radius) {
+		checkpoints.add(new Checkpoint(x, y, radius));
+		return this;
+	}
+	
+	public RaceDescription addEntry(Entry entry) {
+		entries.add(entry);
+		return this;
+	}
+}
@@ -0,0 +1,24 @@
+package com.signalsin.racer.headless;
+
+import com.signalsin.racer.car.CarFleet;
+
+/**
+ * Decides the inputs of one car for the coming tick, by calling
+ * setSteer/setAccelerate on the fleet.
+ */
+public interface RaceDriver {
+	
+	/**
+	 * Called once per tick before drive() is called for each car, for
+	 * drivers that work on the whole field at once.
+	 */
+	void beginTick(CarFleet fleet, int tick);
+	
+	/**
+	 * @param fleet the race's cars
+	 * @param car index of the car to drive
+	 * @param targetX world position of the checkpoint the car is heading for
+	 * @param targetY world position of the checkpoint the car is heading for
+	 */
+	void drive(CarFleet fleet, int car, float targetX, float targetY);
+}
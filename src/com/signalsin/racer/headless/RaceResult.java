@@ -0,0 +1,55 @@
+package com.signalsin.racer.headless;
+
+import com.badlogic.gdx.utils.FloatArray;
+import com.signalsin.racer.replay.Ghost;
+
+/**
+ * What came out of one headless race: lap times and a few telemetry values
+ * for every car, in the order of RaceDescription.entries.
+ */
+public class RaceResult {
+	
+	public static class CarResult {
+		/** Time of every completed lap, in simulated seconds. */
+		public final FloatArray lapTimes = new FloatArray();
+		public boolean finished;
+		/** Simulated seconds from the start until the last lap was completed. */
+		public float finishTime;
+		public float topSpeedKMH;
+		public float averageSpeedKMH;
+		/** Distance driven, in meters. */
+		public float distance;
+		/** The fastest lap as a ghost, when RaceDescription.ghostSampleRate is set. */
+		public Ghost bestLapGhost;
+		
+		public float getBestLap() {
+			float best = Float.MAX_VALUE;
+			for (int i = 0; i < lapTimes.size; i++)
+				best = Math.min(best, lapTimes.get(i));
+			return lapTimes.size == 0 ? 0 : best;
+		}
+	}
+	
+	public final RaceDescription description;
+	public final CarResult[] cars;
+	/** Simulated time when the race stopped. */
+	public float raceTime;
+	public int ticks;
+	/** Wall clock time the simulation took. */
+	public long nanos;
+	
+	public RaceResult(RaceDescription description) {
+		this.description = description;
+		this.cars = new CarResult[description.entries.size()];
+		for (int i = 0; i < cars.length; i++)
+			cars[i] = new CarResult();
+	}
+	
+	public boolean allFinished() {
+		for (CarResult car : cars) {
+			if (!car.finished)
+				return false;
+		}
+		return true;
+	}
+}
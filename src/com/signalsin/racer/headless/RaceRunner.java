@@ -0,0 +1,100 @@
+package com.signalsin.racer.headless;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import com.badlogic.gdx.utils.GdxNativesLoader;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * Runs many independent headless races in parallel, one race per worker at a
+ * time. Each race has its own World and nothing is shared between them, so
+ * throughput grows with the number of cores. Typical use is a parameter sweep:
+ * build one RaceDescription per set of Car settings and hand the whole list to
+ * runAll().
+ *
+ * Needs the gdx natives on the classpath, no GL context or Gdx.app.
+ */
+public class RaceRunner {
+	
+	/**
+	 * Creates a fresh driver per race, so drivers are free to keep state
+	 * without worrying about other threads.
+	 */
+	public interface DriverFactory {
+		RaceDriver newDriver(RaceDescription description);
+	}
+	
+	private static final DriverFactory CHECKPOINT_DRIVERS = new DriverFactory() {
+		public RaceDriver newDriver(RaceDescription description) {
+			return new CheckpointDriver();
+		}
+	};
+	
+	private final ExecutorService executor;
+	private final DriverFactory drivers;
+	
+	/**
+	 * A runner with one worker per available core and the default checkpoint driver.
+	 */
+	public RaceRunner() {
+		this(Runtime.getRuntime().availableProcessors(), CHECKPOINT_DRIVERS);
+	}
+	
+	public RaceRunner(int threads, DriverFactory drivers) {
+		GdxNativesLoader.load();
+		this.drivers = drivers;
+		this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			private int count;
+			
+			public synchronized Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "race-runner-" + (count++));
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+	
+	/**
+	 * Queues a race and returns straight away.
+	 */
+	public Future<RaceResult> submit(final RaceDescription description) {
+		return executor.submit(new Callable<RaceResult>() {
+			public RaceResult call() {
+				return new HeadlessRace(description, drivers.newDriver(description)).run();
+			}
+		});
+	}
+	
+	/**
+	 * Runs all races and waits for them. Results come back in the same order as
+	 * the descriptions.
+	 */
+	public List<RaceResult> runAll(List<RaceDescription> descriptions) {
+		List<Future<RaceResult>> futures = new ArrayList<Future<RaceResult>>(descriptions.size());
+		for (RaceDescription description : descriptions)
+			futures.add(submit(description));
+		
+		List<RaceResult> results = new ArrayList<RaceResult>(futures.size());
+		try {
+			for (Future<RaceResult> future : futures)
+				results.add(future.get());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new GdxRuntimeException("Interrupted while waiting for races", e);
+		} catch (ExecutionException e) {
+			throw new GdxRuntimeException("Race failed", e.getCause());
+		}
+		return results;
+	}
+	
+	public void dispose() {
+		executor.shutdownNow();
+	}
+}
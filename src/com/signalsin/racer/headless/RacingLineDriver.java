@@ -0,0 +1,46 @@
+package com.signalsin.racer.headless;
+
+import com.signalsin.racer.ai.AIDriver;
+import com.signalsin.racer.ai.RacingLine;
+import com.signalsin.racer.car.CarFleet;
+
+/**
+ * Races the whole field with an AIDriver, following a racing line through
+ * the centres of the checkpoints. Decisions are made in beginTick() for a
+ * share of the cars at a time, drive() has nothing left to do.
+ */
+public class RacingLineDriver implements RaceDriver {
+	
+	private final AIDriver ai;
+	
+	public RacingLineDriver(RaceDescription description) {
+		this(description, 4);
+	}
+	
+	/**
+	 * @param decisionInterval ticks between decisions of one car
+	 */
+	public RacingLineDriver(RaceDescription description, int decisionInterval) {
+		int count = description.checkpoints.size();
+		if (count < 3)
+			throw new IllegalArgumentException("A racing line needs at least three checkpoints");
+		float[] points = new float[count * 2];
+		for (int i = 0; i < count; i++) {
+			RaceDescription.Checkpoint checkpoint = description.checkpoints.get(i);
+			points[i * 2] = checkpoint.x;
+			points[i * 2 + 1] = checkpoint.y;
+		}
+		float maxSpeed = 0;
+		for (RaceDescription.Entry entry : description.entries)
+			maxSpeed = Math.max(maxSpeed, entry.maxSpeed);
+		RacingLine line = new RacingLine(points, 1, maxSpeed, 8, 10);
+		ai = new AIDriver(line, description.entries.size(), decisionInterval);
+	}
+	
+	public void beginTick(CarFleet fleet, int tick) {
+		ai.update(fleet, tick);
+	}
+	
+	public void drive(CarFleet fleet, int car, float targetX, float targetY) {
+	}
+}
@@ -0,0 +1,21 @@
+package com.signalsin.racer.input;
+
+/**
+ * Something that decides a car's inputs tick by tick: the player's touch,
+ * keys and tilt, a recorded race, or a computer driver. The game loop asks
+ * it to advance to every physics tick and then reads steer and accelerate
+ * (the Car.STEER_* and Car.ACC_* values) for that tick.
+ */
+public interface InputSource {
+	
+	/**
+	 * Moves the source on to a physics tick.
+	 * @param tick number of the tick about to be simulated
+	 * @param tickTime wall clock time the tick stands for, TimeUtils.nanoTime() based
+	 */
+	public void advance(int tick, long tickTime);
+	
+	public int getSteer();
+	
+	public int getAccelerate();
+}
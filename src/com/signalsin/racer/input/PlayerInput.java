@@ -0,0 +1,239 @@
+package com.signalsin.racer.input;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Input.Keys;
+import com.badlogic.gdx.InputProcessor;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.utils.TimeUtils;
+import com.signalsin.racer.car.Car;
+
+/**
+ * The player's controls, collected as events rather than polled once per
+ * frame. Touches and keys arrive through the InputProcessor callbacks and go
+ * into a fixed size queue stamped with TimeUtils.nanoTime() as they arrive,
+ * the clock the tick times are on; advance() applies everything up to a
+ * tick's time before that tick is simulated. A tap shorter than a frame still
+ * gets at least one tick of throttle, and input lands on the tick it belongs
+ * to rather than whichever frame happened to poll it.
+ *
+ * Tilt has no events, it is a reading taken by sampleTilt() once a frame.
+ * It doesn't queue behind anything: every tick after a reading is taken
+ * filters the newest one, so a frame's reading already steers that frame's
+ * ticks. The low pass filter runs on tick time, and the steering thresholds
+ * have a little hysteresis so a hand holding the phone near a threshold
+ * doesn't make the wheels twitch.
+ *
+ * The queue has one writer (the thread input arrives on) and one reader
+ * (whoever calls advance()), so the simulation can run on its own thread.
+ *
+ * Touch anywhere to accelerate, tilt to steer. On desktop the arrow keys do
+ * the same, with down to brake and shift to steer hard.
+ */
+public class PlayerInput implements InputSource, InputProcessor {
+	
+	private static final int TOUCH_DOWN = 0;
+	private static final int TOUCH_UP = 1;
+	private static final int KEY_DOWN = 2;
+	private static final int KEY_UP = 3;
+	
+	//accelerometer y thresholds for steering, and the band around them
+	private static final float TILT_STEER = 1;
+	private static final float TILT_HARD_STEER = 2.5f;
+	private static final float TILT_HYSTERESIS = 0.2f;
+	
+	//event queue; each counter only ever moves on its own side
+	private final int mask;
+	private final long[] times;
+	private final int[] types;
+	private final int[] codes;
+	private volatile int written, read;
+	private volatile int dropped;
+	
+	//newest accelerometer reading, written by sampleTilt()
+	private volatile float tiltSample;
+	private volatile boolean tiltSampled;
+	
+	//state as of the last advance()
+	private int touches;
+	private boolean touchedThisTick;
+	private boolean left, right, up, down, hard;
+	private float tilt;
+	private long lastTiltTime;
+	private int tiltSteer = Car.STEER_NONE;
+	
+	/** Time constant of the tilt filter in seconds, 0 for no filtering. */
+	public float tiltSmoothing = 0.08f;
+	public boolean useAccelerometer = true;
+	
+	/**
+	 * @param capacity queue size, rounded up to a power of two
+	 */
+	public PlayerInput(int capacity) {
+		capacity = MathUtils.nextPowerOfTwo(capacity);
+		this.mask = capacity - 1;
+		times = new long[capacity];
+		types = new int[capacity];
+		codes = new int[capacity];
+	}
+	
+	/**
+	 * Reads the accelerometer; call once a frame, before the physics ticks.
+	 * Sensors have no events of their own.
+	 */
+	public void sampleTilt() {
+		if (!useAccelerometer)
+			return;
+		tiltSample = Gdx.input.getAccelerometerY();
+		tiltSampled = true;
+	}
+	
+	private void push(int type, int code) {
+		int w = written;
+		//the reader owns everything it hasn't consumed yet
+		if (w - read > mask) {
+			dropped++;
+			return;
+		}
+		int slot = w & mask;
+		//the backends' event times are on other clocks, so stamp on arrival
+		times[slot] = TimeUtils.nanoTime();
+		types[slot] = type;
+		codes[slot] = code;
+		written = w + 1;
+	}
+	
+	public void advance(int tick, long tickTime) {
+		touchedThisTick = false;
+		int r = read;
+		int w = written;
+		while (r != w && times[r & mask] <= tickTime) {
+			int slot = r & mask;
+			apply(types[slot], codes[slot]);
+			r++;
+		}
+		read = r;
+		if (useAccelerometer && tiltSampled)
+			filterTilt(tiltSample, tickTime);
+	}
+	
+	private void apply(int type, int code) {
+		switch (type) {
+		case TOUCH_DOWN:
+			touches++;
+			touchedThisTick = true;
+			break;
+		case TOUCH_UP:
+			touches = Math.max(0, touches - 1);
+			break;
+		case KEY_DOWN:
+		case KEY_UP:
+			boolean pressed = type == KEY_DOWN;
+			if (code == Keys.LEFT)
+				left = pressed;
+			else if (code == Keys.RIGHT)
+				right = pressed;
+			else if (code == Keys.UP)
+				up = pressed;
+			else if (code == Keys.DOWN)
+				down = pressed;
+			else if (code == Keys.SHIFT_LEFT || code == Keys.SHIFT_RIGHT)
+				hard = pressed;
+			break;
+		}
+	}
+	
+	private void filterTilt(float value, long time) {
+		if (lastTiltTime == 0 || tiltSmoothing <= 0) {
+			tilt = value;
+		} else {
+			float dt = (time - lastTiltTime) / 1000000000f;
+			float k = 1 - (float) Math.exp(-dt / tiltSmoothing);
+			tilt += (value - tilt) * k;
+		}
+		lastTiltTime = time;
+		
+		//a band is entered a little past its edge and left a little inside it
+		float magnitude = Math.abs(tilt);
+		int level = tiltSteer == Car.STEER_NONE ? 0
+				: (tiltSteer == Car.STEER_HARD_LEFT || tiltSteer == Car.STEER_HARD_RIGHT) ? 2 : 1;
+		boolean wasLeft = tiltSteer == Car.STEER_LEFT || tiltSteer == Car.STEER_HARD_LEFT;
+		if (level > 0 && wasLeft != (tilt < 0))
+			level = 0;
+		if (magnitude > TILT_HARD_STEER + (level == 2 ? -TILT_HYSTERESIS : TILT_HYSTERESIS))
+			level = 2;
+		else if (magnitude > TILT_STEER + (level >= 1 ? -TILT_HYSTERESIS : TILT_HYSTERESIS))
+			level = 1;
+		else
+			level = 0;
+		
+		if (level == 0)
+			tiltSteer = Car.STEER_NONE;
+		else if (tilt < 0)
+			tiltSteer = level == 2 ? Car.STEER_HARD_LEFT : Car.STEER_LEFT;
+		else
+			tiltSteer = level == 2 ? Car.STEER_HARD_RIGHT : Car.STEER_RIGHT;
+	}
+	
+	public int getSteer() {
+		if (left != right) {
+			if (left)
+				return hard ? Car.STEER_HARD_LEFT : Car.STEER_LEFT;
+			return hard ? Car.STEER_HARD_RIGHT : Car.STEER_RIGHT;
+		}
+		return useAccelerometer ? tiltSteer : Car.STEER_NONE;
+	}
+	
+	public int getAccelerate() {
+		if (down)
+			return Car.ACC_BRAKE;
+		if (up || touches > 0 || touchedThisTick)
+			return Car.ACC_ACCELERATE;
+		return Car.ACC_NONE;
+	}
+	
+	/** Filtered accelerometer y, as used for steering. */
+	public float getTilt() {
+		return tilt;
+	}
+	
+	/** Events lost because the queue was full. */
+	public int getDropped() {
+		return dropped;
+	}
+	
+	public boolean touchDown(int screenX, int screenY, int pointer, int button) {
+		push(TOUCH_DOWN, pointer);
+		return true;
+	}
+	
+	public boolean touchUp(int screenX, int screenY, int pointer, int button) {
+		push(TOUCH_UP, pointer);
+		return true;
+	}
+	
+	public boolean keyDown(int keycode) {
+		push(KEY_DOWN, keycode);
+		return false;
+	}
+	
+	public boolean keyUp(int keycode) {
+		push(KEY_UP, keycode);
+		return false;
+	}
+	
+	public boolean keyTyped(char character) {
+		return false;
+	}
+	
+	public boolean touchDragged(int screenX, int screenY, int pointer) {
+		return false;
+	}
+	
+	public boolean mouseMoved(int screenX, int screenY) {
+		return false;
+	}
+	
+	public boolean scrolled(int amount) {
+		return false;
+	}
+}
@@ -0,0 +1,44 @@
+package com.signalsin.racer.input;
+
+import com.signalsin.racer.car.Car;
+import com.signalsin.racer.replay.InputLog;
+
+/**
+ * Plays a recorded input log back through the same path as live input.
+ * Inputs are looked up by tick, so the wall clock time is ignored and the
+ * car does exactly what it did when recorded; past the end of the log it
+ * coasts with nothing pressed.
+ */
+public class ReplayInput implements InputSource {
+	
+	private final InputLog log;
+	private int run = -1;
+	private int steer = Car.STEER_NONE;
+	private int accelerate = Car.ACC_NONE;
+	
+	public ReplayInput(InputLog log) {
+		this.log = log;
+	}
+	
+	public void advance(int tick, long tickTime) {
+		if (tick < 0 || tick >= log.getTickCount()) {
+			steer = Car.STEER_NONE;
+			accelerate = Car.ACC_NONE;
+			run = -1;
+			return;
+		}
+		//playing in order just steps to the next run, anything else searches
+		if (run < 0 || tick >= log.getRunEnd(run) || (run > 0 && tick < log.getRunEnd(run - 1)))
+			run = run >= 0 && run + 1 < log.getRunCount() && tick == log.getRunEnd(run) ? run + 1 : log.findRun(tick);
+		steer = log.getSteer(run);
+		accelerate = log.getAccelerate(run);
+	}
+	
+	public int getSteer() {
+		return steer;
+	}
+	
+	public int getAccelerate() {
+		return accelerate;
+	}
+}
@@ -0,0 +1,280 @@
+package com.signalsin.racer.physics;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.physics.box2d.Contact;
+import com.badlogic.gdx.physics.box2d.ContactImpulse;
+import com.badlogic.gdx.physics.box2d.ContactListener;
+import com.badlogic.gdx.physics.box2d.Manifold;
+import com.badlogic.gdx.physics.box2d.WorldManifold;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.FloatArray;
+import com.signalsin.racer.telemetry.Telemetry;
+
+/**
+ * Collects collisions while the world steps and hands them to listeners
+ * afterwards. Box2D calls back from inside world.step(), so the callback only
+ * copies the bodies, impulse, normal and contact point into preallocated
+ * arrays and returns; anything heavier (sounds, damage, scoring) happens in
+ * dispatch(), once per step, in batches.
+ *
+ * Contacts weaker than the lowest listener threshold are ignored straight
+ * away, and repeated contacts between the same two bodies within a step are
+ * merged into one event through a small hash table, so the cost per callback
+ * stays the same however many cars pile into each other. When the buffer is
+ * full further collisions are counted and dropped.
+ *
+ * Bodies whose user data is an Integer report it as their id, others report -1.
+ */
+public class CollisionEvents implements ContactListener {
+	
+	private final int capacity;
+	
+	//one slot per event
+	private final Body[] bodyA, bodyB;
+	private final int[] idA, idB;
+	private final float[] impulse, maxImpulse;
+	private final float[] normalX, normalY, pointX, pointY;
+	private int size;
+	private int dropped;
+	
+	//events sorted by impulse for dispatch
+	private final int[] order;
+	
+	//pair hash -> event slot + 1, cleared by stamping
+	private final int[] table;
+	private final int[] tableStamp;
+	private final int mask;
+	private int stamp = 1;
+	
+	private final Array<CollisionListener> listeners = new Array<CollisionListener>();
+	private final FloatArray thresholds = new FloatArray();
+	private float minThreshold = Float.MAX_VALUE;
+	
+	public CollisionEvents(int capacity) {
+		this.capacity = capacity;
+		bodyA = new Body[capacity];
+		bodyB = new Body[capacity];
+		idA = new int[capacity];
+		idB = new int[capacity];
+		impulse = new float[capacity];
+		maxImpulse = new float[capacity];
+		normalX = new float[capacity];
+		normalY = new float[capacity];
+		pointX = new float[capacity];
+		pointY = new float[capacity];
+		order = new int[capacity];
+		
+		int tableSize = 1;
+		while (tableSize < capacity * 2)
+			tableSize <<= 1;
+		table = new int[tableSize];
+		tableStamp = new int[tableSize];
+		mask = tableSize - 1;
+	}
+	
+	/**
+	 * @param minImpulse the listener only gets collisions with at least this
+	 * much normal impulse, summed over the step
+	 */
+	public void addListener(CollisionListener listener, float minImpulse) {
+		listeners.add(listener);
+		thresholds.add(minImpulse);
+		minThreshold = Math.min(minThreshold, minImpulse);
+	}
+	
+	public void removeListener(CollisionListener listener) {
+		int index = listeners.indexOf(listener, true);
+		if (index < 0)
+			return;
+		listeners.removeIndex(index);
+		thresholds.removeIndex(index);
+		minThreshold = Float.MAX_VALUE;
+		for (int i = 0; i < thresholds.size; i++)
+			minThreshold = Math.min(minThreshold, thresholds.get(i));
+	}
+	
+	@Override
+	public void beginContact(Contact contact) {
+	}
+	
+	@Override
+	public void endContact(Contact contact) {
+	}
+	
+	@Override
+	public void preSolve(Contact contact, Manifold oldManifold) {
+	}
+	
+	@Override
+	public void postSolve(Contact contact, ContactImpulse contactImpulse) {
+		float[] normalImpulses = contactImpulse.getNormalImpulses();
+		float total = contactImpulse.getCount() > 1 ? normalImpulses[0] + normalImpulses[1] : normalImpulses[0];
+		Body a = contact.getFixtureA().getBody();
+		Body b = contact.getFixtureB().getBody();
+		//a pair that already has an event this step keeps adding to it, only
+		//new events have to reach the lowest threshold
+		int slot = find(a, b);
+		if (slot < 0) {
+			if (total < minThreshold)
+				return;
+			if (size == capacity) {
+				dropped++;
+				return;
+			}
+			slot = size++;
+			insert(a, b, slot);
+			bodyA[slot] = a;
+			bodyB[slot] = b;
+			idA[slot] = id(a);
+			idB[slot] = id(b);
+			impulse[slot] = 0;
+			maxImpulse[slot] = -1;
+		}
+		
+		impulse[slot] += total;
+		if (total > maxImpulse[slot]) {
+			//normal and point come from the strongest contact
+			maxImpulse[slot] = total;
+			WorldManifold manifold = contact.getWorldManifold();
+			Vector2 normal = manifold.getNormal();
+			//keep the normal pointing from the event's body A to body B
+			float sign = bodyA[slot] == a ? 1 : -1;
+			normalX[slot] = normal.x * sign;
+			normalY[slot] = normal.y * sign;
+			Vector2 point = manifold.getPoints()[0];
+			pointX[slot] = point.x;
+			pointY[slot] = point.y;
+		}
+	}
+	
+	private int find(Body a, Body b) {
+		int i = hash(a, b) & mask;
+		while (tableStamp[i] == stamp) {
+			int slot = table[i];
+			if ((bodyA[slot] == a && bodyB[slot] == b) || (bodyA[slot] == b && bodyB[slot] == a))
+				return slot;
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+	
+	private void insert(Body a, Body b, int slot) {
+		int i = hash(a, b) & mask;
+		while (tableStamp[i] == stamp)
+			i = (i + 1) & mask;
+		tableStamp[i] = stamp;
+		table[i] = slot;
+	}
+	
+	//order independent, so a-b and b-a land in the same bucket
+	private static int hash(Body a, Body b) {
+		int h = System.identityHashCode(a) ^ System.identityHashCode(b);
+		return h ^ (h >>> 16);
+	}
+	
+	private static int id(Body body) {
+		Object data = body.getUserData();
+		return data instanceof Integer ? ((Integer) data).intValue() : -1;
+	}
+	
+	/**
+	 * Call after every world.step(): sorts the step's collisions, hands each
+	 * listener the ones strong enough for it and empties the buffer.
+	 */
+	public void dispatch() {
+		for (int i = 0; i < size; i++)
+			order[i] = i;
+		
+		//strongest first; insertion sort, a step rarely has more than a handful
+		for (int i = 1; i < size; i++) {
+			int slot = order[i];
+			float value = impulse[slot];
+			int j = i - 1;
+			while (j >= 0 && impulse[order[j]] < value) {
+				order[j + 1] = order[j];
+				j--;
+			}
+			order[j + 1] = slot;
+		}
+		
+		Telemetry.count(Telemetry.COLLISIONS, size);
+		Telemetry.count(Telemetry.COLLISIONS_DROPPED, dropped);
+		
+		for (int l = 0; l < listeners.size; l++) {
+			float threshold = thresholds.get(l);
+			int count = 0;
+			while (count < size && impulse[order[count]] >= threshold)
+				count++;
+			if (count > 0)
+				listeners.get(l).collisions(this, count);
+		}
+		clear();
+	}
+	
+	/** Throws away everything collected since the last dispatch(). */
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			bodyA[i] = null;
+			bodyB[i] = null;
+		}
+		size = 0;
+		dropped = 0;
+		stamp++;
+		if (stamp == 0) {
+			//wrapped around, old stamps could match again
+			for (int i = 0; i < tableStamp.length; i++)
+				tableStamp[i] = 0;
+			stamp = 1;
+		}
+	}
+	
+	//accessors take the event's position in the sorted batch
+	
+	public Body getBodyA(int event) {
+		return bodyA[order[event]];
+	}
+	
+	public Body getBodyB(int event) {
+		return bodyB[order[event]];
+	}
+	
+	public int getIdA(int event) {
+		return idA[order[event]];
+	}
+	
+	public int getIdB(int event) {
+		return idB[order[event]];
+	}
+	
+	/** Normal impulse summed over the step, in N*s. */
+	public float getImpulse(int event) {
+		return impulse[order[event]];
+	}
+	
+	/** Collision normal, pointing from body A to body B. */
+	public float getNormalX(int event) {
+		return normalX[order[event]];
+	}
+	
+	public float getNormalY(int event) {
+		return normalY[order[event]];
+	}
+	
+	public float getPointX(int event) {
+		return pointX[order[event]];
+	}
+	
+	public float getPointY(int event) {
+		return pointY[order[event]];
+	}
+	
+	/** Collisions lost in the current step because the buffer was full. */
+	public int getDropped() {
+		return dropped;
+	}
+	
+	public int getCapacity() {
+		return capacity;
+	}
+}
@@ -0,0 +1,15 @@
+package com.signalsin.racer.physics;
+
+/**
+ * Receives the collisions of a world step in one batch, after the step has
+ * finished, so it is safe to create or destroy bodies from here.
+ */
+public interface CollisionListener {
+	
+	/**
+	 * @param events the step's collisions, strongest first
+	 * @param count how many of them reach the impulse threshold this listener
+	 * was added with; only look at events 0 to count - 1
+	 */
+	public void collisions(CollisionEvents events, int count);
+}
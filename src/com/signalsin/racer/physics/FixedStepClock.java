@@ -0,0 +1,82 @@
+package com.signalsin.racer.physics;
+
+/**
+ * Turns variable frame deltas into a whole number of fixed simulation steps.
+ * Box2D is only stable (and only deterministic) when it is stepped with the
+ * same time step every time, so the render loop feeds its frame time in here
+ * and runs as many fixed steps as the clock hands back. The time left over in
+ * the accumulator is exposed as an interpolation factor so sprites can be drawn
+ * between the previous and the current physics state.
+ */
+public class FixedStepClock {
+
+	private final float step;
+	private final int maxStepsPerFrame;
+	private float accumulator;
+	private int droppedSteps;
+
+	/**
+	 * @param stepsPerSecond how many physics steps make up one second of simulation
+	 * @param maxStepsPerFrame cap on catch-up steps per frame. Anything beyond this
+	 * is dropped, so a long hitch slows the game down instead of spiralling into
+	 * ever longer frames.
+	 */
+	public FixedStepClock(float stepsPerSecond, int maxStepsPerFrame) {
+		if (stepsPerSecond <= 0)
+			throw new IllegalArgumentException("stepsPerSecond must be > 0: " + stepsPerSecond);
+		if (maxStepsPerFrame < 1)
+			throw new IllegalArgumentException("maxStepsPerFrame must be >= 1: " + maxStepsPerFrame);
+		this.step = 1f / stepsPerSecond;
+		this.maxStepsPerFrame = maxStepsPerFrame;
+		this.accumulator = 0;
+	}
+
+	/**
+	 * Adds the frame time to the accumulator and returns how many fixed steps
+	 * should be simulated this frame.
+	 */
+	public int advance(float frameDelta) {
+		if (frameDelta > 0)
+			accumulator += frameDelta;
+
+		int steps = (int) (accumulator / step);
+		if (steps > maxStepsPerFrame) {
+			droppedSteps += steps - maxStepsPerFrame;
+			steps = maxStepsPerFrame;
+			//throw away the backlog, keep only the fraction of a step we were into
+			accumulator = accumulator % step;
+		} else {
+			accumulator -= steps * step;
+		}
+		return steps;
+	}
+
+	/**
+	 * How far we are between the last simulated step and the next one, 0..1.
+	 * Use it to blend previous and current body transforms when drawing.
+	 */
+	public float getAlpha() {
+		return accumulator / step;
+	}
+
+	public float getStep() {
+		return step;
+	}
+
+	public int getMaxStepsPerFrame() {
+		return maxStepsPerFrame;
+	}
+
+	/**
+	 * Total number of steps thrown away because a frame asked for more than
+	 * maxStepsPerFrame. A steadily growing value means the device can't keep up.
+	 */
+	public int getDroppedSteps() {
+		return droppedSteps;
+	}
+
+	public void reset() {
+		accumulator = 0;
+		droppedSteps = 0;
+	}
+}
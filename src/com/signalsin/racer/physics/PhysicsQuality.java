@@ -0,0 +1,164 @@
+package com.signalsin.racer.physics;
+
+/**
+ * Picks how much work each physics step gets from how much of the frame
+ * budget is being used. Quality comes in levels, each a number of velocity
+ * and position iterations and substeps per fixed step; the scheduler moves
+ * one level down when frames run over budget and one level up when there is
+ * plenty of headroom.
+ *
+ * To keep it from flapping, going down needs a run of slow frames, going up
+ * needs a much longer run of fast ones at a much lower load, and after any
+ * change the scheduler waits a while before judging again.
+ *
+ * Frame cost should be the time the game actually spent working in a frame
+ * (update and draw), not the frame delta, which vsync pins to the refresh
+ * rate no matter how busy we are.
+ *
+ * The level is chosen on the render thread and may be stepped with on the
+ * physics thread, so a tick should read getLevel() once and take the
+ * iterations and substeps for that level, never mixing two levels.
+ */
+public class PhysicsQuality {
+	
+	//velocity iterations, position iterations, substeps
+	private static final int[][] LEVELS = {
+		{2, 1, 1},
+		{3, 2, 1},
+		{3, 3, 1}, //what the game always used
+		{6, 3, 1},
+		{8, 3, 2},
+	};
+	/** The level matching the fixed 3/3 iterations used before. */
+	public static final int DEFAULT_LEVEL = 2;
+	public static final int LEVEL_COUNT = LEVELS.length;
+	
+	//off-screen cars update every this many ticks, per level
+	private static final int[] OFFSCREEN_INTERVAL = {4, 2, 1, 1, 1};
+	
+	private final long budgetNanos;
+	private final int minLevel, maxLevel;
+	private volatile int level;
+	
+	//thresholds as a share of the budget
+	public float downLoad = 0.9f;
+	public float upLoad = 0.55f;
+	//consecutive frames needed to change level
+	public int downFrames = 10;
+	public int upFrames = 180;
+	//frames to wait after a change before looking again
+	public int cooldownFrames = 60;
+	
+	private float averageLoad;
+	private int slowFrames, fastFrames, cooldown;
+	private int changes;
+	//held at one level, e.g. while recording input for an exact replay
+	private boolean pinned;
+	
+	/**
+	 * @param targetFramesPerSecond frame rate the game should hold
+	 * @param minLevel lowest level allowed, 0..LEVEL_COUNT - 1
+	 * @param maxLevel highest level allowed
+	 * @param startLevel level to start at, clamped to the bounds
+	 */
+	public PhysicsQuality(float targetFramesPerSecond, int minLevel, int maxLevel, int startLevel) {
+		if (minLevel < 0 || maxLevel >= LEVEL_COUNT || minLevel > maxLevel)
+			throw new IllegalArgumentException("Levels must satisfy 0 <= min <= max < " + LEVEL_COUNT);
+		this.budgetNanos = (long) (1000000000L / targetFramesPerSecond);
+		this.minLevel = minLevel;
+		this.maxLevel = maxLevel;
+		this.level = Math.max(minLevel, Math.min(maxLevel, startLevel));
+	}
+	
+	/**
+	 * Feeds in how long the last frame took to update and draw. Returns true
+	 * if the level changed.
+	 */
+	public boolean recordFrame(long workNanos) {
+		float load = (float) workNanos / budgetNanos;
+		//smooth out single spikes such as a GC or texture upload
+		averageLoad = averageLoad == 0 ? load : averageLoad + (load - averageLoad) * 0.1f;
+		
+		if (pinned || cooldown > 0) {
+			if (cooldown > 0)
+				cooldown--;
+			return false;
+		}
+		
+		slowFrames = averageLoad > downLoad ? slowFrames + 1 : 0;
+		fastFrames = averageLoad < upLoad ? fastFrames + 1 : 0;
+		
+		if (slowFrames >= downFrames && level > minLevel) {
+			setLevel(level - 1);
+			return true;
+		}
+		if (fastFrames >= upFrames && level < maxLevel) {
+			setLevel(level + 1);
+			return true;
+		}
+		return false;
+	}
+	
+	public void setLevel(int newLevel) {
+		newLevel = Math.max(minLevel, Math.min(maxLevel, newLevel));
+		if (newLevel != level)
+			changes++;
+		level = newLevel;
+		slowFrames = 0;
+		fastFrames = 0;
+		cooldown = cooldownFrames;
+	}
+	
+	/**
+	 * Holds the current level, or lets it follow the load again. Input
+	 * recordings only replay exactly with the iterations they were made with.
+	 */
+	public void setPinned(boolean pinned) {
+		this.pinned = pinned;
+		slowFrames = 0;
+		fastFrames = 0;
+	}
+	
+	public boolean isPinned() {
+		return pinned;
+	}
+	
+	public int getLevel() {
+		return level;
+	}
+	
+	public static int getVelocityIterations(int level) {
+		return LEVELS[level][0];
+	}
+	
+	public static int getPositionIterations(int level) {
+		return LEVELS[level][1];
+	}
+	
+	/** How many world.step() calls one fixed step is split into. */
+	public static int getSubsteps(int level) {
+		return LEVELS[level][2];
+	}
+	
+	/**
+	 * Whether a car should get its update this tick. Cars on screen always
+	 * do; at low levels cars off screen only every few ticks, and coast in
+	 * between. Cars are spread over the ticks by their index.
+	 */
+	public boolean shouldUpdate(int car, int tick, boolean onScreen) {
+		if (onScreen)
+			return true;
+		int interval = OFFSCREEN_INTERVAL[level];
+		return (car + tick) % interval == 0;
+	}
+	
+	/** Smoothed share of the frame budget in use, 1 is exactly on budget. */
+	public float getAverageLoad() {
+		return averageLoad;
+	}
+	
+	/** Times the level has changed, a quickly growing number means it's flapping. */
+	public int getChanges() {
+		return changes;
+	}
+}
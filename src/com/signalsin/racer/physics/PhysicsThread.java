@@ -0,0 +1,104 @@
+package com.signalsin.racer.physics;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * Runs the simulation on its own thread, ticking at a fixed rate against the
+ * wall clock and sleeping in between. Like FixedStepClock it catches up after
+ * a hitch, but at most a few ticks before it gives up on the lost time.
+ *
+ * An exception in a tick stops the thread and is rethrown on the render
+ * thread, so a crash in the physics doesn't leave the game drawing a frozen
+ * race.
+ *
+ * Not for the browser build, which has no threads.
+ */
+public class PhysicsThread implements SimulationHost, Runnable {
+	
+	private final int maxCatchUpTicks;
+	private Simulation simulation;
+	private long stepNanos;
+	private Thread thread;
+	private volatile boolean running;
+	private volatile boolean paused;
+	private volatile int droppedTicks;
+	
+	public PhysicsThread(int maxCatchUpTicks) {
+		if (maxCatchUpTicks < 1)
+			throw new IllegalArgumentException("maxCatchUpTicks must be >= 1: " + maxCatchUpTicks);
+		this.maxCatchUpTicks = maxCatchUpTicks;
+	}
+	
+	public void start(Simulation simulation, float stepsPerSecond) {
+		if (thread != null)
+			throw new IllegalStateException("Already started");
+		this.simulation = simulation;
+		this.stepNanos = (long) (1000000000L / stepsPerSecond);
+		running = true;
+		thread = new Thread(this, "Physics");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	public void setPaused(boolean paused) {
+		this.paused = paused;
+	}
+	
+	public void stop() {
+		running = false;
+		if (thread == null)
+			return;
+		thread.interrupt();
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		thread = null;
+	}
+	
+	public void run() {
+		long next = System.nanoTime();
+		try {
+			while (running) {
+				if (paused) {
+					sleep(stepNanos);
+					next = System.nanoTime();
+					continue;
+				}
+				long now = System.nanoTime();
+				if (now < next) {
+					sleep(next - now);
+					continue;
+				}
+				//too far behind to catch up, drop the lost time
+				long behind = (now - next) / stepNanos;
+				if (behind >= maxCatchUpTicks) {
+					droppedTicks += behind - maxCatchUpTicks + 1;
+					next += (behind - maxCatchUpTicks + 1) * stepNanos;
+				}
+				simulation.tick(next);
+				next += stepNanos;
+			}
+		} catch (InterruptedException e) {
+			//stop() wants us gone
+		} catch (final RuntimeException e) {
+			running = false;
+			Gdx.app.postRunnable(new Runnable() {
+				public void run() {
+					throw new GdxRuntimeException("Physics thread failed", e);
+				}
+			});
+		}
+	}
+	
+	private static void sleep(long nanos) throws InterruptedException {
+		Thread.sleep(nanos / 1000000, (int) (nanos % 1000000));
+	}
+	
+	/** Ticks skipped because the thread fell too far behind. */
+	public int getDroppedTicks() {
+		return droppedTicks;
+	}
+}
@@ -0,0 +1,152 @@
+package com.signalsin.racer.physics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.badlogic.gdx.physics.box2d.Body;
+
+/**
+ * Body transforms handed from the simulation to the renderer through a
+ * triple buffer, so the two can run on different threads without either
+ * waiting for the other. After every tick the simulation writes the bodies'
+ * previous and current transforms into its back buffer and swaps it with
+ * the middle one; before drawing, the renderer swaps its front buffer with
+ * the middle one if that holds something newer. The only shared state is
+ * one atomic int.
+ *
+ * The renderer never touches the bodies, only the copied floats, so it can
+ * draw while the world is stepping.
+ */
+public class RenderSnapshot {
+	
+	//per body: previous x, y, angle then current x, y, angle
+	private static final int STRIDE = 6;
+	//set on the middle index when it holds a snapshot the reader hasn't seen
+	private static final int FRESH = 4;
+	
+	private final Body[] bodies;
+	private int size;
+	
+	private final float[][] transforms = new float[3][];
+	//one extra number per body, e.g. a wheel's slip
+	private final float[][] values = new float[3][];
+	private final long[] times = new long[3];
+	private final int[] ticks = new int[3];
+	private final AtomicInteger middle = new AtomicInteger(1);
+	//writer's buffer and reader's buffer
+	private int back = 0;
+	private int front = 2;
+	
+	//writer side, the transforms of the last tick
+	private final float[] last;
+	private boolean published;
+	
+	public RenderSnapshot(int capacity) {
+		bodies = new Body[capacity];
+		for (int i = 0; i < 3; i++) {
+			transforms[i] = new float[capacity * STRIDE];
+			values[i] = new float[capacity];
+		}
+		last = new float[capacity * 3];
+	}
+	
+	/**
+	 * Adds a body to copy out every tick and returns its slot. Add everything
+	 * before the first publish().
+	 */
+	public int add(Body body) {
+		if (size == bodies.length)
+			throw new IllegalStateException("Snapshot is full: " + size);
+		bodies[size] = body;
+		return size++;
+	}
+	
+	/**
+	 * Writer side: sets the extra value of a slot for the next publish().
+	 */
+	public void setValue(int slot, float value) {
+		values[back][slot] = value;
+	}
+	
+	/**
+	 * Writer side: copies the bodies out after a tick and makes the copy
+	 * available to the reader.
+	 * @param time wall clock time of the tick, the state before it
+	 */
+	public void publish(int tick, long time) {
+		float[] out = transforms[back];
+		for (int i = 0; i < size; i++) {
+			Body body = bodies[i];
+			float[] vals = body.getTransform().vals;
+			float x = vals[0], y = vals[1], angle = body.getAngle();
+			int o = i * STRIDE, l = i * 3;
+			//the first snapshot has nothing before it
+			if (!published) {
+				last[l] = x;
+				last[l + 1] = y;
+				last[l + 2] = angle;
+			}
+			out[o] = last[l];
+			out[o + 1] = last[l + 1];
+			out[o + 2] = last[l + 2];
+			out[o + 3] = last[l] = x;
+			out[o + 4] = last[l + 1] = y;
+			out[o + 5] = last[l + 2] = angle;
+		}
+		published = true;
+		times[back] = time;
+		ticks[back] = tick;
+		back = middle.getAndSet(back | FRESH) & 3;
+	}
+	
+	/**
+	 * Reader side: switches to the newest snapshot if there is one. Returns
+	 * false if the last one is still the newest.
+	 */
+	public boolean acquire() {
+		if ((middle.get() & FRESH) == 0)
+			return false;
+		front = middle.getAndSet(front) & 3;
+		return true;
+	}
+	
+	/** Tick of the snapshot being read, -1 before the first. */
+	public int getTick() {
+		return times[front] == 0 ? -1 : ticks[front];
+	}
+	
+	public long getTime() {
+		return times[front];
+	}
+	
+	/**
+	 * How far between the previous and the current state the given time is,
+	 * clamped to 0..1.
+	 */
+	public float getAlpha(long now, long stepNanos) {
+		float alpha = (float) (now - times[front]) / stepNanos;
+		return alpha < 0 ? 0 : alpha > 1 ? 1 : alpha;
+	}
+	
+	public float getX(int slot, float alpha) {
+		float[] t = transforms[front];
+		int o = slot * STRIDE;
+		return t[o] + (t[o + 3] - t[o]) * alpha;
+	}
+	
+	public float getY(int slot, float alpha) {
+		float[] t = transforms[front];
+		int o = slot * STRIDE;
+		return t[o + 1] + (t[o + 4] - t[o + 1]) * alpha;
+	}
+	
+	public float getValue(int slot) {
+		return values[front][slot];
+	}
+	
+	/** Box2D angles are not wrapped, so a plain lerp is safe. */
+	public float getAngle(int slot, float alpha) {
+		float[] t = transforms[front];
+		int o = slot * STRIDE;
+		return t[o + 2] + (t[o + 5] - t[o + 2]) * alpha;
+	}
+}
@@ -0,0 +1,14 @@
+package com.signalsin.racer.physics;
+
+/**
+ * One fixed step of a game's simulation: apply input, update the cars, step
+ * the world. The render loop calls it itself, or hands it to a
+ * SimulationHost to be run on another thread.
+ */
+public interface Simulation {
+	
+	/**
+	 * @param tickTime wall clock time the tick stands for, TimeUtils.nanoTime() based
+	 */
+	public void tick(long tickTime);
+}
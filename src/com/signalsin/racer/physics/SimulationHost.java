@@ -0,0 +1,17 @@
+package com.signalsin.racer.physics;
+
+/**
+ * Runs a Simulation at a fixed rate somewhere other than the render thread.
+ * Platforms with threads pass one to RacerGame (see PhysicsThread); without
+ * one the game steps physics from render() as it always has.
+ */
+public interface SimulationHost {
+	
+	public void start(Simulation simulation, float stepsPerSecond);
+	
+	/** Holds the ticks while paused; no catching up afterwards. */
+	public void setPaused(boolean paused);
+	
+	/** Stops ticking and waits for the tick in progress to finish. */
+	public void stop();
+}
@@ -0,0 +1,244 @@
+package com.signalsin.racer.render;
+
+import java.util.Iterator;
+import java.util.List;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
+import com.badlogic.gdx.graphics.glutils.ShapeRenderer.ShapeType;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.physics.box2d.BodyDef.BodyType;
+import com.badlogic.gdx.physics.box2d.ChainShape;
+import com.badlogic.gdx.physics.box2d.CircleShape;
+import com.badlogic.gdx.physics.box2d.Contact;
+import com.badlogic.gdx.physics.box2d.EdgeShape;
+import com.badlogic.gdx.physics.box2d.Fixture;
+import com.badlogic.gdx.physics.box2d.Joint;
+import com.badlogic.gdx.physics.box2d.PolygonShape;
+import com.badlogic.gdx.physics.box2d.QueryCallback;
+import com.badlogic.gdx.physics.box2d.Shape;
+import com.badlogic.gdx.physics.box2d.Transform;
+import com.badlogic.gdx.physics.box2d.World;
+import com.badlogic.gdx.physics.box2d.WorldManifold;
+import com.badlogic.gdx.utils.Array;
+
+/**
+ * Replacement for Box2DDebugRenderer that can be switched on and off while
+ * the game runs and only draws what is inside the view. Fixtures are found
+ * with a world AABB query on the visible rectangle instead of walking every
+ * body, so the cost follows what's on screen, not the size of the track.
+ * Everything goes out as lines in a single ShapeRenderer batch, drawn with
+ * a projection of its own so the camera's matrices are left alone.
+ */
+public class DebugOverlay {
+	
+	private static final Color STATIC_COLOR = new Color(0.5f, 0.9f, 0.5f, 1);
+	private static final Color DYNAMIC_COLOR = new Color(0.9f, 0.7f, 0.7f, 1);
+	private static final Color SLEEPING_COLOR = new Color(0.6f, 0.6f, 0.6f, 1);
+	private static final Color SENSOR_COLOR = new Color(0.5f, 0.5f, 0.9f, 1);
+	private static final Color AABB_COLOR = new Color(1, 0, 1, 1);
+	private static final Color JOINT_COLOR = new Color(0.5f, 0.8f, 0.8f, 1);
+	private static final Color CONTACT_COLOR = new Color(1, 1, 0, 1);
+	private static final int CIRCLE_SEGMENTS = 16;
+	
+	public boolean enabled = true;
+	public boolean drawShapes = true;
+	public boolean drawJoints = false;
+	public boolean drawAABBs = false;
+	public boolean drawContacts = false;
+	
+	private final ShapeRenderer renderer = new ShapeRenderer();
+	private final Matrix4 projection = new Matrix4();
+	private final Array<Fixture> visible = new Array<Fixture>();
+	private final Vector2 vertex = new Vector2();
+	private final Vector2 first = new Vector2();
+	private final Vector2 previous = new Vector2();
+	private float left, bottom, right, top;
+	private float minX, minY, maxX, maxY;
+	
+	private final QueryCallback collector = new QueryCallback() {
+		public boolean reportFixture(Fixture fixture) {
+			visible.add(fixture);
+			return true;
+		}
+	};
+	
+	public void toggle() {
+		enabled = !enabled;
+	}
+	
+	/**
+	 * @param cameraCombined the camera's matrix, in pixels; it is copied, not modified
+	 * @param pixelsPerMeter scale from world meters to pixels
+	 * @param centerX view centre in meters
+	 * @param centerY view centre in meters
+	 * @param viewWidth view size in meters
+	 * @param viewHeight view size in meters
+	 */
+	public void render(World world, Matrix4 cameraCombined, float pixelsPerMeter,
+			float centerX, float centerY, float viewWidth, float viewHeight) {
+		if (!enabled)
+			return;
+		
+		left = centerX - viewWidth / 2;
+		right = centerX + viewWidth / 2;
+		bottom = centerY - viewHeight / 2;
+		top = centerY + viewHeight / 2;
+		
+		visible.clear();
+		world.QueryAABB(collector, left, bottom, right, top);
+		
+		projection.set(cameraCombined).scale(pixelsPerMeter, pixelsPerMeter, 1);
+		renderer.setProjectionMatrix(projection);
+		renderer.begin(ShapeType.Line);
+		
+		for (int i = 0; i < visible.size; i++) {
+			Fixture fixture = visible.get(i);
+			Body body = fixture.getBody();
+			if (drawShapes)
+				renderer.setColor(colorFor(fixture, body));
+			drawFixture(fixture, body.getTransform());
+			if (drawAABBs) {
+				renderer.setColor(AABB_COLOR);
+				drawRect(minX, minY, maxX, maxY);
+			}
+		}
+		if (drawJoints)
+			drawJoints(world);
+		if (drawContacts)
+			drawContacts(world);
+		
+		renderer.end();
+		visible.clear();
+	}
+	
+	public void dispose() {
+		renderer.dispose();
+	}
+	
+	private Color colorFor(Fixture fixture, Body body) {
+		if (fixture.isSensor())
+			return SENSOR_COLOR;
+		if (body.getType() == BodyType.StaticBody)
+			return STATIC_COLOR;
+		if (!body.isAwake())
+			return SLEEPING_COLOR;
+		return DYNAMIC_COLOR;
+	}
+	
+	//draws the fixture outline (if shapes are on) and leaves its bounds in minX..maxY
+	private void drawFixture(Fixture fixture, Transform transform) {
+		Shape shape = fixture.getShape();
+		minX = minY = Float.MAX_VALUE;
+		maxX = maxY = -Float.MAX_VALUE;
+		
+		switch (shape.getType()) {
+		case Polygon: {
+			PolygonShape polygon = (PolygonShape) shape;
+			int count = polygon.getVertexCount();
+			for (int i = 0; i < count; i++) {
+				polygon.getVertex(i, vertex);
+				outline(transform.mul(vertex), i, i == count - 1, true);
+			}
+			break;
+		}
+		case Chain: {
+			ChainShape chain = (ChainShape) shape;
+			int count = chain.getVertexCount();
+			for (int i = 0; i < count; i++) {
+				chain.getVertex(i, vertex);
+				outline(transform.mul(vertex), i, i == count - 1, chain.isLooped());
+			}
+			break;
+		}
+		case Edge: {
+			EdgeShape edge = (EdgeShape) shape;
+			edge.getVertex1(vertex);
+			outline(transform.mul(vertex), 0, false, false);
+			edge.getVertex2(vertex);
+			outline(transform.mul(vertex), 1, true, false);
+			break;
+		}
+		case Circle: {
+			CircleShape circle = (CircleShape) shape;
+			vertex.set(circle.getPosition());
+			transform.mul(vertex);
+			float x = vertex.x, y = vertex.y, radius = circle.getRadius();
+			for (int i = 0; i < CIRCLE_SEGMENTS; i++) {
+				float angle = MathUtils.PI * 2 * i / CIRCLE_SEGMENTS;
+				vertex.set(x + radius * MathUtils.cos(angle), y + radius * MathUtils.sin(angle));
+				outline(vertex, i, i == CIRCLE_SEGMENTS - 1, true);
+			}
+			break;
+		}
+		}
+	}
+	
+	//feeds the outline one transformed vertex at a time
+	private void outline(Vector2 point, int index, boolean last, boolean closed) {
+		minX = Math.min(minX, point.x);
+		minY = Math.min(minY, point.y);
+		maxX = Math.max(maxX, point.x);
+		maxY = Math.max(maxY, point.y);
+		
+		if (index == 0)
+			first.set(point);
+		else if (drawShapes)
+			renderer.line(previous.x, previous.y, point.x, point.y);
+		if (last && closed && drawShapes)
+			renderer.line(point.x, point.y, first.x, first.y);
+		previous.set(point);
+	}
+	
+	private void drawRect(float x1, float y1, float x2, float y2) {
+		renderer.line(x1, y1, x2, y1);
+		renderer.line(x2, y1, x2, y2);
+		renderer.line(x2, y2, x1, y2);
+		renderer.line(x1, y2, x1, y1);
+	}
+	
+	private void drawJoints(World world) {
+		renderer.setColor(JOINT_COLOR);
+		for (Iterator<Joint> it = world.getJoints(); it.hasNext(); ) {
+			Joint joint = it.next();
+			Vector2 anchorA = joint.getAnchorA();
+			float ax = anchorA.x, ay = anchorA.y;
+			Vector2 anchorB = joint.getAnchorB();
+			if (!inView(ax, ay) && !inView(anchorB.x, anchorB.y))
+				continue;
+			Vector2 positionA = joint.getBodyA().getPosition();
+			renderer.line(positionA.x, positionA.y, ax, ay);
+			renderer.line(ax, ay, anchorB.x, anchorB.y);
+			Vector2 positionB = joint.getBodyB().getPosition();
+			renderer.line(anchorB.x, anchorB.y, positionB.x, positionB.y);
+		}
+	}
+	
+	private void drawContacts(World world) {
+		renderer.setColor(CONTACT_COLOR);
+		List<Contact> contacts = world.getContactList();
+		for (int i = 0; i < contacts.size(); i++) {
+			Contact contact = contacts.get(i);
+			if (!contact.isTouching())
+				continue;
+			WorldManifold manifold = contact.getWorldManifold();
+			Vector2 normal = manifold.getNormal();
+			Vector2[] points = manifold.getPoints();
+			for (int p = 0; p < manifold.getNumberOfContactPoints(); p++) {
+				Vector2 point = points[p];
+				if (!inView(point.x, point.y))
+					continue;
+				renderer.line(point.x - 0.1f, point.y, point.x + 0.1f, point.y);
+				renderer.line(point.x, point.y - 0.1f, point.x, point.y + 0.1f);
+				renderer.line(point.x, point.y, point.x + normal.x * 0.5f, point.y + normal.y * 0.5f);
+			}
+		}
+	}
+	
+	private boolean inView(float x, float y) {
+		return x >= left && x <= right && y >= bottom && y <= top;
+	}
+}
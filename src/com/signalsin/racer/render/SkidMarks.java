@@ -0,0 +1,211 @@
+package com.signalsin.racer.render;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.GL10;
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.VertexAttribute;
+import com.badlogic.gdx.graphics.VertexAttributes.Usage;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * Tyre marks for every car on track, kept as quads in one fixed size mesh.
+ * New quads go into a ring, so once it's full each new mark overwrites the
+ * oldest one; the memory never grows and the whole lot is one draw call no
+ * matter how many cars are skidding.
+ *
+ * Each wheel is a trail: call update() with the trail's position and how
+ * hard it is sliding, and a quad is laid from where it was to where it is
+ * while the intensity is above zero. The vertices are rewritten in place and
+ * the buffer is uploaded once in render(), only on frames that added marks.
+ */
+public class SkidMarks implements Disposable {
+	
+	//x, y, packed colour
+	private static final int VERTEX_SIZE = 3;
+	private static final int QUAD_SIZE = VERTEX_SIZE * 4;
+	
+	private final float pixelsPerMeter;
+	private final int capacity;
+	private final Mesh mesh;
+	private final float[] vertices;
+	private ShaderProgram shader;
+	
+	//ring of quads
+	private int next, count;
+	private boolean dirty;
+	
+	//per trail: last point, and whether it was marking
+	private final float[] lastX, lastY;
+	private final boolean[] marking;
+	
+	/** Width of a mark in meters. */
+	public float width = 0.25f;
+	private final Color color = new Color(0.1f, 0.1f, 0.1f, 0.6f);
+	
+	/**
+	 * @param capacity quads kept before the oldest are overwritten, at most 16384
+	 * @param trails number of wheels that can leave marks
+	 * @param pixelsPerMeter world to pixel scale used by the rest of the scene
+	 */
+	public SkidMarks(int capacity, int trails, float pixelsPerMeter) {
+		if (capacity < 1 || capacity > 16384)
+			throw new IllegalArgumentException("capacity must be 1..16384: " + capacity);
+		this.capacity = capacity;
+		this.pixelsPerMeter = pixelsPerMeter;
+		vertices = new float[capacity * QUAD_SIZE];
+		lastX = new float[trails];
+		lastY = new float[trails];
+		marking = new boolean[trails];
+		
+		mesh = new Mesh(false, capacity * 4, capacity * 6,
+				new VertexAttribute(Usage.Position, 2, ShaderProgram.POSITION_ATTRIBUTE),
+				new VertexAttribute(Usage.ColorPacked, 4, ShaderProgram.COLOR_ATTRIBUTE));
+		//the index pattern never changes, only the vertices do
+		short[] indices = new short[capacity * 6];
+		for (int i = 0, v = 0; i < indices.length; i += 6, v += 4) {
+			indices[i] = (short) v;
+			indices[i + 1] = (short) (v + 1);
+			indices[i + 2] = (short) (v + 2);
+			indices[i + 3] = (short) (v + 2);
+			indices[i + 4] = (short) (v + 3);
+			indices[i + 5] = (short) v;
+		}
+		mesh.setIndices(indices);
+		
+		if (Gdx.graphics.isGL20Available())
+			shader = createShader();
+	}
+	
+	private static ShaderProgram createShader() {
+		String vertex = "attribute vec4 " + ShaderProgram.POSITION_ATTRIBUTE + ";\n"
+				+ "attribute vec4 " + ShaderProgram.COLOR_ATTRIBUTE + ";\n"
+				+ "uniform mat4 u_projTrans;\n"
+				+ "varying vec4 v_color;\n"
+				+ "void main() {\n"
+				+ "   v_color = " + ShaderProgram.COLOR_ATTRIBUTE + ";\n"
+				+ "   gl_Position = u_projTrans * " + ShaderProgram.POSITION_ATTRIBUTE + ";\n"
+				+ "}\n";
+		String fragment = "#ifdef GL_ES\n"
+				+ "precision mediump float;\n"
+				+ "#endif\n"
+				+ "varying vec4 v_color;\n"
+				+ "void main() {\n"
+				+ "   gl_FragColor = v_color;\n"
+				+ "}\n";
+		ShaderProgram shader = new ShaderProgram(vertex, fragment);
+		if (!shader.isCompiled())
+			throw new GdxRuntimeException("Skid mark shader: " + shader.getLog());
+		return shader;
+	}
+	
+	/**
+	 * Moves a trail on, laying a mark behind it if it is sliding.
+	 * @param trail which wheel, 0..trails - 1
+	 * @param x position in meters
+	 * @param y position in meters
+	 * @param intensity 0 for rolling, up to 1 for a full slide
+	 */
+	public void update(int trail, float x, float y, float intensity) {
+		if (intensity > 0 && marking[trail])
+			add(lastX[trail], lastY[trail], x, y, Math.min(intensity, 1));
+		marking[trail] = intensity > 0;
+		lastX[trail] = x;
+		lastY[trail] = y;
+	}
+	
+	/** Lifts a trail, e.g. when its car is reset, so no mark joins the old spot to the new. */
+	public void lift(int trail) {
+		marking[trail] = false;
+	}
+	
+	private void add(float x1, float y1, float x2, float y2, float intensity) {
+		float dx = x2 - x1, dy = y2 - y1;
+		float length = (float) Math.sqrt(dx * dx + dy * dy);
+		if (length < 0.0001f)
+			return;
+		//half the width across the segment, in pixels
+		float scale = width / 2 / length * pixelsPerMeter;
+		float nx = -dy * scale, ny = dx * scale;
+		x1 *= pixelsPerMeter;
+		y1 *= pixelsPerMeter;
+		x2 *= pixelsPerMeter;
+		y2 *= pixelsPerMeter;
+		float packed = Color.toFloatBits(color.r, color.g, color.b, color.a * intensity);
+		
+		float[] v = vertices;
+		int o = next * QUAD_SIZE;
+		v[o] = x1 + nx;
+		v[o + 1] = y1 + ny;
+		v[o + 2] = packed;
+		v[o + 3] = x1 - nx;
+		v[o + 4] = y1 - ny;
+		v[o + 5] = packed;
+		v[o + 6] = x2 - nx;
+		v[o + 7] = y2 - ny;
+		v[o + 8] = packed;
+		v[o + 9] = x2 + nx;
+		v[o + 10] = y2 + ny;
+		v[o + 11] = packed;
+		
+		next = (next + 1) % capacity;
+		if (count < capacity)
+			count++;
+		dirty = true;
+	}
+	
+	public void setColor(float r, float g, float b, float a) {
+		color.set(r, g, b, a);
+	}
+	
+	/**
+	 * Draws every mark in one call. Must be called from the render thread.
+	 */
+	public void render(Matrix4 projection) {
+		if (count == 0)
+			return;
+		if (dirty) {
+			mesh.setVertices(vertices, 0, count * QUAD_SIZE);
+			dirty = false;
+		}
+		
+		Gdx.gl.glEnable(GL10.GL_BLEND);
+		Gdx.gl.glBlendFunc(GL10.GL_SRC_ALPHA, GL10.GL_ONE_MINUS_SRC_ALPHA);
+		if (shader != null) {
+			shader.begin();
+			shader.setUniformMatrix("u_projTrans", projection);
+			mesh.render(shader, GL10.GL_TRIANGLES, 0, count * 6);
+			shader.end();
+		} else {
+			GL10 gl = Gdx.gl10;
+			gl.glMatrixMode(GL10.GL_PROJECTION);
+			gl.glLoadMatrixf(projection.val, 0);
+			gl.glMatrixMode(GL10.GL_MODELVIEW);
+			gl.glLoadIdentity();
+			mesh.render(GL10.GL_TRIANGLES, 0, count * 6);
+		}
+		Gdx.gl.glDisable(GL10.GL_BLEND);
+	}
+	
+	/** Marks currently kept, at most the capacity. */
+	public int size() {
+		return count;
+	}
+	
+	/** Removes every mark. */
+	public void clear() {
+		count = 0;
+		next = 0;
+		for (int i = 0; i < marking.length; i++)
+			marking[i] = false;
+	}
+	
+	public void dispose() {
+		mesh.dispose();
+		if (shader != null)
+			shader.dispose();
+	}
+}
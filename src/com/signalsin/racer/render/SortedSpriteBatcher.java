@@ -0,0 +1,56 @@
+package com.signalsin.racer.render;
+
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.Sprite;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.ObjectMap;
+
+/**
+ * Collects the dynamic sprites of a frame and draws them grouped by texture
+ * page. SpriteBatch flushes every time the texture changes, so drawing cars
+ * with mixed skins in arbitrary order can cost a draw call per car; grouped,
+ * it costs one per page. Buckets are kept between frames, so after the first
+ * few frames nothing is allocated.
+ */
+public class SortedSpriteBatcher {
+	
+	private final ObjectMap<Texture, Array<Sprite>> buckets = new ObjectMap<Texture, Array<Sprite>>();
+	//pages in the order they were first seen, so draw order is stable between frames
+	private final Array<Texture> pages = new Array<Texture>();
+	private int lastFlushes;
+	
+	public void add(Sprite sprite) {
+		Texture texture = sprite.getTexture();
+		Array<Sprite> bucket = buckets.get(texture);
+		if (bucket == null) {
+			bucket = new Array<Sprite>();
+			buckets.put(texture, bucket);
+			pages.add(texture);
+		}
+		bucket.add(sprite);
+	}
+	
+	/**
+	 * Draws and forgets everything added since the last call. Must be inside
+	 * batch.begin()/end().
+	 */
+	public void draw(SpriteBatch batch) {
+		int before = batch.renderCalls;
+		for (int i = 0; i < pages.size; i++) {
+			Array<Sprite> bucket = buckets.get(pages.get(i));
+			for (int j = 0; j < bucket.size; j++)
+				bucket.get(j).draw(batch);
+			bucket.clear();
+		}
+		lastFlushes = batch.renderCalls - before;
+	}
+	
+	/**
+	 * Flushes forced by texture changes during the last draw(). The final
+	 * flush happens in batch.end() and isn't counted here.
+	 */
+	public int getLastFlushes() {
+		return lastFlushes;
+	}
+}
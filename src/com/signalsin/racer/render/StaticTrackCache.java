@@ -0,0 +1,77 @@
+package com.signalsin.racer.render;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.SpriteCache;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.signalsin.racer.car.BoxProp;
+
+/**
+ * The visuals of the static track props, uploaded to the GPU once and drawn
+ * every frame with a single call per texture. Props don't move, so there is
+ * nothing to rebuild unless the track itself changes.
+ */
+public class StaticTrackCache implements Disposable {
+	
+	private final SpriteCache cache;
+	private final int cacheId;
+	private final int drawCalls;
+	//only set when we had to make our own plain texture
+	private Texture plain;
+	
+	/**
+	 * @param props the props to draw
+	 * @param region image stretched over every prop, or null for flat colour
+	 * @param color tint for the props
+	 * @param pixelsPerMeter world to pixel scale used by the rest of the scene
+	 */
+	public StaticTrackCache(Array<BoxProp> props, TextureRegion region, Color color, float pixelsPerMeter) {
+		if (region == null) {
+			Pixmap pixmap = new Pixmap(1, 1, Pixmap.Format.RGBA8888);
+			pixmap.setColor(Color.WHITE);
+			pixmap.fill();
+			plain = new Texture(pixmap);
+			pixmap.dispose();
+			region = new TextureRegion(plain);
+		}
+		
+		cache = new SpriteCache(Math.max(1, props.size), false);
+		cache.setColor(color);
+		cache.beginCache();
+		for (int i = 0; i < props.size; i++) {
+			BoxProp prop = props.get(i);
+			float width = prop.width * pixelsPerMeter;
+			float height = prop.height * pixelsPerMeter;
+			cache.add(region, prop.x * pixelsPerMeter - width / 2, prop.y * pixelsPerMeter - height / 2, width, height);
+		}
+		cacheId = cache.endCache();
+		//everything comes from one region, so one texture
+		drawCalls = props.size > 0 ? 1 : 0;
+	}
+	
+	public void render(Matrix4 projection) {
+		if (drawCalls == 0)
+			return;
+		cache.setProjectionMatrix(projection);
+		cache.begin();
+		cache.draw(cacheId);
+		cache.end();
+	}
+	
+	/**
+	 * GL draw calls render() issues.
+	 */
+	public int getDrawCalls() {
+		return drawCalls;
+	}
+	
+	public void dispose() {
+		cache.dispose();
+		if (plain != null)
+			plain.dispose();
+	}
+}
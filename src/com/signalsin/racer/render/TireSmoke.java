@@ -0,0 +1,164 @@
+package com.signalsin.racer.render;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.utils.Disposable;
+
+/**
+ * Puffs of tyre smoke from a fixed pool of particles. Every particle lives
+ * in a set of flat arrays allocated up front; a new puff takes a free slot,
+ * or the oldest one when the pool is full, so the smoke of a whole field
+ * costs the same memory as that of one car. Puffs drift, grow and fade, and
+ * are drawn through the sprite batch that draws the cars, all with the same
+ * texture.
+ */
+public class TireSmoke implements Disposable {
+	
+	private final float pixelsPerMeter;
+	private final int capacity;
+	private final float[] x, y, velX, velY, age, life;
+	private int next;
+	private int alive;
+	//fraction of a puff carried over to the next emit()
+	private float carry;
+	
+	private final TextureRegion region;
+	//only set when we had to make our own texture
+	private Texture own;
+	
+	/** Puffs per second at full intensity. */
+	public float rate = 30;
+	/** Seconds a puff lasts. */
+	public float lifetime = 0.8f;
+	/** Puff diameter in meters when born and when gone. */
+	public float startSize = 0.4f, endSize = 1.6f;
+	/** Random drift speed in meters per second. */
+	public float drift = 0.6f;
+	private final Color color = new Color(0.85f, 0.85f, 0.85f, 0.5f);
+	
+	/**
+	 * @param capacity puffs alive at once
+	 * @param region soft round image for a puff, or null for a generated one
+	 * @param pixelsPerMeter world to pixel scale used by the rest of the scene
+	 */
+	public TireSmoke(int capacity, TextureRegion region, float pixelsPerMeter) {
+		this.capacity = capacity;
+		this.pixelsPerMeter = pixelsPerMeter;
+		x = new float[capacity];
+		y = new float[capacity];
+		velX = new float[capacity];
+		velY = new float[capacity];
+		age = new float[capacity];
+		life = new float[capacity];
+		
+		if (region == null) {
+			own = createPuff(32);
+			region = new TextureRegion(own);
+		}
+		this.region = region;
+	}
+	
+	//white disc that fades out towards the edge
+	private static Texture createPuff(int size) {
+		Pixmap pixmap = new Pixmap(size, size, Pixmap.Format.RGBA8888);
+		//write the alpha as is rather than blending it onto the empty pixmap
+		Pixmap.setBlending(Pixmap.Blending.None);
+		float radius = size / 2f;
+		for (int py = 0; py < size; py++) {
+			for (int px = 0; px < size; px++) {
+				float dx = px + 0.5f - radius, dy = py + 0.5f - radius;
+				float d = (float) Math.sqrt(dx * dx + dy * dy) / radius;
+				float a = d >= 1 ? 0 : (1 - d) * (1 - d);
+				pixmap.drawPixel(px, py, Color.rgba8888(1, 1, 1, a));
+			}
+		}
+		Pixmap.setBlending(Pixmap.Blending.SourceOver);
+		Texture texture = new Texture(pixmap);
+		pixmap.dispose();
+		return texture;
+	}
+	
+	/**
+	 * Lets a sliding wheel smoke for a frame.
+	 * @param x position in meters
+	 * @param y position in meters
+	 * @param intensity 0 for none, up to 1 for a full slide
+	 * @param delta frame time in seconds
+	 */
+	public void emit(float x, float y, float intensity, float delta) {
+		if (intensity <= 0)
+			return;
+		carry += rate * Math.min(intensity, 1) * delta;
+		while (carry >= 1) {
+			carry--;
+			spawn(x, y);
+		}
+	}
+	
+	private void spawn(float px, float py) {
+		int i = next;
+		next = (next + 1) % capacity;
+		if (age[i] >= life[i])
+			alive++;
+		x[i] = px;
+		y[i] = py;
+		float angle = MathUtils.random(MathUtils.PI * 2);
+		float speed = MathUtils.random(drift);
+		velX[i] = MathUtils.cos(angle) * speed;
+		velY[i] = MathUtils.sin(angle) * speed;
+		age[i] = 0;
+		life[i] = lifetime * MathUtils.random(0.7f, 1.3f);
+	}
+	
+	public void update(float delta) {
+		if (alive == 0)
+			return;
+		for (int i = 0; i < capacity; i++) {
+			if (age[i] >= life[i])
+				continue;
+			age[i] += delta;
+			if (age[i] >= life[i]) {
+				alive--;
+				continue;
+			}
+			x[i] += velX[i] * delta;
+			y[i] += velY[i] * delta;
+		}
+	}
+	
+	/**
+	 * Draws the live puffs; the batch must be drawing with the scene's
+	 * projection. Leaves the batch colour white.
+	 */
+	public void draw(SpriteBatch batch) {
+		if (alive == 0)
+			return;
+		for (int i = 0; i < capacity; i++) {
+			if (age[i] >= life[i])
+				continue;
+			float t = age[i] / life[i];
+			float size = (startSize + (endSize - startSize) * t) * pixelsPerMeter;
+			batch.setColor(color.r, color.g, color.b, color.a * (1 - t));
+			batch.draw(region, x[i] * pixelsPerMeter - size / 2, y[i] * pixelsPerMeter - size / 2, size, size);
+		}
+		batch.setColor(Color.WHITE);
+	}
+	
+	public void setColor(float r, float g, float b, float a) {
+		color.set(r, g, b, a);
+	}
+	
+	/** Puffs currently alive. */
+	public int size() {
+		return alive;
+	}
+	
+	public void dispose() {
+		if (own != null)
+			own.dispose();
+	}
+}
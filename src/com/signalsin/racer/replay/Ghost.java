@@ -0,0 +1,169 @@
+package com.signalsin.racer.replay;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * One recorded lap of a car's chassis: position and angle sampled at a fixed
+ * rate, kept quantized (1/256 of a meter, a full turn in 16 bits) so a ghost
+ * in memory is three ints per sample and nothing else.
+ *
+ * On disk each sample is stored as the difference from where the previous
+ * two samples predict it to be, zigzag varint encoded. A car moves smoothly
+ * between samples, so most of those differences fit in one byte and a one
+ * minute lap at 20 samples a second is a couple of kilobytes.
+ *
+ * Format:
+ *   'G' 'H' version  sampleRate(varint)  sampleCount(varint)  samples...
+ * with every sample as three zigzag varints: x, y and angle.
+ */
+public class Ghost {
+	
+	static final byte MAGIC_0 = 'G';
+	static final byte MAGIC_1 = 'H';
+	static final byte VERSION = 1;
+	
+	/** 1/256 of a meter. */
+	public static final float POSITION_SCALE = 256;
+	/** A full turn maps onto 16 bits. */
+	public static final float ANGLE_SCALE = 65536 / (MathUtils.PI * 2);
+	
+	private final int sampleRate;
+	private final int sampleCount;
+	private final int[] x, y, angle;
+	
+	Ghost(int sampleRate, int sampleCount, int[] x, int[] y, int[] angle) {
+		this.sampleRate = sampleRate;
+		this.sampleCount = sampleCount;
+		this.x = x;
+		this.y = y;
+		this.angle = angle;
+	}
+	
+	public int getSampleRate() {
+		return sampleRate;
+	}
+	
+	public int getSampleCount() {
+		return sampleCount;
+	}
+	
+	/** Length of the lap in seconds. */
+	public float getDuration() {
+		return sampleCount > 0 ? (float) (sampleCount - 1) / sampleRate : 0;
+	}
+	
+	public float getX(int sample) {
+		return x[sample] / POSITION_SCALE;
+	}
+	
+	public float getY(int sample) {
+		return y[sample] / POSITION_SCALE;
+	}
+	
+	public float getAngle(int sample) {
+		return angle[sample] / ANGLE_SCALE;
+	}
+	
+	//quantized access for GhostPlayer
+	int rawX(int sample) {
+		return x[sample];
+	}
+	
+	int rawY(int sample) {
+		return y[sample];
+	}
+	
+	int rawAngle(int sample) {
+		return angle[sample];
+	}
+	
+	public byte[] toBytes() {
+		//worst case is five bytes per value
+		byte[] out = new byte[3 + 5 + 5 + sampleCount * 3 * 5];
+		int length = 0;
+		out[length++] = MAGIC_0;
+		out[length++] = MAGIC_1;
+		out[length++] = VERSION;
+		length = InputRecorder.writeVarint(out, length, sampleRate);
+		length = InputRecorder.writeVarint(out, length, sampleCount);
+		for (int i = 0; i < sampleCount; i++) {
+			length = InputRecorder.writeVarint(out, length, zigzag(x[i] - predict(x, i)));
+			length = InputRecorder.writeVarint(out, length, zigzag(y[i] - predict(y, i)));
+			length = InputRecorder.writeVarint(out, length, zigzag(wrapAngle(angle[i] - predict(angle, i))));
+		}
+		byte[] trimmed = new byte[length];
+		System.arraycopy(out, 0, trimmed, 0, length);
+		return trimmed;
+	}
+	
+	public static Ghost read(byte[] data) {
+		if (data.length < 3 || data[0] != MAGIC_0 || data[1] != MAGIC_1)
+			throw new GdxRuntimeException("Not a ghost");
+		if (data[2] != VERSION)
+			throw new GdxRuntimeException("Unsupported ghost version: " + data[2]);
+		
+		int[] cursor = {3};
+		int sampleRate = readVarint(data, cursor);
+		int sampleCount = readVarint(data, cursor);
+		if (sampleRate <= 0)
+			throw new GdxRuntimeException("Corrupt ghost: sample rate " + sampleRate);
+		int[] x = new int[sampleCount];
+		int[] y = new int[sampleCount];
+		int[] angle = new int[sampleCount];
+		for (int i = 0; i < sampleCount; i++) {
+			x[i] = predict(x, i) + unzigzag(readVarint(data, cursor));
+			y[i] = predict(y, i) + unzigzag(readVarint(data, cursor));
+			angle[i] = (predict(angle, i) + unzigzag(readVarint(data, cursor))) & 0xffff;
+		}
+		return new Ghost(sampleRate, sampleCount, x, y, angle);
+	}
+	
+	public static Ghost read(FileHandle file) {
+		return read(file.readBytes());
+	}
+	
+	public void write(FileHandle file) {
+		file.writeBytes(toBytes(), false);
+	}
+	
+	/**
+	 * Where the sample would be if the car kept the velocity of the previous
+	 * two samples. Angles are predicted on the 16 bit circle.
+	 */
+	private static int predict(int[] values, int i) {
+		if (i == 0)
+			return 0;
+		if (i == 1)
+			return values[0];
+		return 2 * values[i - 1] - values[i - 2];
+	}
+	
+	//shortest way round the 16 bit angle circle, -32768..32767
+	static int wrapAngle(int delta) {
+		return (short) delta;
+	}
+	
+	private static int zigzag(int value) {
+		return (value << 1) ^ (value >> 31);
+	}
+	
+	private static int unzigzag(int value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+	
+	private static int readVarint(byte[] data, int[] cursor) {
+		int value = 0;
+		int shift = 0;
+		while (true) {
+			if (cursor[0] >= data.length)
+				throw new GdxRuntimeException("Truncated ghost");
+			int b = data[cursor[0]++] & 0xff;
+			value |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+			shift += 7;
+		}
+	}
+}
@@ -0,0 +1,113 @@
+package com.signalsin.racer.replay;
+
+import com.badlogic.gdx.math.Vector2;
+
+/**
+ * Plays back any number of ghosts against one race clock. Ghosts have no
+ * bodies and never touch the World: their position at the current time is
+ * interpolated between the two nearest samples on request. Slots are
+ * allocated up front, so adding, removing and drawing ghosts every frame
+ * doesn't allocate.
+ */
+public class GhostPlayer {
+	
+	private final Ghost[] ghosts;
+	//race time at which each ghost's lap starts
+	private final float[] startTime;
+	private final boolean[] looping;
+	private int count;
+	private float time;
+	
+	public GhostPlayer(int capacity) {
+		ghosts = new Ghost[capacity];
+		startTime = new float[capacity];
+		looping = new boolean[capacity];
+	}
+	
+	/**
+	 * Starts a ghost at the current race time.
+	 * @param loop keep replaying the lap instead of disappearing at its end
+	 * @return the ghost's slot, or -1 if every slot is in use
+	 */
+	public int add(Ghost ghost, boolean loop) {
+		if (count == ghosts.length || ghost.getSampleCount() == 0)
+			return -1;
+		ghosts[count] = ghost;
+		startTime[count] = time;
+		looping[count] = loop;
+		return count++;
+	}
+	
+	/** Removes a ghost; the last ghost moves into its slot. */
+	public void remove(int slot) {
+		count--;
+		ghosts[slot] = ghosts[count];
+		startTime[slot] = startTime[count];
+		looping[slot] = looping[count];
+		ghosts[count] = null;
+	}
+	
+	public void clear() {
+		for (int i = 0; i < count; i++)
+			ghosts[i] = null;
+		count = 0;
+	}
+	
+	public void update(float delta) {
+		time += delta;
+	}
+	
+	/** Restarts every ghost, e.g. when the player crosses the start line. */
+	public void restart() {
+		for (int i = 0; i < count; i++)
+			startTime[i] = time;
+	}
+	
+	public int size() {
+		return count;
+	}
+	
+	public Ghost getGhost(int slot) {
+		return ghosts[slot];
+	}
+	
+	/** False once a non looping ghost has finished its lap. */
+	public boolean isVisible(int slot) {
+		return looping[slot] || time - startTime[slot] <= ghosts[slot].getDuration();
+	}
+	
+	public Vector2 getPosition(int slot, Vector2 out) {
+		Ghost ghost = ghosts[slot];
+		float sample = samplePosition(slot);
+		int i = (int) sample;
+		float alpha = sample - i;
+		int next = Math.min(i + 1, ghost.getSampleCount() - 1);
+		float x = ghost.rawX(i) + (ghost.rawX(next) - ghost.rawX(i)) * alpha;
+		float y = ghost.rawY(i) + (ghost.rawY(next) - ghost.rawY(i)) * alpha;
+		return out.set(x / Ghost.POSITION_SCALE, y / Ghost.POSITION_SCALE);
+	}
+	
+	/** Chassis angle in radians. */
+	public float getAngle(int slot) {
+		Ghost ghost = ghosts[slot];
+		float sample = samplePosition(slot);
+		int i = (int) sample;
+		float alpha = sample - i;
+		int next = Math.min(i + 1, ghost.getSampleCount() - 1);
+		int from = ghost.rawAngle(i);
+		//the short way round, so a ghost crossing 0 doesn't spin
+		float angle = from + Ghost.wrapAngle(ghost.rawAngle(next) - from) * alpha;
+		return angle / Ghost.ANGLE_SCALE;
+	}
+	
+	//fractional sample index for the current time, clamped or wrapped into the lap
+	private float samplePosition(int slot) {
+		Ghost ghost = ghosts[slot];
+		float lapTime = time - startTime[slot];
+		float duration = ghost.getDuration();
+		if (looping[slot] && duration > 0)
+			lapTime %= duration;
+		lapTime = Math.max(0, Math.min(lapTime, duration));
+		return lapTime * ghost.getSampleRate();
+	}
+}
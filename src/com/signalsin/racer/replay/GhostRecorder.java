@@ -0,0 +1,92 @@
+package com.signalsin.racer.replay;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.Body;
+
+/**
+ * Samples a car's chassis into a fixed size ring of quantized positions and
+ * angles while it drives, so a lap can be cut out as a Ghost once it is
+ * finished. Sampling only writes three ints, and the ring is allocated once,
+ * so it can run for every car in a race.
+ */
+public class GhostRecorder {
+	
+	private final int sampleRate;
+	private final int ticksPerSample;
+	private final int capacity;
+	private final int[] x, y, angle;
+	//samples taken since the start, the ring holds the last capacity of them
+	private int samples;
+	private int tick;
+	
+	/**
+	 * @param sampleRate samples per second
+	 * @param stepsPerSecond physics ticks per second; update() is called once per tick
+	 * @param maxLapSeconds longest lap that can still be cut out whole
+	 */
+	public GhostRecorder(int sampleRate, int stepsPerSecond, float maxLapSeconds) {
+		if (sampleRate <= 0 || stepsPerSecond % sampleRate != 0)
+			throw new IllegalArgumentException("sampleRate must divide stepsPerSecond: " + sampleRate + ", " + stepsPerSecond);
+		this.sampleRate = sampleRate;
+		this.ticksPerSample = stepsPerSecond / sampleRate;
+		this.capacity = (int) Math.ceil(maxLapSeconds * sampleRate) + 1;
+		this.x = new int[capacity];
+		this.y = new int[capacity];
+		this.angle = new int[capacity];
+	}
+	
+	/**
+	 * Call once per physics tick, after the world has stepped.
+	 */
+	public void update(Body chassis) {
+		if (tick++ % ticksPerSample != 0)
+			return;
+		Vector2 position = chassis.getPosition();
+		sample(position.x, position.y, chassis.getAngle());
+	}
+	
+	public void sample(float worldX, float worldY, float radians) {
+		int slot = samples % capacity;
+		x[slot] = Math.round(worldX * Ghost.POSITION_SCALE);
+		y[slot] = Math.round(worldY * Ghost.POSITION_SCALE);
+		angle[slot] = Math.round(radians * Ghost.ANGLE_SCALE) & 0xffff;
+		samples++;
+	}
+	
+	/**
+	 * Marker for the start of a lap: the latest sample, so the ghost starts
+	 * right where the car crossed the line.
+	 */
+	public int mark() {
+		return Math.max(0, samples - 1);
+	}
+	
+	/**
+	 * Copies everything sampled since the mark into a Ghost. Returns null if
+	 * the lap took longer than the ring holds.
+	 */
+	public Ghost cut(int mark) {
+		int count = samples - mark;
+		if (count <= 0 || count > capacity)
+			return null;
+		int[] lapX = new int[count];
+		int[] lapY = new int[count];
+		int[] lapAngle = new int[count];
+		for (int i = 0; i < count; i++) {
+			int slot = (mark + i) % capacity;
+			lapX[i] = x[slot];
+			lapY[i] = y[slot];
+			lapAngle[i] = angle[slot];
+		}
+		return new Ghost(sampleRate, count, lapX, lapY, lapAngle);
+	}
+	
+	public int getSampleRate() {
+		return sampleRate;
+	}
+	
+	public void reset() {
+		samples = 0;
+		tick = 0;
+	}
+}
@@ -0,0 +1,122 @@
+package com.signalsin.racer.replay;
+
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * A decoded input recording. Keeps the runs as two int arrays so the input
+ * for any tick is a binary search away, which is what seeking needs, and
+ * playback in order just walks the runs.
+ */
+public class InputLog {
+	
+	private final int stepsPerSecond;
+	private final int tickCount;
+	private final int runCount;
+	private final int[] codes;
+	//tick at which each run ends, exclusive
+	private final int[] runEnds;
+	
+	private InputLog(int stepsPerSecond, int tickCount, int runCount, int[] codes, int[] runEnds) {
+		this.stepsPerSecond = stepsPerSecond;
+		this.tickCount = tickCount;
+		this.runCount = runCount;
+		this.codes = codes;
+		this.runEnds = runEnds;
+	}
+	
+	public static InputLog read(byte[] data) {
+		if (data.length < 3 || data[0] != InputRecorder.MAGIC_0 || data[1] != InputRecorder.MAGIC_1)
+			throw new GdxRuntimeException("Not an input recording");
+		if (data[2] != InputRecorder.VERSION)
+			throw new GdxRuntimeException("Unsupported input recording version: " + data[2]);
+		
+		int[] cursor = {3};
+		int stepsPerSecond = readVarint(data, cursor);
+		int tickCount = readVarint(data, cursor);
+		
+		int[] codes = new int[16];
+		int[] runEnds = new int[16];
+		int runCount = 0;
+		int tick = 0;
+		while (cursor[0] < data.length) {
+			int header = data[cursor[0]++] & 0xff;
+			int code = header >>> 4;
+			int run = header & 0x0f;
+			if (run == 0)
+				run = readVarint(data, cursor);
+			
+			if (runCount == codes.length) {
+				codes = grow(codes);
+				runEnds = grow(runEnds);
+			}
+			tick += run;
+			codes[runCount] = code;
+			runEnds[runCount] = tick;
+			runCount++;
+		}
+		if (tick != tickCount)
+			throw new GdxRuntimeException("Corrupt input recording: " + tick + " ticks, header says " + tickCount);
+		return new InputLog(stepsPerSecond, tickCount, runCount, codes, runEnds);
+	}
+	
+	public int getStepsPerSecond() {
+		return stepsPerSecond;
+	}
+	
+	public int getTickCount() {
+		return tickCount;
+	}
+	
+	public int getRunCount() {
+		return runCount;
+	}
+	
+	/**
+	 * Index of the run containing the given tick.
+	 */
+	public int findRun(int tick) {
+		if (tick < 0 || tick >= tickCount)
+			throw new IndexOutOfBoundsException("tick " + tick + " of " + tickCount);
+		int low = 0, high = runCount - 1;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (runEnds[mid] <= tick)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+	
+	public int getRunEnd(int run) {
+		return runEnds[run];
+	}
+	
+	public int getSteer(int run) {
+		return codes[run] / InputRecorder.ACCELERATE_VALUES;
+	}
+	
+	public int getAccelerate(int run) {
+		return codes[run] % InputRecorder.ACCELERATE_VALUES;
+	}
+	
+	private static int readVarint(byte[] data, int[] cursor) {
+		int value = 0;
+		int shift = 0;
+		while (true) {
+			if (cursor[0] >= data.length)
+				throw new GdxRuntimeException("Truncated input recording");
+			int b = data[cursor[0]++] & 0xff;
+			value |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+			shift += 7;
+		}
+	}
+	
+	private static int[] grow(int[] array) {
+		int[] bigger = new int[array.length * 2];
+		System.arraycopy(array, 0, bigger, 0, array.length);
+		return bigger;
+	}
+}
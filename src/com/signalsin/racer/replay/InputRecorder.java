@@ -0,0 +1,135 @@
+package com.signalsin.racer.replay;
+
+import com.signalsin.racer.car.Car;
+
+/**
+ * Records the steer and accelerate values a car was given on every physics
+ * tick. Consecutive ticks with the same input are stored as one run, so a car
+ * holding the throttle through a corner costs a couple of bytes rather than one
+ * byte per tick.
+ *
+ * Format (see InputLog for the reader):
+ *   'R' 'P' version  stepsPerSecond(varint)  tickCount(varint)  runs...
+ * Each run starts with one byte: the high nibble is the input code
+ * (steer * 3 + accelerate), the low nibble the run length 1..15. A low nibble
+ * of 0 means the run length follows as a varint.
+ *
+ * Synchronized, so a recording made on the physics thread can be read with
+ * toBytes() from any other thread; the lock is never contended for long.
+ */
+public class InputRecorder {
+	
+	static final byte MAGIC_0 = 'R';
+	static final byte MAGIC_1 = 'P';
+	static final byte VERSION = 1;
+	static final int ACCELERATE_VALUES = 3;
+	static final int MAX_INLINE_RUN = 15;
+	
+	private final int stepsPerSecond;
+	private byte[] runs;
+	private int length;
+	private int tickCount;
+	private int currentCode = -1;
+	private int currentRun;
+	
+	public InputRecorder(int stepsPerSecond) {
+		this.stepsPerSecond = stepsPerSecond;
+		this.runs = new byte[256];
+	}
+	
+	/**
+	 * Call once per physics tick, before the car is updated.
+	 */
+	public synchronized void record(int steer, int accelerate) {
+		int code = encode(steer, accelerate);
+		if (code == currentCode) {
+			currentRun++;
+		} else {
+			flushRun();
+			currentCode = code;
+			currentRun = 1;
+		}
+		tickCount++;
+	}
+	
+	public void record(Car car) {
+		record(car.getSteer(), car.getAccelerate());
+	}
+	
+	public synchronized int getTickCount() {
+		return tickCount;
+	}
+	
+	public synchronized void reset() {
+		length = 0;
+		tickCount = 0;
+		currentCode = -1;
+		currentRun = 0;
+	}
+	
+	/**
+	 * The recording so far, ready to be written to a file or handed to
+	 * InputLog.read(). Recording can carry on afterwards.
+	 */
+	public synchronized byte[] toBytes() {
+		byte[] header = new byte[3 + 5 + 5];
+		int headerLength = 0;
+		header[headerLength++] = MAGIC_0;
+		header[headerLength++] = MAGIC_1;
+		header[headerLength++] = VERSION;
+		headerLength = writeVarint(header, headerLength, stepsPerSecond);
+		headerLength = writeVarint(header, headerLength, tickCount);
+		
+		//the open run isn't in the buffer yet, encode it onto the end of the copy
+		byte[] tail = new byte[1 + 5];
+		int tailLength = currentRun > 0 ? writeRun(tail, 0, currentCode, currentRun) : 0;
+		
+		byte[] out = new byte[headerLength + length + tailLength];
+		System.arraycopy(header, 0, out, 0, headerLength);
+		System.arraycopy(runs, 0, out, headerLength, length);
+		System.arraycopy(tail, 0, out, headerLength + length, tailLength);
+		return out;
+	}
+	
+	private void flushRun() {
+		if (currentRun == 0)
+			return;
+		ensureCapacity(length + 6);
+		length = writeRun(runs, length, currentCode, currentRun);
+		currentRun = 0;
+	}
+	
+	private void ensureCapacity(int needed) {
+		if (needed <= runs.length)
+			return;
+		byte[] bigger = new byte[Math.max(needed, runs.length * 2)];
+		System.arraycopy(runs, 0, bigger, 0, length);
+		runs = bigger;
+	}
+	
+	static int encode(int steer, int accelerate) {
+		if (steer < Car.STEER_NONE || steer > Car.STEER_HARD_RIGHT)
+			throw new IllegalArgumentException("Unknown steer value: " + steer);
+		if (accelerate < Car.ACC_NONE || accelerate > Car.ACC_BRAKE)
+			throw new IllegalArgumentException("Unknown accelerate value: " + accelerate);
+		return steer * ACCELERATE_VALUES + accelerate;
+	}
+	
+	private static int writeRun(byte[] out, int offset, int code, int run) {
+		if (run <= MAX_INLINE_RUN) {
+			out[offset++] = (byte) ((code << 4) | run);
+			return offset;
+		}
+		out[offset++] = (byte) (code << 4);
+		return writeVarint(out, offset, run);
+	}
+	
+	static int writeVarint(byte[] out, int offset, int value) {
+		while ((value & ~0x7f) != 0) {
+			out[offset++] = (byte) ((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		out[offset++] = (byte) value;
+		return offset;
+	}
+}
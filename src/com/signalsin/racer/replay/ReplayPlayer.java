@@ -0,0 +1,131 @@
+package com.signalsin.racer.replay;
+
+import com.badlogic.gdx.physics.box2d.World;
+import com.badlogic.gdx.utils.Array;
+import com.signalsin.racer.car.Car;
+import com.signalsin.racer.physics.FixedStepClock;
+
+/**
+ * Plays an InputLog back through Car.update() and World.step(). The world and
+ * car must be freshly built the same way they were when the recording started;
+ * from there the fixed time step makes the replay follow the original race.
+ *
+ * Headless tools call fastForward() or seek() and run as fast as the CPU
+ * allows. A screen calls update(delta) every frame to play at real time and
+ * draws using getAlpha() like the live game does.
+ */
+public class ReplayPlayer {
+	
+	private final InputLog log;
+	private final World world;
+	private final Car car;
+	private final int velocityIterations;
+	private final int positionIterations;
+	private final int checkpointInterval;
+	private final FixedStepClock clock;
+	
+	private final Array<WorldCheckpoint> checkpoints = new Array<WorldCheckpoint>();
+	private int tick;
+	private int run;
+	
+	/**
+	 * @param checkpointInterval ticks between the checkpoints kept for seeking
+	 * backwards; more checkpoints means faster seeks but more memory
+	 */
+	public ReplayPlayer(InputLog log, World world, Car car,
+			int velocityIterations, int positionIterations, int checkpointInterval) {
+		this.log = log;
+		this.world = world;
+		this.car = car;
+		this.velocityIterations = velocityIterations;
+		this.positionIterations = positionIterations;
+		this.checkpointInterval = checkpointInterval;
+		this.clock = new FixedStepClock(log.getStepsPerSecond(), 5);
+		this.tick = 0;
+		this.run = 0;
+		checkpoints.add(new WorldCheckpoint(0, world, car));
+	}
+	
+	public int getTick() {
+		return tick;
+	}
+	
+	public boolean isFinished() {
+		return tick >= log.getTickCount();
+	}
+	
+	/**
+	 * Simulates the next recorded tick. Returns false once the recording has run out.
+	 */
+	public boolean step() {
+		if (isFinished())
+			return false;
+		
+		if (tick >= log.getRunEnd(run))
+			run++;
+		car.setSteer(log.getSteer(run));
+		car.setAccelerate(log.getAccelerate(run));
+		
+		float step = clock.getStep();
+		car.storePreviousTransform();
+		car.update(step);
+		world.step(step, velocityIterations, positionIterations);
+		tick++;
+		
+		if (tick % checkpointInterval == 0 && tick > checkpoints.peek().tick)
+			checkpoints.add(new WorldCheckpoint(tick, world, car));
+		return true;
+	}
+	
+	/**
+	 * Simulates up to the given number of ticks as fast as possible.
+	 */
+	public void fastForward(int ticks) {
+		int done = 0;
+		while (done < ticks && step())
+			done++;
+	}
+	
+	/**
+	 * Plays back at real time. Returns the number of ticks simulated.
+	 */
+	public int update(float delta) {
+		int steps = clock.advance(delta);
+		int done = 0;
+		while (done < steps && step())
+			done++;
+		return done;
+	}
+	
+	/**
+	 * Interpolation factor for drawing between the last two ticks, see
+	 * FixedStepClock.getAlpha().
+	 */
+	public float getAlpha() {
+		return clock.getAlpha();
+	}
+	
+	/**
+	 * Moves the replay to the given tick. Going forwards simply simulates;
+	 * going backwards restores the closest earlier checkpoint and simulates from
+	 * there.
+	 */
+	public void seek(int target) {
+		target = Math.max(0, Math.min(target, log.getTickCount()));
+		if (target < tick) {
+			WorldCheckpoint checkpoint = checkpoints.get(0);
+			for (int i = checkpoints.size - 1; i >= 0; i--) {
+				if (checkpoints.get(i).tick <= target) {
+					checkpoint = checkpoints.get(i);
+					break;
+				}
+			}
+			checkpoint.restore(car);
+			world.clearForces();
+			tick = checkpoint.tick;
+			run = tick < log.getTickCount() ? log.findRun(tick) : log.getRunCount() - 1;
+			clock.reset();
+		}
+		fastForward(target - tick);
+	}
+}
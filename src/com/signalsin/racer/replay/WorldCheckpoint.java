@@ -0,0 +1,65 @@
+package com.signalsin.racer.replay;
+
+import java.util.Iterator;
+
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.physics.box2d.World;
+import com.signalsin.racer.car.Car;
+
+/**
+ * The state of every body in a world plus the car's own steering state at one
+ * tick, so a replay can jump back here instead of re-simulating from the
+ * start. Box2D keeps some internal state we can't get at (contact caches,
+ * warm starting impulses), so a restored run matches the original closely
+ * rather than bit for bit.
+ */
+public class WorldCheckpoint {
+	
+	public final int tick;
+	private final Body[] bodies;
+	//x, y, angle, velocity x, velocity y, angular velocity per body
+	private final float[] state;
+	private final boolean[] awake;
+	private final float wheelAngle;
+	private final int steer, accelerate;
+	
+	public WorldCheckpoint(int tick, World world, Car car) {
+		this.tick = tick;
+		this.bodies = new Body[world.getBodyCount()];
+		this.state = new float[bodies.length * 6];
+		this.awake = new boolean[bodies.length];
+		
+		int i = 0;
+		for (Iterator<Body> it = world.getBodies(); it.hasNext() && i < bodies.length; i++) {
+			Body body = it.next();
+			bodies[i] = body;
+			int s = i * 6;
+			state[s] = body.getPosition().x;
+			state[s + 1] = body.getPosition().y;
+			state[s + 2] = body.getAngle();
+			state[s + 3] = body.getLinearVelocity().x;
+			state[s + 4] = body.getLinearVelocity().y;
+			state[s + 5] = body.getAngularVelocity();
+			awake[i] = body.isAwake();
+		}
+		
+		this.wheelAngle = car.getWheelAngle();
+		this.steer = car.getSteer();
+		this.accelerate = car.getAccelerate();
+	}
+	
+	public void restore(Car car) {
+		for (int i = 0; i < bodies.length; i++) {
+			Body body = bodies[i];
+			int s = i * 6;
+			body.setTransform(state[s], state[s + 1], state[s + 2]);
+			body.setLinearVelocity(state[s + 3], state[s + 4]);
+			body.setAngularVelocity(state[s + 5]);
+			body.setAwake(awake[i]);
+		}
+		car.setWheelAngle(wheelAngle);
+		car.setSteer(steer);
+		car.setAccelerate(accelerate);
+		car.storePreviousTransform();
+	}
+}
@@ -1,33 +1,251 @@
 package com.signalsin.racer.resources;
 
 import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas.AtlasRegion;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntMap;
+import com.badlogic.gdx.utils.ObjectMap;
 
 public class ImageCache {  
-	  
-	//private static Texture sheet;
-	private static TextureAtlas atlas; 
 	
-	//load the texture pack file from TexturePacker
+	/**
+	 * One texture pack file from TexturePacker and its bookkeeping.
+	 */
+	private static class Atlas {
+		final String pack;
+		final String path;
+		TextureAtlas atlas;
+		int references;
+		long lastUsed;
+		long bytes;
+		
+		Atlas(String pack) {
+			this.pack = pack;
+			this.path = "data/" + pack;
+		}
+	}
+	
+	/**
+	 * What a name lookup resolves to: the region and the atlas it lives in, so
+	 * a lookup can mark the atlas as recently used without another search.
+	 */
+	private static class Entry {
+		final AtlasRegion region;
+		final Atlas owner;
+		
+		Entry(AtlasRegion region, Atlas owner) {
+			this.region = region;
+			this.owner = owner;
+		}
+	}
+	
+	//atlases are loaded through an AssetManager so the pages can decode in the background
+	private static AssetManager manager;
+	private static final ObjectMap<String, Atlas> atlases = new ObjectMap<String, Atlas>();
+	private static final Array<Atlas> pending = new Array<Atlas>();
+	
+	//region name -> first region with that name, and region name -> index -> region
+	private static final ObjectMap<String, Entry> byName = new ObjectMap<String, Entry>();
+	private static final ObjectMap<String, IntMap<Entry>> byIndex = new ObjectMap<String, IntMap<Entry>>();
+	
+	private static long budget = Long.MAX_VALUE;
+	private static long usedBytes;
+	private static long clock;
+	
+	//load the texture pack file from TexturePacker and wait for it
 	//I use the TexturePacker GUI to sort that out
 	//has a parameter so that you can specify different texture packs on load
-    public static void load (String pack) {  
-        String textureFile = "data/" + pack;  
-        atlas = new TextureAtlas(Gdx.files.internal(textureFile), Gdx.files.internal("data"));  
-    } 
-    
-    
-    public static TextureRegion getTexture (String name) {  
-        return atlas.findRegion(name);  
-    }  
-      
-    public static TextureRegion getFrame (String name, int index) {  
-        return atlas.findRegion(name, index);  
-    }
-    
-    public static void dispose(){
-    	atlas.dispose();
-    }
+	//the pack stays referenced until release() is called, so it is never evicted
+	public static void load (String pack) {  
+		Atlas atlas = request(pack);
+		atlas.references++;
+		manager.finishLoading();
+		collectLoaded();
+	} 
+	
+	//start loading a pack without blocking, call update() every frame until it returns true
+	//the pack is referenced from now on, same as load()
+	public static void loadAsync (String pack) {
+		Atlas atlas = request(pack);
+		atlas.references++;
+	}
+	
+	//keeps the asynchronous loads going, returns true once everything queued is ready
+	//must be called from the render thread, textures are uploaded here
+	public static boolean update () {
+		boolean done = manager == null || manager.update();
+		collectLoaded();
+		return done && pending.size == 0;
+	}
+	
+	//0..1, for a loading screen
+	public static float getProgress () {
+		return manager == null ? 1 : manager.getProgress();
+	}
+	
+	public static boolean isLoaded (String pack) {
+		Atlas atlas = atlases.get(pack);
+		return atlas != null && atlas.atlas != null;
+	}
+	
+	//take another reference to an already requested pack
+	public static void retain (String pack) {
+		Atlas atlas = atlases.get(pack);
+		if (atlas == null)
+			throw new IllegalArgumentException("Texture pack not loaded: " + pack);
+		atlas.references++;
+	}
+	
+	//drop a reference, unreferenced packs are unloaded once the budget is exceeded
+	public static void release (String pack) {
+		Atlas atlas = atlases.get(pack);
+		if (atlas == null || atlas.references == 0)
+			return;
+		atlas.references--;
+		evict();
+	}
+	
+	//texture memory the cache may use before it unloads unreferenced packs, least recently used first
+	public static void setBudget (long bytes) {
+		budget = bytes;
+		evict();
+	}
+	
+	public static long getUsedBytes () {
+		return usedBytes;
+	}
+	
+	public static TextureRegion getTexture (String name) {  
+		Entry entry = byName.get(name);
+		if (entry == null)
+			return null;
+		entry.owner.lastUsed = ++clock;
+		return entry.region;
+	}  
+	  
+	public static TextureRegion getFrame (String name, int index) {  
+		IntMap<Entry> frames = byIndex.get(name);
+		Entry entry = frames == null ? null : frames.get(index);
+		if (entry == null)
+			return null;
+		entry.owner.lastUsed = ++clock;
+		return entry.region;
+	}
+	
+	public static void dispose(){
+		if (manager != null)
+			manager.dispose();
+		manager = null;
+		atlases.clear();
+		pending.clear();
+		byName.clear();
+		byIndex.clear();
+		usedBytes = 0;
+	}
+	
+	private static Atlas request (String pack) {
+		if (manager == null)
+			manager = new AssetManager();
+		Atlas atlas = atlases.get(pack);
+		if (atlas == null) {
+			atlas = new Atlas(pack);
+			atlases.put(pack, atlas);
+			pending.add(atlas);
+			manager.load(atlas.path, TextureAtlas.class);
+		}
+		return atlas;
+	}
+	
+	//takes the packs the manager has finished off the pending list and indexes them
+	private static void collectLoaded () {
+		for (int i = pending.size - 1; i >= 0; i--) {
+			Atlas atlas = pending.get(i);
+			if (manager.isLoaded(atlas.path, TextureAtlas.class)) {
+				pending.removeIndex(i);
+				atlas.atlas = manager.get(atlas.path, TextureAtlas.class);
+				atlas.bytes = measure(atlas.atlas);
+				atlas.lastUsed = ++clock;
+				usedBytes += atlas.bytes;
+				index(atlas);
+				evict();
+			}
+		}
+	}
+	
+	//adds the regions of a freshly loaded atlas, names already taken by another atlas keep their region
+	private static void index (Atlas atlas) {
+		Array<AtlasRegion> regions = atlas.atlas.getRegions();
+		for (int i = 0; i < regions.size; i++) {
+			AtlasRegion region = regions.get(i);
+			Entry entry = new Entry(region, atlas);
+			if (!byName.containsKey(region.name))
+				byName.put(region.name, entry);
+			IntMap<Entry> frames = byIndex.get(region.name);
+			if (frames == null) {
+				frames = new IntMap<Entry>();
+				byIndex.put(region.name, frames);
+			}
+			if (!frames.containsKey(region.index))
+				frames.put(region.index, entry);
+		}
+	}
+	
+	private static void evict () {
+		boolean evicted = false;
+		while (usedBytes > budget) {
+			Atlas oldest = null;
+			for (Atlas atlas : atlases.values()) {
+				if (atlas.references == 0 && atlas.atlas != null
+						&& (oldest == null || atlas.lastUsed < oldest.lastUsed))
+					oldest = atlas;
+			}
+			if (oldest == null)
+				break;
+			
+			Gdx.app.log("ImageCache", "evicting " + oldest.pack);
+			atlases.remove(oldest.pack);
+			manager.unload(oldest.path);
+			usedBytes -= oldest.bytes;
+			evicted = true;
+		}
+		
+		if (evicted) {
+			//rare, so just rebuild the lookups from whatever is still loaded
+			byName.clear();
+			byIndex.clear();
+			for (Atlas atlas : atlases.values()) {
+				if (atlas.atlas != null)
+					index(atlas);
+			}
+		}
+	}
+	
+	private static long measure (TextureAtlas atlas) {
+		long bytes = 0;
+		for (Texture texture : atlas.getTextures())
+			bytes += (long) texture.getWidth() * texture.getHeight() * bytesPerPixel(texture.getTextureData().getFormat());
+		return bytes;
+	}
+	
+	private static int bytesPerPixel (Pixmap.Format format) {
+		switch (format) {
+		case Alpha:
+		case Intensity:
+			return 1;
+		case LuminanceAlpha:
+		case RGB565:
+		case RGBA4444:
+			return 2;
+		case RGB888:
+			return 3;
+		default:
+			return 4;
+		}
+	}
 
-}
\ No newline at end of file
+}
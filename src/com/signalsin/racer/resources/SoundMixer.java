@@ -0,0 +1,251 @@
+package com.signalsin.racer.resources;
+
+import com.badlogic.gdx.audio.Sound;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.ObjectMap;
+
+/**
+ * Sits between the game and Sounds so that a full field of cars can't flood
+ * the audio backend. Every clip belongs to a category with a fixed number of
+ * voices; when a category is full the quietest voice (after distance
+ * attenuation) is cut for a louder one, or the new sound is dropped. Sounds
+ * further than the cull distance from the listener never play, and a clip
+ * can't retrigger within its repeat window.
+ *
+ * Clips are only decoded the first time they are played. Once more than the
+ * decode budget is resident, the least recently played clips that aren't
+ * sounding are disposed and will be decoded again when next needed. A
+ * decoded clip is counted as 16 bit stereo PCM at 44.1kHz for its length;
+ * the file size says nothing about that once it's compressed.
+ *
+ * No callback tells us when a Sound finishes, so each clip is registered
+ * with its length and voices are freed when that time is up.
+ */
+public class SoundMixer {
+	
+	public static final int ENGINE = 0;
+	public static final int COLLISION = 1;
+	public static final int SKID = 2;
+	public static final int UI = 3;
+	public static final int CATEGORY_COUNT = 4;
+	
+	private static final int[] DEFAULT_VOICES = {4, 6, 4, 2};
+	
+	//what a decoded clip is assumed to take per second of sound
+	private static final int DECODED_BYTES_PER_SECOND = 44100 * 2 * 2;
+	
+	private static class Clip {
+		final String filename;
+		final int category;
+		final float length;
+		final float repeatWindow;
+		final long size;
+		Sound sound;
+		float lastPlayed = -Float.MAX_VALUE;
+		int playing;
+		
+		Clip(String filename, int category, float length, float repeatWindow, long size) {
+			this.filename = filename;
+			this.category = category;
+			this.length = length;
+			this.repeatWindow = repeatWindow;
+			this.size = size;
+		}
+	}
+	
+	private static class Voice {
+		Clip clip;
+		long id;
+		float priority;
+		float endTime;
+	}
+	
+	private static final ObjectMap<String, Clip> clips = new ObjectMap<String, Clip>();
+	private static final Array<Clip> decoded = new Array<Clip>();
+	private static final Voice[][] voices = new Voice[CATEGORY_COUNT][];
+	
+	private static float time;
+	private static float listenerX, listenerY;
+	private static float cullDistance = 40;
+	private static float masterVolume = 1;
+	private static long decodeBudget = 8 * 1024 * 1024;
+	private static long decodedBytes;
+	
+	static {
+		for (int c = 0; c < CATEGORY_COUNT; c++)
+			setVoices(c, DEFAULT_VOICES[c]);
+	}
+	
+	//how many sounds of a category may play at once
+	public static void setVoices (int category, int count) {
+		stopAll(category);
+		voices[category] = new Voice[count];
+		for (int i = 0; i < count; i++)
+			voices[category][i] = new Voice();
+	}
+	
+	/**
+	 * Makes a clip known to the mixer without decoding it.
+	 *
+	 * @param name name used to play it
+	 * @param filename file in data/, as for Sounds
+	 * @param length seconds the clip plays for
+	 * @param repeatWindow seconds before the same clip may trigger again
+	 */
+	public static void register (String name, String filename, int category, float length, float repeatWindow) {
+		long size = (long) Math.ceil(length * DECODED_BYTES_PER_SECOND);
+		clips.put(name, new Clip(filename, category, length, repeatWindow, size));
+	}
+	
+	//world position sounds are heard from, normally the camera
+	public static void setListener (float x, float y) {
+		listenerX = x;
+		listenerY = y;
+	}
+	
+	//sounds further away than this are silent and never take a voice
+	public static void setCullDistance (float distance) {
+		cullDistance = distance;
+	}
+	
+	public static void setMasterVolume (float volume) {
+		masterVolume = volume;
+	}
+	
+	//bytes of decoded audio that may stay resident, unused clips beyond it are disposed
+	public static void setDecodeBudget (long bytes) {
+		decodeBudget = bytes;
+		trimDecoded();
+	}
+	
+	//frees voices whose clip has finished, call once per frame
+	public static void update (float delta) {
+		time += delta;
+		for (int c = 0; c < CATEGORY_COUNT; c++) {
+			Voice[] category = voices[c];
+			for (int i = 0; i < category.length; i++) {
+				Voice voice = category[i];
+				if (voice.clip != null && voice.endTime <= time)
+					free(voice);
+			}
+		}
+	}
+	
+	/**
+	 * Plays a clip from a position in the world. Returns the sound id, or -1
+	 * if it was culled, throttled or lost the fight for a voice.
+	 */
+	public static long play (String name, float x, float y, float volume) {
+		Clip clip = clips.get(name);
+		if (clip == null)
+			throw new IllegalArgumentException("Unknown sound: " + name);
+		if (time - clip.lastPlayed < clip.repeatWindow)
+			return -1;
+		
+		float dx = x - listenerX, dy = y - listenerY;
+		float distance = (float) Math.sqrt(dx * dx + dy * dy);
+		if (distance >= cullDistance)
+			return -1;
+		float audible = volume * masterVolume * (1 - distance / cullDistance);
+		if (audible <= 0)
+			return -1;
+		
+		Voice voice = findVoice(clip.category, audible);
+		if (voice == null)
+			return -1;
+		
+		Sound sound = decode(clip);
+		float pan = MathUtils.clamp(dx / cullDistance, -1, 1);
+		long id = sound.play(audible, 1, pan);
+		
+		voice.clip = clip;
+		voice.id = id;
+		voice.priority = audible;
+		voice.endTime = time + clip.length;
+		clip.playing++;
+		clip.lastPlayed = time;
+		return id;
+	}
+	
+	//plays a clip at the listener, for UI sounds
+	public static long play (String name, float volume) {
+		return play(name, listenerX, listenerY, volume);
+	}
+	
+	public static void stopAll (int category) {
+		Voice[] slots = voices[category];
+		if (slots == null)
+			return;
+		for (int i = 0; i < slots.length; i++) {
+			if (slots[i].clip != null) {
+				slots[i].clip.sound.stop(slots[i].id);
+				free(slots[i]);
+			}
+		}
+	}
+	
+	public static void dispose () {
+		for (int c = 0; c < CATEGORY_COUNT; c++)
+			stopAll(c);
+		for (int i = 0; i < decoded.size; i++) {
+			decoded.get(i).sound.dispose();
+			decoded.get(i).sound = null;
+		}
+		decoded.clear();
+		decodedBytes = 0;
+		clips.clear();
+	}
+	
+	//a free voice, or the quietest one if it is quieter than the new sound
+	private static Voice findVoice (int category, float priority) {
+		Voice[] candidates = voices[category];
+		Voice weakest = null;
+		for (int i = 0; i < candidates.length; i++) {
+			Voice voice = candidates[i];
+			if (voice.clip == null)
+				return voice;
+			if (weakest == null || voice.priority < weakest.priority)
+				weakest = voice;
+		}
+		if (weakest == null || weakest.priority >= priority)
+			return null;
+		weakest.clip.sound.stop(weakest.id);
+		free(weakest);
+		return weakest;
+	}
+	
+	private static void free (Voice voice) {
+		voice.clip.playing--;
+		voice.clip = null;
+		voice.id = -1;
+	}
+	
+	private static Sound decode (Clip clip) {
+		if (clip.sound == null) {
+			clip.sound = Sounds.loadSound(clip.filename);
+			decodedBytes += clip.size;
+			decoded.add(clip);
+			trimDecoded();
+		}
+		//keep most recently used at the end
+		decoded.removeValue(clip, true);
+		decoded.add(clip);
+		return clip.sound;
+	}
+	
+	private static void trimDecoded () {
+		for (int i = 0; i < decoded.size && decodedBytes > decodeBudget; ) {
+			Clip clip = decoded.get(i);
+			//never the clip being played right now (last in the list), nor anything still sounding
+			if (clip.playing > 0 || i == decoded.size - 1) {
+				i++;
+				continue;
+			}
+			clip.sound.dispose();
+			clip.sound = null;
+			decodedBytes -= clip.size;
+			decoded.removeIndex(i);
+		}
+	}
+}
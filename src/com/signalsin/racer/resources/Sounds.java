@@ -14,7 +14,7 @@ public class Sounds {
 		
 	}
 	
-    private static Sound loadSound (String filename) { 
+    static Sound loadSound (String filename) { 
     	//load the sound into the game
         return Gdx.audio.newSound(Gdx.files.internal("data/" + filename));  
     }
@@ -25,6 +25,7 @@ public class Sounds {
     
     public static void dispose(){
     	key.dispose();
+    	SoundMixer.dispose();
     }
 
 }
\ No newline at end of file
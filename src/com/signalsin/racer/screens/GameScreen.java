@@ -1,22 +1,48 @@
 package com.signalsin.racer.screens;
 
+import com.badlogic.gdx.Application.ApplicationType;
 import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Input.Keys;
 import com.badlogic.gdx.Screen;
+import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.GL10;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
 import com.badlogic.gdx.graphics.g2d.Sprite;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Vector2;
-import com.badlogic.gdx.physics.box2d.Box2DDebugRenderer;
 import com.badlogic.gdx.physics.box2d.World;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.TimeUtils;
 import com.signalsin.racer.CameraHelper;
 import com.signalsin.racer.RacerGame;
 import com.signalsin.racer.car.BoxProp;
 import com.signalsin.racer.car.Car;
+import com.signalsin.racer.input.InputSource;
+import com.signalsin.racer.input.PlayerInput;
+import com.signalsin.racer.physics.CollisionEvents;
+import com.signalsin.racer.physics.FixedStepClock;
+import com.signalsin.racer.physics.PhysicsQuality;
+import com.signalsin.racer.physics.RenderSnapshot;
+import com.signalsin.racer.physics.Simulation;
+import com.signalsin.racer.physics.SimulationHost;
+import com.signalsin.racer.render.DebugOverlay;
+import com.signalsin.racer.render.SkidMarks;
+import com.signalsin.racer.render.SortedSpriteBatcher;
+import com.signalsin.racer.render.StaticTrackCache;
+import com.signalsin.racer.render.TireSmoke;
+import com.signalsin.racer.replay.GhostPlayer;
+import com.signalsin.racer.replay.InputRecorder;
 import com.signalsin.racer.resources.ImageCache;
+import com.signalsin.racer.resources.SoundMixer;
+import com.signalsin.racer.spatial.SpatialGrid;
+import com.signalsin.racer.telemetry.Telemetry;
+import com.signalsin.racer.telemetry.TelemetryExporter;
+import com.signalsin.racer.track.TrackGeometryBuilder;
 
-public class GameScreen implements Screen {
+public class GameScreen implements Screen, Simulation {
 	/**
 	 * The time the last frame was rendered, used for throttling framerate
 	 */
@@ -39,22 +65,128 @@ public class GameScreen implements Screen {
 	 */
 	private World world;
 	/**
-	 * This box2d debug renderer comes from libgdx test code. It draws lines
-	 * over all collision boundaries, so it is immensely useful for verifying
-	 * that the world collisions are as you expect them to be. It is, however,
-	 * slow, so only use it for testing.
+	 * Draws lines over the collision boundaries, so it is immensely useful for
+	 * verifying that the world collisions are as you expect them to be. Only
+	 * fixtures on screen are drawn; toggle it with F1 or the menu key.
 	 */
-	private Box2DDebugRenderer debugRenderer;
+	private DebugOverlay debugOverlay;
+	private boolean debugKeyDown;
 	
 	private static final int VIRTUAL_WIDTH = 480;
 	private static final int VIRTUAL_HEIGHT = 320;
 	
+	/**
+	 * Phones render the scene at between half and full screen resolution,
+	 * whatever keeps the frame rate, and stretch it to fit. Desktops stay at
+	 * full resolution.
+	 */
+	private static final float MIN_RENDER_SCALE = 0.5f;
+	private static final float MAX_RENDER_SCALE = 1;
+	
 	private float worldWidth;
 	private float worldHeight;
 	private static int PIXELS_PER_METER=16;      //how many pixels in a meter
 	
 	Car car;
 	
+	//the track props, baked into trackCache once they're all created
+	private final Array<BoxProp> props = new Array<BoxProp>();
+	private static final float TRACK_REGION_SIZE = 32;
+	private StaticTrackCache trackCache;
+	//dynamic sprites get drawn grouped by texture page
+	private final SortedSpriteBatcher carBatcher = new SortedSpriteBatcher();
+	
+	//props and cars by location, so only what is on screen gets drawn
+	private static final float GRID_CELL_SIZE = 8;
+	private SpatialGrid trackIndex;
+	private int carHandle;
+	private final IntArray visibleItems = new IntArray();
+	
+	/**
+	 * Physics runs at a fixed rate regardless of the frame rate, so a 30fps
+	 * phone and a 120fps desktop simulate exactly the same race.
+	 */
+	private static final int PHYSICS_STEPS_PER_SECOND = 60;
+	private static final int MAX_PHYSICS_STEPS_PER_FRAME = 5;
+	
+	private FixedStepClock physicsClock;
+	
+	/**
+	 * With a physics host (see RacerGame) the simulation runs on its own
+	 * thread and render() only draws; the car's transforms come across in a
+	 * lock-free snapshot after every tick. Without one render() runs the
+	 * ticks itself first, and draws from the same snapshot.
+	 */
+	private SimulationHost physicsHost;
+	private RenderSnapshot snapshot;
+	private int carSlot;
+	private int firstWheelSlot;
+	//CPU time spent in ticks so far, only written by the simulation
+	private volatile long physicsWork;
+	private long lastPhysicsWork;
+	
+	/**
+	 * Solver iterations and substeps follow the load: phones drop quality to
+	 * hold the frame rate, desktops spend spare time on accuracy. Input
+	 * replays assume fixed iterations, so while input is being recorded the
+	 * level is pinned at the default one (see setRecordingInput()).
+	 */
+	private static final int TARGET_FRAMES_PER_SECOND = 60;
+	private PhysicsQuality physicsQuality;
+	
+	/**
+	 * Collisions of each physics step, handed out after the step. Damage,
+	 * scoring and crash sounds hook in with collisions.addListener(); with a
+	 * physics host they are called on the physics thread.
+	 */
+	private static final int COLLISION_CAPACITY = 128;
+	private CollisionEvents collisions;
+	private final Vector2 renderPosition = new Vector2();
+	
+	/**
+	 * Touch, key and tilt events are queued with their timestamps and handed
+	 * to the tick they happened in, so a quick tap isn't lost between frames.
+	 * Anything else that can drive the car (a replay, a computer driver) can
+	 * stand in through setInput().
+	 */
+	private static final int INPUT_QUEUE_CAPACITY = 64;
+	private PlayerInput playerInput;
+	private InputSource input;
+	private int tick;
+	
+	//while recording, every tick's input is logged so the race can be replayed later;
+	//off by default, recording holds the physics quality still
+	private InputRecorder inputRecorder;
+	private volatile boolean recordingInput;
+	
+	/**
+	 * Skid marks and tyre smoke from how hard each wheel slides, in a fixed
+	 * amount of memory: one mesh draw for the marks, and the smoke goes
+	 * through the sprite batch. Wheels start marking at SKID_SLIP meters per
+	 * second of sideways slide and are at full strength by FULL_SLIP.
+	 */
+	private static final int SKID_MARK_CAPACITY = 2048;
+	private static final int SMOKE_CAPACITY = 256;
+	private static final float SKID_SLIP = 1.5f;
+	private static final float FULL_SLIP = 6;
+	private SkidMarks skidMarks;
+	private TireSmoke tireSmoke;
+	
+	//recorded laps drawn see-through over the track, no physics involved
+	private static final int MAX_GHOSTS = 32;
+	private static final float GHOST_ALPHA = 0.4f;
+	private final GhostPlayer ghosts = new GhostPlayer(MAX_GHOSTS);
+	private Sprite ghostSprite;
+	private final Vector2 ghostPosition = new Vector2();
+	
+	/**
+	 * Switch on to collect frame/physics timings and draw them over the game.
+	 * Costs next to nothing while off.
+	 */
+	private static final boolean SHOW_TELEMETRY = false;
+	private TelemetryExporter telemetryExporter;
+	private BitmapFont telemetryFont;
+	
     // constructor to keep a reference to the main Game class
     public GameScreen(RacerGame RacerGame){
             this.game = RacerGame;
@@ -67,12 +199,33 @@ public class GameScreen implements Screen {
 		
 		//Box2d World init
 		world = new World(new Vector2(0.0f, 0.0f), true);	
+		//a tick may be split into substeps, the car's forces have to last all of them
+		world.setAutoClearForces(false);
+		collisions = new CollisionEvents(COLLISION_CAPACITY);
+		world.setContactListener(collisions);
+		physicsClock = new FixedStepClock(PHYSICS_STEPS_PER_SECOND, MAX_PHYSICS_STEPS_PER_FRAME);
+		int maxQuality = Gdx.app.getType() == ApplicationType.Desktop
+				? PhysicsQuality.LEVEL_COUNT - 1 : PhysicsQuality.DEFAULT_LEVEL;
+		physicsQuality = new PhysicsQuality(TARGET_FRAMES_PER_SECOND, 0, maxQuality, PhysicsQuality.DEFAULT_LEVEL);
+		physicsQuality.setPinned(recordingInput);
+		inputRecorder = new InputRecorder(PHYSICS_STEPS_PER_SECOND);
+		playerInput = new PlayerInput(INPUT_QUEUE_CAPACITY);
+		input = playerInput;
+		Gdx.input.setInputProcessor(playerInput);
+		
+		Telemetry.setEnabled(SHOW_TELEMETRY);
+		if (SHOW_TELEMETRY) {
+			telemetryExporter = new TelemetryExporter(null, 1);
+			telemetryFont = new BitmapFont();
+		}
 	    
 	    this.car = new Car(world, 1, 2,
 	    		new Vector2(10, 10), (float) Math.PI, 60, 15, 25, 100);
 		
 	    //create the camera	    
 	    camera = new CameraHelper(VIRTUAL_WIDTH, VIRTUAL_HEIGHT);
+	    if (Gdx.app.getType() != ApplicationType.Desktop)
+	    	camera.setRenderScale(MIN_RENDER_SCALE, MAX_RENDER_SCALE, TARGET_FRAMES_PER_SECOND);
 	    
 	    /**
 	     * Now that we have the height/width of the viewport,
@@ -84,95 +237,294 @@ public class GameScreen implements Screen {
 	    //create the sprite for the player car
 		playerTexture = ImageCache.getTexture("playerCar");
 		playerSprite = new Sprite(playerTexture);
+		ghostSprite = new Sprite(playerTexture);
+		ghostSprite.setColor(1, 1, 1, GHOST_ALPHA);
 		playerSprite.setPosition(PIXELS_PER_METER * car.body.getPosition().x - playerTexture.getRegionWidth() / 2,
 				PIXELS_PER_METER * car.body.getPosition().y - playerTexture.getRegionHeight() / 2 );
 	    
 		
 	    spriteBatch = new SpriteBatch();		
 										
-		debugRenderer = new Box2DDebugRenderer();
+		debugOverlay = new DebugOverlay();
 
 	    Vector2 center = new Vector2(worldWidth/2, worldHeight/2);
 	    
+	    //walls that line up get merged, and nearby ones share a static body
+	    TrackGeometryBuilder track = new TrackGeometryBuilder(TRACK_REGION_SIZE);
+	    
 	    //pen in the center
-	    BoxProp pen1 = new BoxProp(world, 1, 6, new Vector2 (center.x-3,center.y));
-	    BoxProp pen2 = new BoxProp(world, 1, 6, new Vector2 (center.x+3,center.y));
-	    BoxProp pen3 = new BoxProp(world, 5, 1, new Vector2 (center.x,center.y+2.5f));
+	    track.addBox(1, 6, center.x-3, center.y);
+	    track.addBox(1, 6, center.x+3, center.y);
+	    track.addBox(5, 1, center.x, center.y+2.5f);
 	    
 	    //outer walls
-		BoxProp wall1 = new BoxProp(world, worldWidth, 1, new Vector2 (worldWidth/2,0.5f)); //bottom
-	    BoxProp wall2 = new BoxProp(world, 1, worldHeight-2, new Vector2 (0.5f, worldHeight/2));//left
-	    BoxProp wall3 = new BoxProp(world,  worldWidth, 1, new Vector2 (worldWidth/2,worldHeight + 100));//top
-	    BoxProp wall4 = new BoxProp(world, 1, worldHeight-2, new Vector2 (worldWidth-0.5f, worldHeight/2));	  //right
+	    track.addBox(worldWidth, 1, worldWidth/2, 0.5f); //bottom
+	    track.addBox(1, worldHeight-2, 0.5f, worldHeight/2); //left
+	    track.addBox(worldWidth, 1, worldWidth/2, worldHeight + 100); //top
+	    track.addBox(1, worldHeight-2, worldWidth-0.5f, worldHeight/2); //right
+	    
+	    props.addAll(track.build(world));
+	    Gdx.app.log("Track", track.getReport());
+	    
+	    //the props never move, so their visuals go to the GPU once
+	    trackCache = new StaticTrackCache(props, ImageCache.getTexture("wall"), Color.GRAY, PIXELS_PER_METER);
+	    
+	    trackIndex = SpatialGrid.covering(-GRID_CELL_SIZE, -GRID_CELL_SIZE,
+	    		worldWidth + GRID_CELL_SIZE, worldHeight + GRID_CELL_SIZE, GRID_CELL_SIZE, props.size + 1);
+	    for (int i = 0; i < props.size; i++) {
+	    	BoxProp prop = props.get(i);
+	    	trackIndex.add(prop, prop.x - prop.width / 2, prop.y - prop.height / 2,
+	    			prop.x + prop.width / 2, prop.y + prop.height / 2);
+	    }
+	    float carRadius = car.getBoundingRadius();
+	    carHandle = trackIndex.add(car, car.body.getPosition().x - carRadius, car.body.getPosition().y - carRadius,
+	    		car.body.getPosition().x + carRadius, car.body.getPosition().y + carRadius);
+	    
+	    //the props are static, only the car and its wheels need copying out each tick
+	    snapshot = new RenderSnapshot(1 + car.wheels.size());
+	    carSlot = snapshot.add(car.body);
+	    firstWheelSlot = carSlot + 1;
+	    for (int i = 0; i < car.wheels.size(); i++)
+	    	snapshot.add(car.wheels.get(i).body);
+	    
+	    skidMarks = new SkidMarks(SKID_MARK_CAPACITY, car.wheels.size(), PIXELS_PER_METER);
+	    tireSmoke = new TireSmoke(SMOKE_CAPACITY, null, PIXELS_PER_METER);
+	    snapshot.publish(tick, TimeUtils.nanoTime());
+	    
+	    physicsHost = game.getPhysicsHost();
+	    if (physicsHost != null)
+	    	physicsHost.start(this, PHYSICS_STEPS_PER_SECOND);
 	
 	}
 
+	/**
+	 * With a physics host the recorder is written on the physics thread; its
+	 * methods are synchronized, so toBytes() is safe to call from here.
+	 */
+	public InputRecorder getInputRecorder() {
+		return inputRecorder;
+	}
+	
+	/**
+	 * Whether every tick's input goes into the InputRecorder. Recording pins
+	 * the physics quality at the default level, the iterations ReplayPlayer
+	 * steps with; without it the quality follows the load.
+	 */
+	public void setRecordingInput(boolean record) {
+		if (record)
+			physicsQuality.setLevel(PhysicsQuality.DEFAULT_LEVEL);
+		physicsQuality.setPinned(record);
+		recordingInput = record;
+	}
+	
+	public boolean isRecordingInput() {
+		return recordingInput;
+	}
+	
+	/**
+	 * Hands the car to another input source, or back to the player with null.
+	 */
+	public void setInput(InputSource input) {
+		this.input = input != null ? input : playerInput;
+	}
+	
+	public GhostPlayer getGhosts() {
+		return ghosts;
+	}
+
 	@Override
 	public void dispose() {
+		if (physicsHost != null)
+			physicsHost.stop();
 		spriteBatch.dispose();
+		trackCache.dispose();
+		debugOverlay.dispose();
+		camera.dispose();
+		skidMarks.dispose();
+		tireSmoke.dispose();
+		if (telemetryFont != null)
+			telemetryFont.dispose();
 	}
 
 	public void render(float delta) {	
+		long frameStart = TimeUtils.nanoTime();
+		camera.beginFrame();
 	    Gdx.gl.glClearColor(0, 0, 0.2f, 1);
 		Gdx.gl.glClear(GL10.GL_COLOR_BUFFER_BIT);
 
-	    // tell the camera to update its matrices.
-	    camera.update(car.body.getPosition().x * PIXELS_PER_METER, car.body.getPosition().y * PIXELS_PER_METER);
-	    
-		spriteBatch.setProjectionMatrix(camera.getCombined());
+		//tilt has no events of its own; this frame's ticks filter the reading
+		playerInput.sampleTilt();
 		
-		if (Gdx.input.isTouched()){
-			car.setAccelerate(Car.ACC_ACCELERATE);
-		}
-		else{
-			car.setAccelerate(Car.ACC_NONE);
+		float step = physicsClock.getStep();
+		long stepNanos = (long) (step * 1000000000L);
+		float alpha;
+		if (physicsHost == null) {
+			//each tick stands for a moment of wall clock time; the last one is
+			//alpha steps behind now and the rest are spaced a step apart before it
+			int steps = physicsClock.advance(delta);
+			long tickTime = TimeUtils.nanoTime() - (long) ((steps - 1 + physicsClock.getAlpha()) * stepNanos);
+			for (int i = 0; i < steps; i++) {
+				tick(tickTime);
+				tickTime += stepNanos;
+			}
+			snapshot.acquire();
+			alpha = physicsClock.getAlpha();
+		} else {
+			snapshot.acquire();
+			alpha = snapshot.getAlpha(TimeUtils.nanoTime(), stepNanos);
 		}
+		Telemetry.record(Telemetry.FRAME_TIME, (long) (delta * 1000000000L));
 		
-		if (Gdx.input.getAccelerometerY() < -2.5){
-			car.setSteer(Car.STEER_HARD_LEFT);
-		}
-		else if (Gdx.input.getAccelerometerY() < -1){
-			car.setSteer(Car.STEER_LEFT);
-		}
-		else if (Gdx.input.getAccelerometerY() > 2.5){
-			car.setSteer(Car.STEER_HARD_RIGHT);
-		}
-		else if (Gdx.input.getAccelerometerY() > 1){
-			car.setSteer(Car.STEER_RIGHT);
-		}
-		else {
-			car.setSteer(Car.STEER_NONE);
-		}
+		//draw the car between the last two physics states so motion stays smooth
+		renderPosition.set(snapshot.getX(carSlot, alpha), snapshot.getY(carSlot, alpha));
 		
-		car.update(Gdx.app.getGraphics().getDeltaTime());
+	    // tell the camera to update its matrices.
+	    camera.update(renderPosition.x * PIXELS_PER_METER, renderPosition.y * PIXELS_PER_METER);
+	    
+	    //sounds are heard from where the camera is
+	    SoundMixer.setListener(renderPosition.x, renderPosition.y);
+	    SoundMixer.update(delta);
+	    
+		spriteBatch.setProjectionMatrix(camera.getCombined());
 		
-		/**
-		 * Have box2d update the positions and velocities (and etc) of all
-		 * tracked objects. The second and third argument specify the number of
-		 * iterations of velocity and position tests to perform -- higher is
-		 * more accurate but is also slower.
-		 */
-		world.step(Gdx.app.getGraphics().getDeltaTime(), 3, 3);
+		//static track first, one call for the lot
+		trackCache.render(camera.getCombined());
 		
-		world.clearForces();
+		//tyre marks lie on the track, under the cars
+		for (int i = 0; i < car.wheels.size(); i++) {
+			int slot = firstWheelSlot + i;
+			float wheelX = snapshot.getX(slot, alpha), wheelY = snapshot.getY(slot, alpha);
+			float intensity = (snapshot.getValue(slot) - SKID_SLIP) / (FULL_SLIP - SKID_SLIP);
+			skidMarks.update(i, wheelX, wheelY, intensity);
+			tireSmoke.emit(wheelX, wheelY, intensity, delta);
+		}
+		skidMarks.render(camera.getCombined());
 		
 		//draw the sprites
 		spriteBatch.begin();
 		
-		playerSprite.setPosition(PIXELS_PER_METER * car.body.getPosition().x - playerTexture.getRegionWidth() / 2,
-				PIXELS_PER_METER * car.body.getPosition().y - playerTexture.getRegionHeight() / 2 );
-		playerSprite.setRotation((MathUtils.radiansToDegrees * car.body.getAngle()));
+		playerSprite.setPosition(PIXELS_PER_METER * renderPosition.x - playerTexture.getRegionWidth() / 2,
+				PIXELS_PER_METER * renderPosition.y - playerTexture.getRegionHeight() / 2 );
+		playerSprite.setRotation((MathUtils.radiansToDegrees * snapshot.getAngle(carSlot, alpha)));
 		
-		playerSprite.draw(spriteBatch);
+		//only cars the camera can see are drawn
+		trackIndex.moveTo(carHandle, renderPosition.x, renderPosition.y);
+		float viewWidth = (float) camera.getViewportWidth() / PIXELS_PER_METER;
+		float viewHeight = (float) camera.getViewportHeight() / PIXELS_PER_METER;
+		visibleItems.clear();
+		trackIndex.query(renderPosition.x - viewWidth / 2, renderPosition.y - viewHeight / 2,
+				renderPosition.x + viewWidth / 2, renderPosition.y + viewHeight / 2, visibleItems);
+		for (int i = 0; i < visibleItems.size; i++) {
+			if (trackIndex.get(visibleItems.get(i)) == car)
+				carBatcher.add(playerSprite);
+		}
+		carBatcher.draw(spriteBatch);
+		
+		//ghosts under the same culling, all sharing one sprite
+		ghosts.update(delta);
+		for (int i = 0; i < ghosts.size(); i++) {
+			if (!ghosts.isVisible(i))
+				continue;
+			ghosts.getPosition(i, ghostPosition);
+			if (Math.abs(ghostPosition.x - renderPosition.x) > viewWidth / 2 + car.getBoundingRadius()
+					|| Math.abs(ghostPosition.y - renderPosition.y) > viewHeight / 2 + car.getBoundingRadius())
+				continue;
+			ghostSprite.setPosition(PIXELS_PER_METER * ghostPosition.x - playerTexture.getRegionWidth() / 2,
+					PIXELS_PER_METER * ghostPosition.y - playerTexture.getRegionHeight() / 2);
+			ghostSprite.setRotation(MathUtils.radiansToDegrees * ghosts.getAngle(i));
+			ghostSprite.draw(spriteBatch);
+		}
+		
+		//smoke drifts over the cars
+		tireSmoke.update(delta);
+		tireSmoke.draw(spriteBatch);
 		
 		spriteBatch.end();
+		//renderCalls starts over at every begin(), so each batch is added in after its end()
+		int drawCalls = trackCache.getDrawCalls() + (skidMarks.size() > 0 ? 1 : 0) + spriteBatch.renderCalls;
+		Telemetry.gauge(Telemetry.BATCH_FLUSHES, carBatcher.getLastFlushes());
 		
 		
 		/**
 		 * Draw this last, so we can see the collision boundaries on top of the
 		 * sprites and map.
 		 */
-		debugRenderer.render(world, camera.getCombined().scale(PIXELS_PER_METER,PIXELS_PER_METER,PIXELS_PER_METER));
+		boolean debugKey = Gdx.input.isKeyPressed(Keys.F1) || Gdx.input.isKeyPressed(Keys.MENU);
+		if (debugKey && !debugKeyDown)
+			debugOverlay.toggle();
+		debugKeyDown = debugKey;
+		//the overlay reads the live world, which is off limits while it's stepping elsewhere
+		if (physicsHost == null && debugOverlay.enabled) {
+			debugOverlay.render(world, camera.getCombined(), PIXELS_PER_METER, renderPosition.x, renderPosition.y,
+					viewWidth, viewHeight);
+			drawCalls++;
+		}
+		
+		//scene done, stretch it to the screen if it was drawn scaled
+		drawCalls += camera.endFrame(spriteBatch);
+		
+		if (telemetryExporter != null) {
+			telemetryExporter.update(delta);
+			//overlay is drawn in screen pixels, not world space
+			spriteBatch.getProjectionMatrix().setToOrtho2D(0, 0, Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
+			spriteBatch.begin();
+			telemetryFont.drawMultiLine(spriteBatch, telemetryExporter.getReport(), 5, Gdx.graphics.getHeight() - 5);
+			spriteBatch.end();
+			drawCalls += spriteBatch.renderCalls;
+		}
+		Telemetry.gauge(Telemetry.DRAW_CALLS, drawCalls);
+		
+		//CPU time spent on this frame decides the physics quality of the next ones
+		long workNanos = TimeUtils.nanoTime() - frameStart;
+		if (physicsHost != null) {
+			//physics has a core of its own, the slower of the two sets the pace
+			long total = physicsWork;
+			workNanos = Math.max(workNanos, total - lastPhysicsWork);
+			lastPhysicsWork = total;
+		}
+		physicsQuality.recordFrame(workNanos);
+		Telemetry.gauge(Telemetry.PHYSICS_QUALITY, physicsQuality.getLevel());
+		//late frames with time to spare on the CPU lower the render scale
+		camera.recordFrame((long) (delta * 1000000000L), workNanos);
+		Telemetry.gauge(Telemetry.RENDER_SCALE, Math.round(camera.getRenderScale() * 100));
+	}
+
+	/**
+	 * Have box2d update the positions and velocities (and etc) of all
+	 * tracked objects. Runs at a fixed rate so the simulation doesn't depend
+	 * on the frame rate; the iteration counts specify the number of velocity
+	 * and position tests to perform -- higher is more accurate but is also
+	 * slower. Called from render() or from the physics host's thread.
+	 */
+	public void tick(long tickTime) {
+		long tickStart = TimeUtils.nanoTime();
+		float step = physicsClock.getStep();
+		input.advance(tick, tickTime);
+		car.setSteer(input.getSteer());
+		car.setAccelerate(input.getAccelerate());
+		if (recordingInput)
+			inputRecorder.record(car);
+		long carStart = Telemetry.start();
+		car.update(step);
+		Telemetry.stop(Telemetry.CAR_UPDATE_TIME, carStart);
+		long stepStart = Telemetry.start();
+		//the level can change on the render thread mid tick, so read it once
+		int level = physicsQuality.getLevel();
+		int substeps = PhysicsQuality.getSubsteps(level);
+		int velocityIterations = PhysicsQuality.getVelocityIterations(level);
+		int positionIterations = PhysicsQuality.getPositionIterations(level);
+		for (int s = 0; s < substeps; s++)
+			world.step(step / substeps, velocityIterations, positionIterations);
+		Telemetry.stop(Telemetry.WORLD_STEP_TIME, stepStart);
+		collisions.dispatch();
+		world.clearForces();
+		Telemetry.sample(world);
+		
+		for (int i = 0; i < car.wheels.size(); i++)
+			snapshot.setValue(firstWheelSlot + i, car.wheels.get(i).slip);
+		snapshot.publish(tick, tickTime);
+		tick++;
+		physicsWork += TimeUtils.nanoTime() - tickStart;
 	}
 
 	@Override
@@ -181,10 +533,14 @@ public class GameScreen implements Screen {
 
 	@Override
 	public void pause() {
+		if (physicsHost != null)
+			physicsHost.setPaused(true);
 	}
 
 	@Override
 	public void resume() {
+		if (physicsHost != null)
+			physicsHost.setPaused(false);
 	}
 
 	@Override
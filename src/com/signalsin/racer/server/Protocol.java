@@ -0,0 +1,38 @@
+package com.signalsin.racer.server;
+
+/**
+ * Datagram types and layouts shared by the server and its clients. All
+ * packets start with a one byte type.
+ *
+ * Client to server:
+ *   JOIN   roomId(int)
+ *   INPUT  steer(byte) accelerate(byte) ackTick(int)
+ *   LEAVE
+ * Server to client:
+ *   WELCOME roomId(int) carIndex(short)
+ *   FULL    roomId(int)
+ *   SNAPSHOT see SnapshotCodec
+ */
+public class Protocol {
+	
+	public static final byte JOIN = 1;
+	public static final byte INPUT = 2;
+	public static final byte LEAVE = 3;
+	
+	public static final byte WELCOME = 1;
+	public static final byte FULL = 2;
+	public static final byte SNAPSHOT = 3;
+	
+	/**
+	 * Largest datagram either side sends. A 128 car room in the worst case
+	 * (every field changed, full size varints) is well under this; real
+	 * snapshots are a small fraction of it.
+	 */
+	public static final int MAX_PACKET = 8192;
+	
+	/** Snapshots kept for delta baselines, about half a second at 60 ticks. */
+	public static final int HISTORY = 32;
+	
+	private Protocol() {
+	}
+}
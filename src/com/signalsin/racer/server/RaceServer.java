@@ -0,0 +1,280 @@
+package com.signalsin.racer.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IntMap;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.signalsin.racer.car.Car;
+import com.signalsin.racer.headless.RaceDescription;
+
+/**
+ * Authoritative multiplayer server. Runs the simulation of every room at a
+ * fixed tick rate on a single thread, takes inputs from clients over a
+ * non-blocking UDP channel and answers every tick with a quantized snapshot,
+ * delta encoded against the last snapshot each client acknowledged.
+ *
+ * Rooms are created when the first client asks to join them and dropped when
+ * the last one leaves. Every room is built from the same track description.
+ * UDP gives no notice when a client goes away, so a client that sends nothing
+ * for the client timeout is dropped as if it had left.
+ */
+public class RaceServer {
+	
+	private static class Client {
+		final SocketAddress address;
+		final ServerRoom room;
+		final int car;
+		int ackTick = SnapshotCodec.NO_BASELINE;
+		//server tick of the last packet from this client
+		long lastHeard;
+		
+		Client(SocketAddress address, ServerRoom room, int car, long lastHeard) {
+			this.address = address;
+			this.room = room;
+			this.car = car;
+			this.lastHeard = lastHeard;
+		}
+	}
+	
+	private final InetSocketAddress bindAddress;
+	private final RaceDescription track;
+	private final float step;
+	private final long stepNanos;
+	private final ServerMetrics metrics = new ServerMetrics();
+	private long ticks;
+	private long timeoutTicks;
+	
+	private final IntMap<ServerRoom> rooms = new IntMap<ServerRoom>();
+	private final ObjectMap<SocketAddress, Client> clients = new ObjectMap<SocketAddress, Client>();
+	private final Array<Client> clientList = new Array<Client>();
+	
+	private final ByteBuffer in = ByteBuffer.allocateDirect(Protocol.MAX_PACKET);
+	private final ByteBuffer out = ByteBuffer.allocateDirect(Protocol.MAX_PACKET);
+	
+	private DatagramChannel channel;
+	private Selector selector;
+	private volatile boolean running;
+	
+	public RaceServer(InetSocketAddress bindAddress, RaceDescription track) {
+		GdxNativesLoader.load();
+		this.bindAddress = bindAddress;
+		this.track = track;
+		this.step = 1f / track.stepsPerSecond;
+		this.stepNanos = (long) (1000000000L / track.stepsPerSecond);
+		setClientTimeout(5);
+	}
+	
+	/**
+	 * Seconds a client may stay silent before it is dropped.
+	 */
+	public void setClientTimeout(float seconds) {
+		timeoutTicks = Math.max(1, (long) (seconds * track.stepsPerSecond));
+	}
+	
+	public void open() throws IOException {
+		channel = DatagramChannel.open();
+		channel.configureBlocking(false);
+		channel.socket().bind(bindAddress);
+		selector = Selector.open();
+		channel.register(selector, SelectionKey.OP_READ);
+	}
+	
+	/**
+	 * Port actually bound, useful when opened on port 0.
+	 */
+	public int getPort() {
+		return channel.socket().getLocalPort();
+	}
+	
+	public ServerMetrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * Serves until stop() is called. Ticks that fall too far behind are
+	 * skipped rather than run back to back.
+	 */
+	public void run() throws IOException {
+		running = true;
+		long next = System.nanoTime();
+		while (running) {
+			receive();
+			long now = System.nanoTime();
+			if (now >= next) {
+				tick();
+				next += stepNanos;
+				if (now - next > stepNanos * 5)
+					next = now;
+			} else {
+				long waitMillis = Math.max(1, (next - now) / 1000000L);
+				selector.select(waitMillis);
+				selector.selectedKeys().clear();
+			}
+		}
+	}
+	
+	public void stop() {
+		running = false;
+		if (selector != null)
+			selector.wakeup();
+	}
+	
+	/**
+	 * Drains every datagram waiting on the channel.
+	 */
+	public void receive() throws IOException {
+		while (true) {
+			in.clear();
+			SocketAddress address = channel.receive(in);
+			if (address == null)
+				return;
+			in.flip();
+			metrics.packetsReceived++;
+			metrics.bytesReceived += in.remaining();
+			if (in.remaining() < 1)
+				continue;
+			handle(address, in);
+		}
+	}
+	
+	private void handle(SocketAddress address, ByteBuffer packet) throws IOException {
+		byte type = packet.get();
+		Client client = clients.get(address);
+		if (client != null)
+			client.lastHeard = ticks;
+		switch (type) {
+		case Protocol.JOIN:
+			if (client != null || packet.remaining() < 4)
+				return;
+			join(address, packet.getInt());
+			break;
+		case Protocol.INPUT:
+			if (client == null || packet.remaining() < 6)
+				return;
+			int steer = packet.get();
+			int accelerate = packet.get();
+			int ackTick = packet.getInt();
+			if (steer >= Car.STEER_NONE && steer <= Car.STEER_HARD_RIGHT
+					&& accelerate >= Car.ACC_NONE && accelerate <= Car.ACC_BRAKE)
+				client.room.setInput(client.car, steer, accelerate);
+			if (ackTick > client.ackTick && ackTick <= client.room.getTick())
+				client.ackTick = ackTick;
+			break;
+		case Protocol.LEAVE:
+			if (client != null)
+				leave(client);
+			break;
+		}
+	}
+	
+	private void join(SocketAddress address, int roomId) throws IOException {
+		ServerRoom room = rooms.get(roomId);
+		if (room == null) {
+			room = new ServerRoom(roomId, track);
+			rooms.put(roomId, room);
+			metrics.rooms = rooms.size;
+		}
+		
+		int car = room.join();
+		out.clear();
+		if (car < 0) {
+			out.put(Protocol.FULL).putInt(roomId);
+		} else {
+			Client client = new Client(address, room, car, ticks);
+			clients.put(address, client);
+			clientList.add(client);
+			metrics.clients = clientList.size;
+			out.put(Protocol.WELCOME).putInt(roomId).putShort((short) car);
+		}
+		out.flip();
+		send(address);
+		
+		if (room.getPlayerCount() == 0)
+			closeRoom(room);
+	}
+	
+	private void leave(Client client) {
+		clients.remove(client.address);
+		clientList.removeValue(client, true);
+		metrics.clients = clientList.size;
+		client.room.leave(client.car);
+		if (client.room.getPlayerCount() == 0)
+			closeRoom(client.room);
+	}
+	
+	private void closeRoom(ServerRoom room) {
+		rooms.remove(room.id);
+		room.dispose();
+		metrics.rooms = rooms.size;
+	}
+	
+	/**
+	 * Steps every room once and sends each client its snapshot.
+	 */
+	public void tick() throws IOException {
+		long start = System.nanoTime();
+		ticks++;
+		for (int i = clientList.size - 1; i >= 0; i--) {
+			Client client = clientList.get(i);
+			if (ticks - client.lastHeard > timeoutTicks) {
+				leave(client);
+				metrics.timeouts++;
+			}
+		}
+		
+		for (ServerRoom room : rooms.values())
+			room.step(step);
+		
+		for (int i = 0; i < clientList.size; i++) {
+			Client client = clientList.get(i);
+			Snapshot latest = client.room.getLatest();
+			Snapshot baseline = client.room.getBaseline(client.ackTick);
+			if (baseline == null)
+				metrics.fullSnapshots++;
+			else
+				metrics.deltaSnapshots++;
+			
+			out.clear();
+			out.put(Protocol.SNAPSHOT);
+			SnapshotCodec.write(out, latest, baseline);
+			out.flip();
+			send(client.address);
+		}
+		metrics.recordTick(System.nanoTime() - start);
+	}
+	
+	private void send(SocketAddress address) throws IOException {
+		int bytes = out.remaining();
+		//a full send buffer drops the packet, same as the network would
+		if (channel.send(out, address) > 0) {
+			metrics.packetsSent++;
+			metrics.bytesSent += bytes;
+		}
+	}
+	
+	public void close() {
+		stop();
+		for (ServerRoom room : rooms.values())
+			room.dispose();
+		rooms.clear();
+		clients.clear();
+		clientList.clear();
+		try {
+			if (selector != null)
+				selector.close();
+			if (channel != null)
+				channel.close();
+		} catch (IOException e) {
+			throw new GdxRuntimeException("Couldn't close server channel", e);
+		}
+	}
+}
@@ -0,0 +1,60 @@
+package com.signalsin.racer.server;
+
+/**
+ * Counters the server updates as it runs. Written by the server thread only;
+ * other threads may read them for reporting, values can be a tick stale.
+ */
+public class ServerMetrics {
+	
+	public volatile long ticks;
+	public volatile long bytesSent;
+	public volatile long packetsSent;
+	public volatile long bytesReceived;
+	public volatile long packetsReceived;
+	public volatile long fullSnapshots;
+	public volatile long deltaSnapshots;
+	public volatile int clients;
+	/** Clients dropped for going silent. */
+	public volatile long timeouts;
+	public volatile int rooms;
+	
+	/** Time spent simulating and sending during the last tick. */
+	public volatile long lastTickNanos;
+	public volatile long maxTickNanos;
+	public volatile long totalTickNanos;
+	
+	void recordTick(long nanos) {
+		ticks++;
+		lastTickNanos = nanos;
+		totalTickNanos += nanos;
+		if (nanos > maxTickNanos)
+			maxTickNanos = nanos;
+	}
+	
+	public double getAverageTickNanos() {
+		return ticks == 0 ? 0 : (double) totalTickNanos / ticks;
+	}
+	
+	/**
+	 * Average bytes sent to each client per second of simulated time.
+	 */
+	public double getBytesPerClientPerSecond(float stepsPerSecond) {
+		if (ticks == 0 || clients == 0)
+			return 0;
+		return bytesSent / (ticks / stepsPerSecond) / clients;
+	}
+	
+	public void reset() {
+		ticks = 0;
+		bytesSent = 0;
+		packetsSent = 0;
+		bytesReceived = 0;
+		packetsReceived = 0;
+		fullSnapshots = 0;
+		deltaSnapshots = 0;
+		timeouts = 0;
+		lastTickNanos = 0;
+		maxTickNanos = 0;
+		totalTickNanos = 0;
+	}
+}
@@ -0,0 +1,118 @@
+package com.signalsin.racer.server;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.physics.box2d.World;
+import com.signalsin.racer.car.Car;
+import com.signalsin.racer.car.CarFleet;
+import com.signalsin.racer.headless.RaceDescription;
+import com.signalsin.racer.track.TrackGeometryBuilder;
+
+/**
+ * One race hosted by the server: its own World, a CarFleet with a car for
+ * every grid slot of the track, and the history of snapshots sent from it.
+ * Cars of players that haven't joined (or have left) just sit on the grid.
+ */
+public class ServerRoom {
+	
+	public final int id;
+	private final RaceDescription track;
+	private final World world;
+	private final CarFleet fleet;
+	private final Body[] bodies;
+	private final boolean[] taken;
+	private final SnapshotHistory history;
+	private int players;
+	private int tick;
+	
+	public ServerRoom(int id, RaceDescription track) {
+		this.id = id;
+		this.track = track;
+		this.world = new World(new Vector2(0.0f, 0.0f), true);
+		TrackGeometryBuilder geometry = new TrackGeometryBuilder(32);
+		for (RaceDescription.Prop prop : track.props)
+			geometry.addBox(prop.width, prop.height, prop.x, prop.y);
+		if (track.track != null)
+			track.track.build(world, geometry);
+		else
+			geometry.build(world);
+		
+		int slots = track.entries.size();
+		this.fleet = new CarFleet(world, slots);
+		this.bodies = new Body[slots];
+		this.taken = new boolean[slots];
+		for (int i = 0; i < slots; i++) {
+			RaceDescription.Entry entry = track.entries.get(i);
+			fleet.add(entry.width, entry.length, new Vector2(entry.x, entry.y), entry.angle,
+					entry.power, entry.minSteerAngle, entry.maxSteerAngle, entry.maxSpeed);
+			bodies[i] = fleet.getCar(i).body;
+		}
+		this.history = new SnapshotHistory(Protocol.HISTORY, slots);
+		this.tick = 0;
+		history.slot(0).capture(0, bodies, slots);
+	}
+	
+	/**
+	 * Hands out a free car, or -1 if the room is full.
+	 */
+	public int join() {
+		for (int i = 0; i < taken.length; i++) {
+			if (!taken[i]) {
+				taken[i] = true;
+				players++;
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	public void leave(int car) {
+		if (!taken[car])
+			return;
+		taken[car] = false;
+		players--;
+		fleet.setSteer(car, Car.STEER_NONE);
+		fleet.setAccelerate(car, Car.ACC_NONE);
+	}
+	
+	public void setInput(int car, int steer, int accelerate) {
+		if (!taken[car])
+			return;
+		fleet.setSteer(car, steer);
+		fleet.setAccelerate(car, accelerate);
+	}
+	
+	public void step(float step) {
+		fleet.update(step);
+		world.step(step, track.velocityIterations, track.positionIterations);
+		tick++;
+		history.slot(tick).capture(tick, bodies, bodies.length);
+	}
+	
+	public int getTick() {
+		return tick;
+	}
+	
+	public int getPlayerCount() {
+		return players;
+	}
+	
+	public int getBodyCount() {
+		return world.getBodyCount();
+	}
+	
+	public Snapshot getLatest() {
+		return history.get(tick);
+	}
+	
+	/**
+	 * The snapshot a client acknowledged, or null if it's too old to delta against.
+	 */
+	public Snapshot getBaseline(int ackTick) {
+		return history.get(ackTick);
+	}
+	
+	public void dispose() {
+		world.dispose();
+	}
+}
@@ -0,0 +1,91 @@
+package com.signalsin.racer.server;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.physics.box2d.Body;
+
+/**
+ * Quantized state of the dynamic bodies in a room at one tick. Values are
+ * kept as ints so snapshots can be compared and delta encoded exactly; the
+ * scale of every field is picked to be finer than anything visible on screen.
+ */
+public class Snapshot {
+	
+	public static final int FIELD_X = 0;
+	public static final int FIELD_Y = 1;
+	public static final int FIELD_ANGLE = 2;
+	public static final int FIELD_VELOCITY_X = 3;
+	public static final int FIELD_VELOCITY_Y = 4;
+	public static final int FIELD_ANGULAR_VELOCITY = 5;
+	public static final int FIELDS = 6;
+	
+	/** 1/256 of a meter. */
+	public static final float POSITION_SCALE = 256;
+	/** A full turn maps onto 16 bits. */
+	public static final float ANGLE_SCALE = 65536 / (MathUtils.PI * 2);
+	/** 1/64 of a meter (or radian) per second. */
+	public static final float VELOCITY_SCALE = 64;
+	
+	public int tick = -1;
+	public int entityCount;
+	public int[] values;
+	
+	public Snapshot(int capacity) {
+		values = new int[capacity * FIELDS];
+	}
+	
+	public void capture(int tick, Body[] bodies, int count) {
+		ensureCapacity(count);
+		this.tick = tick;
+		this.entityCount = count;
+		for (int i = 0; i < count; i++) {
+			Body body = bodies[i];
+			int v = i * FIELDS;
+			values[v + FIELD_X] = Math.round(body.getPosition().x * POSITION_SCALE);
+			values[v + FIELD_Y] = Math.round(body.getPosition().y * POSITION_SCALE);
+			values[v + FIELD_ANGLE] = Math.round(body.getAngle() * ANGLE_SCALE) & 0xffff;
+			values[v + FIELD_VELOCITY_X] = Math.round(body.getLinearVelocity().x * VELOCITY_SCALE);
+			values[v + FIELD_VELOCITY_Y] = Math.round(body.getLinearVelocity().y * VELOCITY_SCALE);
+			values[v + FIELD_ANGULAR_VELOCITY] = Math.round(body.getAngularVelocity() * VELOCITY_SCALE);
+		}
+	}
+	
+	public void set(Snapshot other) {
+		ensureCapacity(other.entityCount);
+		tick = other.tick;
+		entityCount = other.entityCount;
+		System.arraycopy(other.values, 0, values, 0, entityCount * FIELDS);
+	}
+	
+	public void ensureCapacity(int count) {
+		if (values.length >= count * FIELDS)
+			return;
+		int[] bigger = new int[count * FIELDS];
+		System.arraycopy(values, 0, bigger, 0, entityCount * FIELDS);
+		values = bigger;
+	}
+	
+	public float getX(int entity) {
+		return values[entity * FIELDS + FIELD_X] / POSITION_SCALE;
+	}
+	
+	public float getY(int entity) {
+		return values[entity * FIELDS + FIELD_Y] / POSITION_SCALE;
+	}
+	
+	/** Angle in radians, wrapped to 0..2pi. */
+	public float getAngle(int entity) {
+		return values[entity * FIELDS + FIELD_ANGLE] / ANGLE_SCALE;
+	}
+	
+	public float getVelocityX(int entity) {
+		return values[entity * FIELDS + FIELD_VELOCITY_X] / VELOCITY_SCALE;
+	}
+	
+	public float getVelocityY(int entity) {
+		return values[entity * FIELDS + FIELD_VELOCITY_Y] / VELOCITY_SCALE;
+	}
+	
+	public float getAngularVelocity(int entity) {
+		return values[entity * FIELDS + FIELD_ANGULAR_VELOCITY] / VELOCITY_SCALE;
+	}
+}
@@ -0,0 +1,108 @@
+package com.signalsin.racer.server;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Delta encodes snapshots. Every entity gets one byte saying which fields
+ * changed since the baseline, followed by the zigzag varint difference of each
+ * changed field. A car sitting still costs one byte, a car cruising in a
+ * straight line usually two or three fields of one or two bytes each.
+ *
+ * Layout: tick(int) baselineTick(int, -1 for none) entityCount(varint) entities...
+ */
+public class SnapshotCodec {
+	
+	public static final int NO_BASELINE = -1;
+	
+	/**
+	 * Writes current as a delta against baseline, or against all zeroes if
+	 * baseline is null. Entities the baseline doesn't have are also encoded
+	 * against zero.
+	 */
+	public static void write(ByteBuffer out, Snapshot current, Snapshot baseline) {
+		out.putInt(current.tick);
+		out.putInt(baseline == null ? NO_BASELINE : baseline.tick);
+		writeVarint(out, current.entityCount);
+		
+		int baselineCount = baseline == null ? 0 : baseline.entityCount;
+		for (int e = 0; e < current.entityCount; e++) {
+			int offset = e * Snapshot.FIELDS;
+			int mask = 0;
+			for (int f = 0; f < Snapshot.FIELDS; f++) {
+				if (current.values[offset + f] != base(baseline, baselineCount, e, offset + f))
+					mask |= 1 << f;
+			}
+			out.put((byte) mask);
+			for (int f = 0; f < Snapshot.FIELDS; f++) {
+				if ((mask & (1 << f)) != 0)
+					writeVarint(out, zigzag(current.values[offset + f] - base(baseline, baselineCount, e, offset + f)));
+			}
+		}
+	}
+	
+	/**
+	 * Reads the baseline tick a packet was encoded against, without consuming it.
+	 */
+	public static int peekBaselineTick(ByteBuffer in) {
+		return in.getInt(in.position() + 4);
+	}
+	
+	/**
+	 * Decodes a snapshot into out. baseline must be the snapshot of the tick
+	 * given by peekBaselineTick(), or null if that is NO_BASELINE.
+	 */
+	public static void read(ByteBuffer in, Snapshot baseline, Snapshot out) {
+		int tick = in.getInt();
+		int baselineTick = in.getInt();
+		if (baselineTick != NO_BASELINE && (baseline == null || baseline.tick != baselineTick))
+			throw new IllegalArgumentException("Snapshot " + tick + " needs baseline " + baselineTick);
+		int count = readVarint(in);
+		
+		out.ensureCapacity(count);
+		int baselineCount = baseline == null ? 0 : baseline.entityCount;
+		for (int e = 0; e < count; e++) {
+			int offset = e * Snapshot.FIELDS;
+			int mask = in.get() & 0xff;
+			for (int f = 0; f < Snapshot.FIELDS; f++) {
+				int value = base(baseline, baselineCount, e, offset + f);
+				if ((mask & (1 << f)) != 0)
+					value += unzigzag(readVarint(in));
+				out.values[offset + f] = value;
+			}
+		}
+		out.tick = tick;
+		out.entityCount = count;
+	}
+	
+	private static int base(Snapshot baseline, int baselineCount, int entity, int index) {
+		return entity < baselineCount ? baseline.values[index] : 0;
+	}
+	
+	private static int zigzag(int value) {
+		return (value << 1) ^ (value >> 31);
+	}
+	
+	private static int unzigzag(int value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+	
+	static void writeVarint(ByteBuffer out, int value) {
+		while ((value & ~0x7f) != 0) {
+			out.put((byte) ((value & 0x7f) | 0x80));
+			value >>>= 7;
+		}
+		out.put((byte) value);
+	}
+	
+	static int readVarint(ByteBuffer in) {
+		int value = 0;
+		int shift = 0;
+		while (true) {
+			int b = in.get() & 0xff;
+			value |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+			shift += 7;
+		}
+	}
+}
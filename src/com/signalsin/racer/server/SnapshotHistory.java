@@ -0,0 +1,40 @@
+package com.signalsin.racer.server;
+
+/**
+ * The last few snapshots, kept so a delta can be encoded against (or decoded
+ * from) whatever tick the other side last saw. All snapshots are allocated up
+ * front and reused.
+ */
+public class SnapshotHistory {
+	
+	private final Snapshot[] ring;
+	
+	public SnapshotHistory(int length, int entityCapacity) {
+		ring = new Snapshot[length];
+		for (int i = 0; i < length; i++)
+			ring[i] = new Snapshot(entityCapacity);
+	}
+	
+	/**
+	 * The slot for the given tick, to be filled in by the caller. Overwrites
+	 * whatever was stored history-length ticks ago.
+	 */
+	public Snapshot slot(int tick) {
+		return ring[index(tick)];
+	}
+	
+	/**
+	 * The snapshot for the given tick, or null if it has already been
+	 * overwritten (or never existed).
+	 */
+	public Snapshot get(int tick) {
+		if (tick < 0)
+			return null;
+		Snapshot snapshot = ring[index(tick)];
+		return snapshot.tick == tick ? snapshot : null;
+	}
+	
+	private int index(int tick) {
+		return tick % ring.length;
+	}
+}
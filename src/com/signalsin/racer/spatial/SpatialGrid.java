@@ -0,0 +1,274 @@
+package com.signalsin.racer.spatial;
+
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * Uniform grid over the track for "what is near here" questions: what to
+ * draw, which cars can hear a sound, what an AI driver should look out for.
+ * Items are axis aligned boxes in world meters, identified by the int handle
+ * add() returns. Moving an item only touches the grid when it crosses into
+ * different cells, and queries write handles into a caller supplied IntArray,
+ * so steady state use doesn't allocate.
+ *
+ * Anything outside the grid bounds is clamped into the border cells, so it
+ * still works, just less efficiently.
+ */
+public class SpatialGrid {
+	
+	private final float originX, originY;
+	private final float cellSize;
+	private final int columns, rows;
+	
+	//first node of each cell's list, -1 for empty
+	private final int[] cellHead;
+	
+	//nodes link an item into one cell
+	private int[] nodeItem;
+	private int[] nodeNext;
+	private int freeNode = -1;
+	private int nodeCount;
+	
+	//items
+	private Object[] items;
+	private float[] bounds; //minX, minY, maxX, maxY per item
+	private int[] cells; //column0, row0, column1, row1 per item
+	private int[] queryMark;
+	private boolean[] used;
+	private int itemCount;
+	private int freeItem = -1;
+	private int queryStamp;
+	
+	public SpatialGrid(float originX, float originY, float cellSize, int columns, int rows, int capacity) {
+		this.originX = originX;
+		this.originY = originY;
+		this.cellSize = cellSize;
+		this.columns = columns;
+		this.rows = rows;
+		this.cellHead = new int[columns * rows];
+		for (int i = 0; i < cellHead.length; i++)
+			cellHead[i] = -1;
+		
+		capacity = Math.max(1, capacity);
+		items = new Object[capacity];
+		bounds = new float[capacity * 4];
+		cells = new int[capacity * 4];
+		queryMark = new int[capacity];
+		used = new boolean[capacity];
+		nodeItem = new int[capacity * 2];
+		nodeNext = new int[capacity * 2];
+	}
+	
+	/**
+	 * Grid covering the given rectangle with cells of the given size.
+	 */
+	public static SpatialGrid covering(float minX, float minY, float maxX, float maxY, float cellSize, int capacity) {
+		int columns = Math.max(1, (int) Math.ceil((maxX - minX) / cellSize));
+		int rows = Math.max(1, (int) Math.ceil((maxY - minY) / cellSize));
+		return new SpatialGrid(minX, minY, cellSize, columns, rows, capacity);
+	}
+	
+	public int add(Object item, float minX, float minY, float maxX, float maxY) {
+		int handle;
+		if (freeItem >= 0) {
+			handle = freeItem;
+			freeItem = cells[handle * 4]; //free list is threaded through the cells array
+		} else {
+			if (itemCount == items.length)
+				growItems();
+			handle = itemCount++;
+		}
+		items[handle] = item;
+		used[handle] = true;
+		queryMark[handle] = 0;
+		setBounds(handle, minX, minY, maxX, maxY);
+		link(handle, column(minX), row(minY), column(maxX), row(maxY));
+		return handle;
+	}
+	
+	/**
+	 * Moves an item. Cheap when it stays within the same cells.
+	 */
+	public void update(int handle, float minX, float minY, float maxX, float maxY) {
+		setBounds(handle, minX, minY, maxX, maxY);
+		int c0 = column(minX), r0 = row(minY), c1 = column(maxX), r1 = row(maxY);
+		int c = handle * 4;
+		if (cells[c] == c0 && cells[c + 1] == r0 && cells[c + 2] == c1 && cells[c + 3] == r1)
+			return;
+		unlink(handle);
+		link(handle, c0, r0, c1, r1);
+	}
+	
+	/**
+	 * Moves an item to be centred on the given point, keeping its size.
+	 */
+	public void moveTo(int handle, float x, float y) {
+		int b = handle * 4;
+		float halfWidth = (bounds[b + 2] - bounds[b]) / 2;
+		float halfHeight = (bounds[b + 3] - bounds[b + 1]) / 2;
+		update(handle, x - halfWidth, y - halfHeight, x + halfWidth, y + halfHeight);
+	}
+	
+	public void remove(int handle) {
+		if (!used[handle])
+			return;
+		unlink(handle);
+		used[handle] = false;
+		items[handle] = null;
+		cells[handle * 4] = freeItem;
+		freeItem = handle;
+	}
+	
+	public Object get(int handle) {
+		return items[handle];
+	}
+	
+	/**
+	 * Handles of all items overlapping the rectangle are added to out.
+	 * Returns how many were added.
+	 */
+	public int query(float minX, float minY, float maxX, float maxY, IntArray out) {
+		int stamp = nextStamp();
+		int found = 0;
+		int c0 = column(minX), r0 = row(minY), c1 = column(maxX), r1 = row(maxY);
+		for (int r = r0; r <= r1; r++) {
+			for (int c = c0; c <= c1; c++) {
+				for (int node = cellHead[r * columns + c]; node >= 0; node = nodeNext[node]) {
+					int item = nodeItem[node];
+					if (queryMark[item] == stamp)
+						continue;
+					queryMark[item] = stamp;
+					int b = item * 4;
+					if (bounds[b] <= maxX && bounds[b + 2] >= minX && bounds[b + 1] <= maxY && bounds[b + 3] >= minY) {
+						out.add(item);
+						found++;
+					}
+				}
+			}
+		}
+		return found;
+	}
+	
+	/**
+	 * Handles of all items whose box comes within radius of the point are
+	 * added to out. Returns how many were added.
+	 */
+	public int queryRadius(float x, float y, float radius, IntArray out) {
+		int start = out.size;
+		query(x - radius, y - radius, x + radius, y + radius, out);
+		float radius2 = radius * radius;
+		int kept = start;
+		for (int i = start; i < out.size; i++) {
+			int item = out.get(i);
+			int b = item * 4;
+			//distance from the point to the nearest point of the box
+			float dx = Math.max(Math.max(bounds[b] - x, 0), x - bounds[b + 2]);
+			float dy = Math.max(Math.max(bounds[b + 1] - y, 0), y - bounds[b + 3]);
+			if (dx * dx + dy * dy <= radius2)
+				out.set(kept++, item);
+		}
+		out.size = kept;
+		return kept - start;
+	}
+	
+	private void setBounds(int handle, float minX, float minY, float maxX, float maxY) {
+		int b = handle * 4;
+		bounds[b] = minX;
+		bounds[b + 1] = minY;
+		bounds[b + 2] = maxX;
+		bounds[b + 3] = maxY;
+	}
+	
+	private void link(int handle, int c0, int r0, int c1, int r1) {
+		int c = handle * 4;
+		cells[c] = c0;
+		cells[c + 1] = r0;
+		cells[c + 2] = c1;
+		cells[c + 3] = r1;
+		for (int r = r0; r <= r1; r++) {
+			for (int col = c0; col <= c1; col++) {
+				int node = allocateNode();
+				int cell = r * columns + col;
+				nodeItem[node] = handle;
+				nodeNext[node] = cellHead[cell];
+				cellHead[cell] = node;
+			}
+		}
+	}
+	
+	private void unlink(int handle) {
+		int c = handle * 4;
+		for (int r = cells[c + 1]; r <= cells[c + 3]; r++) {
+			for (int col = cells[c]; col <= cells[c + 2]; col++) {
+				int cell = r * columns + col;
+				int previous = -1;
+				for (int node = cellHead[cell]; node >= 0; previous = node, node = nodeNext[node]) {
+					if (nodeItem[node] != handle)
+						continue;
+					if (previous < 0)
+						cellHead[cell] = nodeNext[node];
+					else
+						nodeNext[previous] = nodeNext[node];
+					nodeNext[node] = freeNode;
+					freeNode = node;
+					break;
+				}
+			}
+		}
+	}
+	
+	private int allocateNode() {
+		if (freeNode >= 0) {
+			int node = freeNode;
+			freeNode = nodeNext[node];
+			return node;
+		}
+		if (nodeCount == nodeItem.length) {
+			int[] biggerItems = new int[nodeItem.length * 2];
+			int[] biggerNext = new int[nodeNext.length * 2];
+			System.arraycopy(nodeItem, 0, biggerItems, 0, nodeCount);
+			System.arraycopy(nodeNext, 0, biggerNext, 0, nodeCount);
+			nodeItem = biggerItems;
+			nodeNext = biggerNext;
+		}
+		return nodeCount++;
+	}
+	
+	private void growItems() {
+		int capacity = items.length * 2;
+		Object[] biggerItems = new Object[capacity];
+		System.arraycopy(items, 0, biggerItems, 0, itemCount);
+		items = biggerItems;
+		float[] biggerBounds = new float[capacity * 4];
+		System.arraycopy(bounds, 0, biggerBounds, 0, itemCount * 4);
+		bounds = biggerBounds;
+		int[] biggerCells = new int[capacity * 4];
+		System.arraycopy(cells, 0, biggerCells, 0, itemCount * 4);
+		cells = biggerCells;
+		int[] biggerMarks = new int[capacity];
+		System.arraycopy(queryMark, 0, biggerMarks, 0, itemCount);
+		queryMark = biggerMarks;
+		boolean[] biggerUsed = new boolean[capacity];
+		System.arraycopy(used, 0, biggerUsed, 0, itemCount);
+		used = biggerUsed;
+	}
+	
+	private int nextStamp() {
+		if (++queryStamp == 0) {
+			//wrapped around, clear the marks so old ones can't collide
+			for (int i = 0; i < queryMark.length; i++)
+				queryMark[i] = 0;
+			queryStamp = 1;
+		}
+		return queryStamp;
+	}
+	
+	private int column(float x) {
+		int column = (int) Math.floor((x - originX) / cellSize);
+		return Math.max(0, Math.min(columns - 1, column));
+	}
+	
+	private int row(float y) {
+		int row = (int) Math.floor((y - originY) / cellSize);
+		return Math.max(0, Math.min(rows - 1, row));
+	}
+}
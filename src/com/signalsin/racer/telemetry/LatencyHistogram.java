@@ -0,0 +1,94 @@
+package com.signalsin.racer.telemetry;
+
+/**
+ * Fixed size log-linear histogram for durations in nanoseconds, in the spirit
+ * of HdrHistogram: every power of two is split into 32 linear sub-buckets, so
+ * any recorded value is off by at most ~3%. Covers 1ns up to ~18 minutes in
+ * about a thousand counters, and recording never allocates.
+ */
+public class LatencyHistogram {
+	
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int MAX_EXPONENT = 40;
+	private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+	
+	private final int[] counts = new int[BUCKETS];
+	private long total;
+	private long sum;
+	private long min = Long.MAX_VALUE;
+	private long max;
+	
+	public void record(long value) {
+		if (value < 0)
+			value = 0;
+		counts[index(value)]++;
+		total++;
+		sum += value;
+		if (value < min)
+			min = value;
+		if (value > max)
+			max = value;
+	}
+	
+	public long getCount() {
+		return total;
+	}
+	
+	public long getMin() {
+		return total == 0 ? 0 : min;
+	}
+	
+	public long getMax() {
+		return max;
+	}
+	
+	public double getMean() {
+		return total == 0 ? 0 : (double) sum / total;
+	}
+	
+	/**
+	 * @param percentile 0..100
+	 * @return the upper bound of the bucket holding that percentile
+	 */
+	public long getPercentile(float percentile) {
+		if (total == 0)
+			return 0;
+		long wanted = Math.max(1, (long) Math.ceil(total * (percentile / 100.0)));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= wanted)
+				return Math.min(upperBound(i), max);
+		}
+		return max;
+	}
+	
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++)
+			counts[i] = 0;
+		total = 0;
+		sum = 0;
+		min = Long.MAX_VALUE;
+		max = 0;
+	}
+	
+	static int index(long value) {
+		if (value < SUB_BUCKETS)
+			return (int) value;
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		if (exponent > MAX_EXPONENT)
+			return BUCKETS - 1;
+		int shift = exponent - SUB_BUCKET_BITS;
+		int sub = (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+		return (shift + 1) * SUB_BUCKETS + sub;
+	}
+	
+	static long upperBound(int index) {
+		if (index < SUB_BUCKETS)
+			return index;
+		int shift = index / SUB_BUCKETS - 1;
+		long sub = index % SUB_BUCKETS;
+		return ((SUB_BUCKETS + sub + 1) << shift) - 1;
+	}
+}
@@ -0,0 +1,79 @@
+package com.signalsin.racer.telemetry;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Multi producer, single consumer ring of (metric, value) samples. The render
+ * and physics threads write, the exporter drains; neither side ever blocks or
+ * allocates. Producers claim a slot by moving head on with a compare and set,
+ * and mark it written through the slot's sequence number, so the consumer
+ * never reads a half written sample. When the ring is full new samples are
+ * dropped and counted rather than stalling the producer.
+ */
+class SampleRing {
+	
+	private final int mask;
+	private final int[] metrics;
+	private final long[] values;
+	//per slot: equal to the position when free to write, position + 1 once written
+	private final AtomicLong head = new AtomicLong();
+	//AtomicLong per slot rather than AtomicLongArray, which GWT doesn't emulate
+	private final AtomicLong[] sequence;
+	
+	//only the consumer writes tail
+	private long tail;
+	private final AtomicLong dropped = new AtomicLong();
+	
+	SampleRing(int capacityPowerOfTwo) {
+		if (Integer.bitCount(capacityPowerOfTwo) != 1)
+			throw new IllegalArgumentException("Capacity must be a power of two: " + capacityPowerOfTwo);
+		this.mask = capacityPowerOfTwo - 1;
+		this.metrics = new int[capacityPowerOfTwo];
+		this.values = new long[capacityPowerOfTwo];
+		this.sequence = new AtomicLong[capacityPowerOfTwo];
+		for (int i = 0; i < capacityPowerOfTwo; i++)
+			sequence[i] = new AtomicLong(i);
+	}
+	
+	boolean offer(int metric, long value) {
+		while (true) {
+			long h = head.get();
+			int slot = (int) (h & mask);
+			long s = sequence[slot].get();
+			if (s == h) {
+				if (head.compareAndSet(h, h + 1)) {
+					metrics[slot] = metric;
+					values[slot] = value;
+					sequence[slot].set(h + 1);
+					return true;
+				}
+			} else if (s < h) {
+				//the consumer hasn't freed this slot yet
+				dropped.incrementAndGet();
+				return false;
+			}
+			//another producer got here first, try the next slot
+		}
+	}
+	
+	/**
+	 * Moves everything written so far into the given histograms.
+	 */
+	void drainTo(LatencyHistogram[] histograms) {
+		long t = tail;
+		while (true) {
+			int slot = (int) (t & mask);
+			//claimed but not written yet stops the drain, it's picked up next time
+			if (sequence[slot].get() != t + 1)
+				break;
+			histograms[metrics[slot]].record(values[slot]);
+			sequence[slot].set(t + mask + 1);
+			t++;
+		}
+		tail = t;
+	}
+	
+	long getDropped() {
+		return dropped.get();
+	}
+}
@@ -0,0 +1,186 @@
+package com.signalsin.racer.telemetry;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.physics.box2d.World;
+import com.badlogic.gdx.utils.TimeUtils;
+
+/**
+ * Game wide counters, gauges and latency histograms. Everything is allocated
+ * up front and indexed by the constants below, so recording is an array write
+ * and costs a single boolean check while telemetry is switched off.
+ *
+ * Timings go through a lock-free ring and are folded into the histograms when
+ * drain() is called, normally by a TelemetryExporter. Recording is safe from
+ * any thread, so the render and physics threads can both report.
+ */
+public class Telemetry {
+	
+	//histograms, in nanoseconds
+	public static final int FRAME_TIME = 0;
+	public static final int WORLD_STEP_TIME = 1;
+	public static final int CAR_UPDATE_TIME = 2;
+	public static final int HISTOGRAM_COUNT = 3;
+	private static final String[] HISTOGRAM_NAMES = {"frame", "world.step", "car.update"};
+	
+	//gauges
+	public static final int BODY_COUNT = 0;
+	public static final int CONTACT_COUNT = 1;
+	public static final int HEAP_USED = 2;
+	public static final int DRAW_CALLS = 3;
+	public static final int BATCH_FLUSHES = 4;
+	public static final int PHYSICS_QUALITY = 5;
+	public static final int RENDER_SCALE = 6;
+	public static final int GAUGE_COUNT = 7;
+	private static final String[] GAUGE_NAMES = {"bodies", "contacts", "heap", "drawCalls", "batchFlushes", "physicsQuality", "renderScale"};
+	
+	//counters
+	public static final int GC_EVENTS = 0;
+	public static final int STEER_LEFT = 1;
+	public static final int STEER_RIGHT = 2;
+	public static final int STEER_HARD_LEFT = 3;
+	public static final int STEER_HARD_RIGHT = 4;
+	public static final int COLLISIONS = 5;
+	public static final int COLLISIONS_DROPPED = 6;
+	public static final int COUNTER_COUNT = 7;
+	private static final String[] COUNTER_NAMES = {"gc", "steer.left", "steer.right", "steer.hardLeft", "steer.hardRight",
+			"collisions", "collisions.dropped"};
+	
+	private static boolean enabled;
+	private static final SampleRing samples = new SampleRing(4096);
+	private static final LatencyHistogram[] histograms = new LatencyHistogram[HISTOGRAM_COUNT];
+	//one AtomicLong each, GWT has no AtomicLongArray
+	private static final AtomicLong[] counters = atomics(COUNTER_COUNT);
+	private static final AtomicLong[] gauges = atomics(GAUGE_COUNT);
+	private static long lastHeap;
+	
+	static {
+		for (int i = 0; i < HISTOGRAM_COUNT; i++)
+			histograms[i] = new LatencyHistogram();
+	}
+	
+	public static void setEnabled(boolean value) {
+		enabled = value;
+	}
+	
+	public static boolean isEnabled() {
+		return enabled;
+	}
+	
+	/**
+	 * Start of a timed section. Returns 0 when telemetry is off, pass the
+	 * result straight to stop().
+	 */
+	public static long start() {
+		return enabled ? TimeUtils.nanoTime() : 0;
+	}
+	
+	public static void stop(int histogram, long start) {
+		if (!enabled || start == 0)
+			return;
+		samples.offer(histogram, TimeUtils.nanoTime() - start);
+	}
+	
+	public static void record(int histogram, long nanos) {
+		if (enabled)
+			samples.offer(histogram, nanos);
+	}
+	
+	public static void count(int counter) {
+		if (enabled)
+			counters[counter].incrementAndGet();
+	}
+	
+	public static void count(int counter, int amount) {
+		if (enabled)
+			counters[counter].addAndGet(amount);
+	}
+	
+	public static void gauge(int gauge, long value) {
+		if (enabled)
+			gauges[gauge].set(value);
+	}
+	
+	/**
+	 * Once per physics tick, from the thread stepping the world: body and
+	 * contact counts of the world, heap use, and a GC event whenever the heap
+	 * shrank since the last call.
+	 */
+	public static void sample(World world) {
+		if (!enabled)
+			return;
+		gauges[BODY_COUNT].set(world.getBodyCount());
+		gauges[CONTACT_COUNT].set(world.getContactCount());
+		long heap = Gdx.app.getJavaHeap();
+		if (heap < lastHeap)
+			counters[GC_EVENTS].incrementAndGet();
+		lastHeap = heap;
+		gauges[HEAP_USED].set(heap);
+	}
+	
+	/**
+	 * Folds pending timing samples into the histograms. Call from one thread only.
+	 */
+	public static void drain() {
+		samples.drainTo(histograms);
+	}
+	
+	public static LatencyHistogram getHistogram(int histogram) {
+		return histograms[histogram];
+	}
+	
+	public static long getCounter(int counter) {
+		return counters[counter].get();
+	}
+	
+	public static long getGauge(int gauge) {
+		return gauges[gauge].get();
+	}
+	
+	public static long getDroppedSamples() {
+		return samples.getDropped();
+	}
+	
+	/**
+	 * Writes a one line per metric summary, times in milliseconds.
+	 */
+	public static void appendReport(StringBuilder out) {
+		for (int i = 0; i < HISTOGRAM_COUNT; i++) {
+			LatencyHistogram histogram = histograms[i];
+			out.append(HISTOGRAM_NAMES[i])
+				.append(" n=").append(histogram.getCount())
+				.append(" mean=").append(millis(histogram.getMean()))
+				.append(" p50=").append(millis(histogram.getPercentile(50)))
+				.append(" p99=").append(millis(histogram.getPercentile(99)))
+				.append(" max=").append(millis(histogram.getMax()))
+				.append('\n');
+		}
+		for (int i = 0; i < GAUGE_COUNT; i++)
+			out.append(GAUGE_NAMES[i]).append('=').append(gauges[i].get()).append(' ');
+		out.append('\n');
+		for (int i = 0; i < COUNTER_COUNT; i++)
+			out.append(COUNTER_NAMES[i]).append('=').append(counters[i].get()).append(' ');
+		out.append("dropped=").append(samples.getDropped()).append('\n');
+	}
+	
+	/**
+	 * Clears the histograms, for per interval reporting. Counters and gauges
+	 * keep running.
+	 */
+	public static void resetHistograms() {
+		for (int i = 0; i < HISTOGRAM_COUNT; i++)
+			histograms[i].reset();
+	}
+	
+	private static AtomicLong[] atomics(int count) {
+		AtomicLong[] array = new AtomicLong[count];
+		for (int i = 0; i < count; i++)
+			array[i] = new AtomicLong();
+		return array;
+	}
+	
+	private static float millis(double nanos) {
+		return Math.round(nanos / 1000.0) / 1000f;
+	}
+}
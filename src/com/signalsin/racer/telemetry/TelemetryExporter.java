@@ -0,0 +1,52 @@
+package com.signalsin.racer.telemetry;
+
+import com.badlogic.gdx.files.FileHandle;
+
+/**
+ * Drains Telemetry at a fixed interval and hands the summary to a file and/or
+ * an on-screen overlay. The report is built in a reused StringBuilder; the
+ * only per-interval allocation is the string written to the file.
+ */
+public class TelemetryExporter {
+	
+	private final FileHandle file;
+	private final float interval;
+	private final StringBuilder report = new StringBuilder(1024);
+	private float elapsed;
+	
+	/**
+	 * @param file file the reports are appended to, or null for overlay only
+	 * @param interval seconds between reports
+	 */
+	public TelemetryExporter(FileHandle file, float interval) {
+		this.file = file;
+		this.interval = interval;
+	}
+	
+	/**
+	 * Call once per frame. Returns true when a new report was produced.
+	 */
+	public boolean update(float delta) {
+		if (!Telemetry.isEnabled())
+			return false;
+		elapsed += delta;
+		if (elapsed < interval)
+			return false;
+		elapsed = 0;
+		
+		Telemetry.drain();
+		report.setLength(0);
+		Telemetry.appendReport(report);
+		Telemetry.resetHistograms();
+		if (file != null)
+			file.writeString(report.append('\n').toString(), true);
+		return true;
+	}
+	
+	/**
+	 * The latest report, for drawing with a BitmapFont.
+	 */
+	public CharSequence getReport() {
+		return report;
+	}
+}
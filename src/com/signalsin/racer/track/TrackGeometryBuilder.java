@@ -0,0 +1,227 @@
+package com.signalsin.racer.track;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.physics.box2d.BodyDef;
+import com.badlogic.gdx.physics.box2d.ChainShape;
+import com.badlogic.gdx.physics.box2d.FixtureDef;
+import com.badlogic.gdx.physics.box2d.PolygonShape;
+import com.badlogic.gdx.physics.box2d.World;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntMap;
+import com.signalsin.racer.car.BoxProp;
+
+/**
+ * Builds the static track with as few Box2D bodies and broadphase proxies as
+ * possible. Instead of one body per BoxProp, props are grouped into square
+ * regions that each get a single static body, and boxes in a region that
+ * line up edge to edge are merged into one fixture. Long boundaries can be
+ * added as outlines, which become ChainShapes on one shared body.
+ *
+ * Every fixture keeps the restitution BoxProp has always used. The BoxProps
+ * themselves are kept for drawing and lookups; merged ones share a body.
+ */
+public class TrackGeometryBuilder {
+	
+	public static final float RESTITUTION = 0.7f;
+	//boxes closer than this count as touching
+	private static final float EPSILON = 0.001f;
+	
+	private final float regionSize;
+	private final Array<BoxProp> props = new Array<BoxProp>();
+	private final Array<float[]> outlines = new Array<float[]>();
+	private final Array<Boolean> outlineLoops = new Array<Boolean>();
+	
+	//filled in by build()
+	private int bodiesBefore, proxiesBefore;
+	private int bodiesAfter, proxiesAfter, fixturesAfter;
+	
+	/**
+	 * @param regionSize side of the square regions that share a body, in meters
+	 */
+	public TrackGeometryBuilder(float regionSize) {
+		this.regionSize = regionSize;
+	}
+	
+	/** Adds an axis aligned box centred on x, y. */
+	public BoxProp addBox(float width, float height, float x, float y) {
+		BoxProp prop = new BoxProp(width, height, x, y);
+		props.add(prop);
+		return prop;
+	}
+	
+	/**
+	 * Adds a boundary as a chain of edges.
+	 * @param vertices x, y pairs in world meters
+	 * @param loop whether the last vertex connects back to the first
+	 */
+	public void addOutline(float[] vertices, boolean loop) {
+		if (vertices.length < 4 || vertices.length % 2 != 0)
+			throw new IllegalArgumentException("An outline needs at least two x, y pairs");
+		outlines.add(vertices);
+		outlineLoops.add(loop);
+	}
+	
+	/**
+	 * Creates the bodies and fixtures in the world and gives every box added
+	 * so far its body. Can only be called once per builder.
+	 */
+	public Array<BoxProp> build(World world) {
+		if (bodiesBefore > 0 || proxiesBefore > 0)
+			throw new IllegalStateException("Track geometry was already built");
+		
+		//what one body per prop would have cost; a chain is one edge body per segment
+		bodiesBefore = props.size;
+		proxiesBefore = props.size;
+		for (int i = 0; i < outlines.size; i++) {
+			int segments = segments(i);
+			bodiesBefore += segments;
+			proxiesBefore += segments;
+		}
+		
+		BodyDef bodyDef = new BodyDef();
+		bodyDef.fixedRotation = true;
+		FixtureDef fixtureDef = new FixtureDef();
+		fixtureDef.restitution = RESTITUTION;
+		
+		//group the boxes by region
+		IntMap<Array<BoxProp>> regions = new IntMap<Array<BoxProp>>();
+		for (int i = 0; i < props.size; i++) {
+			BoxProp prop = props.get(i);
+			int key = key(MathUtils.floor(prop.x / regionSize), MathUtils.floor(prop.y / regionSize));
+			Array<BoxProp> region = regions.get(key);
+			if (region == null) {
+				region = new Array<BoxProp>();
+				regions.put(key, region);
+			}
+			region.add(prop);
+		}
+		
+		PolygonShape box = new PolygonShape();
+		Vector2 center = new Vector2();
+		for (Array<BoxProp> region : regions.values()) {
+			//bodies sit at the origin so fixtures can use world coordinates
+			Body body = world.createBody(bodyDef);
+			bodiesAfter++;
+			for (int i = 0; i < region.size; i++)
+				region.get(i).body = body;
+			
+			Array<float[]> merged = merge(region);
+			for (int i = 0; i < merged.size; i++) {
+				float[] r = merged.get(i);
+				center.set((r[0] + r[2]) / 2, (r[1] + r[3]) / 2);
+				box.setAsBox((r[2] - r[0]) / 2, (r[3] - r[1]) / 2, center, 0);
+				fixtureDef.shape = box;
+				body.createFixture(fixtureDef);
+				fixturesAfter++;
+				proxiesAfter++;
+			}
+		}
+		box.dispose();
+		
+		if (outlines.size > 0) {
+			Body body = world.createBody(bodyDef);
+			bodiesAfter++;
+			for (int i = 0; i < outlines.size; i++) {
+				float[] xy = outlines.get(i);
+				Vector2[] vertices = new Vector2[xy.length / 2];
+				for (int j = 0; j < vertices.length; j++)
+					vertices[j] = new Vector2(xy[j * 2], xy[j * 2 + 1]);
+				
+				ChainShape chain = new ChainShape();
+				if (outlineLoops.get(i))
+					chain.createLoop(vertices);
+				else
+					chain.createChain(vertices);
+				fixtureDef.shape = chain;
+				body.createFixture(fixtureDef);
+				chain.dispose();
+				fixturesAfter++;
+				//each edge of a chain is its own proxy in the broadphase
+				proxiesAfter += segments(i);
+			}
+		}
+		return props;
+	}
+	
+	/**
+	 * Merges boxes that share a full edge or overlap along one, first into
+	 * horizontal runs and then vertically, until nothing changes.
+	 * Returns minX, minY, maxX, maxY per merged box.
+	 */
+	private Array<float[]> merge(Array<BoxProp> region) {
+		Array<float[]> boxes = new Array<float[]>(region.size);
+		for (int i = 0; i < region.size; i++) {
+			BoxProp prop = region.get(i);
+			boxes.add(new float[] {prop.x - prop.width / 2, prop.y - prop.height / 2,
+					prop.x + prop.width / 2, prop.y + prop.height / 2});
+		}
+		
+		boolean changed = true;
+		while (changed) {
+			changed = mergeAlong(boxes, 0);
+			changed |= mergeAlong(boxes, 1);
+		}
+		return boxes;
+	}
+	
+	//axis 0 joins boxes left to right, axis 1 bottom to top
+	private static boolean mergeAlong(Array<float[]> boxes, int axis) {
+		boolean changed = false;
+		for (int i = 0; i < boxes.size; i++) {
+			float[] a = boxes.get(i);
+			for (int j = boxes.size - 1; j > i; j--) {
+				float[] b = boxes.get(j);
+				int across = 1 - axis;
+				//same extent across the axis
+				if (Math.abs(a[across] - b[across]) > EPSILON || Math.abs(a[across + 2] - b[across + 2]) > EPSILON)
+					continue;
+				//touching or overlapping along it
+				if (b[axis] > a[axis + 2] + EPSILON || a[axis] > b[axis + 2] + EPSILON)
+					continue;
+				a[axis] = Math.min(a[axis], b[axis]);
+				a[axis + 2] = Math.max(a[axis + 2], b[axis + 2]);
+				boxes.removeIndex(j);
+				changed = true;
+			}
+		}
+		return changed;
+	}
+	
+	private int segments(int outline) {
+		int vertices = outlines.get(outline).length / 2;
+		return outlineLoops.get(outline) ? vertices : vertices - 1;
+	}
+	
+	/** Bodies the track would have needed with one body per box or edge. */
+	public int getBodiesBefore() {
+		return bodiesBefore;
+	}
+	
+	public int getProxiesBefore() {
+		return proxiesBefore;
+	}
+	
+	public int getBodiesAfter() {
+		return bodiesAfter;
+	}
+	
+	public int getProxiesAfter() {
+		return proxiesAfter;
+	}
+	
+	public int getFixturesAfter() {
+		return fixturesAfter;
+	}
+	
+	public String getReport() {
+		return "bodies " + bodiesBefore + " -> " + bodiesAfter
+				+ ", proxies " + proxiesBefore + " -> " + proxiesAfter
+				+ ", fixtures " + fixturesAfter;
+	}
+	
+	private static int key(int column, int row) {
+		return (column & 0xffff) << 16 | (row & 0xffff);
+	}
+}
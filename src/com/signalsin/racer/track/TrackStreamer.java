@@ -0,0 +1,329 @@
+package com.signalsin.racer.track;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.physics.box2d.BodyDef;
+import com.badlogic.gdx.physics.box2d.World;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntMap;
+import com.badlogic.gdx.utils.TimeUtils;
+import com.signalsin.racer.car.BoxProp;
+
+/**
+ * Keeps only the part of a long track that is near the cars in the Box2D
+ * world. Props are binned into square chunks; a chunk is built once any focus
+ * point (usually a car) comes within the activate radius of it and torn down
+ * again once every focus point is further away than the deactivate radius.
+ * The gap between the two radii stops chunks on the boundary from flapping.
+ *
+ * Building and tearing down happens one prop at a time inside a per-frame
+ * time budget, so crossing into a dense part of the track doesn't stall a
+ * frame. Torn down props hand their body back to a pool where it sits
+ * inactive, which takes it out of the broadphase, until another prop needs it.
+ */
+public class TrackStreamer {
+	
+	private static class Chunk {
+		final int column, row;
+		final float minX, minY, maxX, maxY;
+		
+		//prop data: x, y, width, height
+		float[] data = new float[16];
+		int propCount;
+		
+		//built props; live counts up while loading and down while unloading
+		BoxProp[] props;
+		int live;
+		
+		boolean wanted;
+		boolean pending;
+		int keepStamp;
+		
+		Chunk(int column, int row, float size) {
+			this.column = column;
+			this.row = row;
+			this.minX = column * size;
+			this.minY = row * size;
+			this.maxX = minX + size;
+			this.maxY = minY + size;
+		}
+		
+		boolean settled() {
+			return live == (wanted ? propCount : 0);
+		}
+	}
+	
+	private final World world;
+	private final float chunkSize;
+	private final IntMap<Chunk> chunks = new IntMap<Chunk>();
+	
+	//chunks with at least one live prop or on their way there
+	private final Array<Chunk> resident = new Array<Chunk>(false, 16);
+	//chunks that still have props to build or tear down, oldest first
+	private final Array<Chunk> pending = new Array<Chunk>(true, 16);
+	
+	private final Array<Body> pool = new Array<Body>(false, 64);
+	private final BodyDef bodyDef = new BodyDef();
+	
+	private float activateRadius, deactivateRadius;
+	private long budgetNanos;
+	private int maxPooledBodies;
+	
+	private int stamp;
+	private int liveProps;
+	private int bodiesCreated;
+	
+	/**
+	 * @param chunkSize side of a chunk in meters
+	 * @param activateRadius chunks closer than this to a focus point get built
+	 * @param deactivateRadius chunks further than this from every focus point get torn down
+	 * @param budgetNanos time update() may spend building and tearing down, 0 for no limit
+	 * @param maxPooledBodies inactive bodies kept around for reuse; the rest are destroyed
+	 */
+	public TrackStreamer(World world, float chunkSize, float activateRadius, float deactivateRadius,
+			long budgetNanos, int maxPooledBodies) {
+		if (deactivateRadius < activateRadius)
+			throw new IllegalArgumentException("deactivateRadius must not be smaller than activateRadius");
+		this.world = world;
+		this.chunkSize = chunkSize;
+		this.activateRadius = activateRadius;
+		this.deactivateRadius = deactivateRadius;
+		this.budgetNanos = budgetNanos;
+		this.maxPooledBodies = maxPooledBodies;
+		bodyDef.fixedRotation = true;
+	}
+	
+	/**
+	 * Adds a static box to the track. Nothing is created in the world until a
+	 * focus point comes near it.
+	 */
+	public void addProp(float x, float y, float width, float height) {
+		int column = MathUtils.floor(x / chunkSize);
+		int row = MathUtils.floor(y / chunkSize);
+		int key = key(column, row);
+		Chunk chunk = chunks.get(key);
+		if (chunk == null) {
+			chunk = new Chunk(column, row, chunkSize);
+			chunks.put(key, chunk);
+		}
+		if (chunk.live > 0 || chunk.pending)
+			throw new IllegalStateException("Can't add props to a chunk that is in use");
+		
+		if (chunk.data.length < (chunk.propCount + 1) * 4) {
+			float[] data = new float[chunk.data.length * 2];
+			System.arraycopy(chunk.data, 0, data, 0, chunk.data.length);
+			chunk.data = data;
+		}
+		int i = chunk.propCount * 4;
+		chunk.data[i] = x;
+		chunk.data[i + 1] = y;
+		chunk.data[i + 2] = width;
+		chunk.data[i + 3] = height;
+		chunk.propCount++;
+	}
+	
+	/**
+	 * Works out which chunks the given focus points need, then builds and
+	 * tears down props until the time budget is used up. At least one prop is
+	 * handled per call so the track always catches up eventually.
+	 */
+	public void update(float[] focusX, float[] focusY, int count) {
+		stamp++;
+		for (int i = 0; i < count; i++) {
+			mark(focusX[i], focusY[i], deactivateRadius, false);
+			mark(focusX[i], focusY[i], activateRadius, true);
+		}
+		
+		for (int i = resident.size - 1; i >= 0; i--) {
+			Chunk chunk = resident.get(i);
+			if (chunk.wanted && chunk.keepStamp != stamp) {
+				chunk.wanted = false;
+				schedule(chunk);
+			}
+		}
+		
+		work();
+	}
+	
+	/**
+	 * Builds and tears down everything update() still has queued, ignoring
+	 * the time budget. Useful before the first frame and in headless runs
+	 * that need the same result regardless of timing.
+	 */
+	public void finish() {
+		while (pending.size > 0)
+			step(pending.first());
+	}
+	
+	private void mark(float x, float y, float radius, boolean activate) {
+		int column0 = MathUtils.floor((x - radius) / chunkSize);
+		int row0 = MathUtils.floor((y - radius) / chunkSize);
+		int column1 = MathUtils.floor((x + radius) / chunkSize);
+		int row1 = MathUtils.floor((y + radius) / chunkSize);
+		float radius2 = radius * radius;
+		
+		for (int row = row0; row <= row1; row++) {
+			for (int column = column0; column <= column1; column++) {
+				Chunk chunk = chunks.get(key(column, row));
+				if (chunk == null)
+					continue;
+				
+				//distance from the point to the closest point of the chunk
+				float dx = Math.max(chunk.minX - x, Math.max(0, x - chunk.maxX));
+				float dy = Math.max(chunk.minY - y, Math.max(0, y - chunk.maxY));
+				if (dx * dx + dy * dy > radius2)
+					continue;
+				
+				if (!activate) {
+					chunk.keepStamp = stamp;
+				} else if (!chunk.wanted) {
+					chunk.wanted = true;
+					schedule(chunk);
+				}
+			}
+		}
+	}
+	
+	private void schedule(Chunk chunk) {
+		if (chunk.settled()) {
+			//changed its mind before any work was done
+			if (chunk.pending) {
+				chunk.pending = false;
+				pending.removeValue(chunk, true);
+			}
+			if (chunk.live == 0)
+				resident.removeValue(chunk, true);
+			return;
+		}
+		if (chunk.props == null)
+			chunk.props = new BoxProp[chunk.propCount];
+		if (!resident.contains(chunk, true))
+			resident.add(chunk);
+		if (!chunk.pending) {
+			chunk.pending = true;
+			pending.add(chunk);
+		}
+	}
+	
+	private void work() {
+		if (pending.size == 0)
+			return;
+		long start = TimeUtils.nanoTime();
+		do {
+			step(pending.first());
+		} while (pending.size > 0 && (budgetNanos <= 0 || TimeUtils.nanoTime() - start < budgetNanos));
+	}
+	
+	private void step(Chunk chunk) {
+		if (chunk.wanted && chunk.live < chunk.propCount) {
+			int i = chunk.live * 4;
+			float[] data = chunk.data;
+			chunk.props[chunk.live++] = build(data[i], data[i + 1], data[i + 2], data[i + 3]);
+			liveProps++;
+		} else if (!chunk.wanted && chunk.live > 0) {
+			BoxProp prop = chunk.props[--chunk.live];
+			chunk.props[chunk.live] = null;
+			free(prop.release());
+			liveProps--;
+		}
+		
+		if (chunk.settled()) {
+			chunk.pending = false;
+			pending.removeIndex(0);
+			if (chunk.live == 0)
+				resident.removeValue(chunk, true);
+		}
+	}
+	
+	private BoxProp build(float x, float y, float width, float height) {
+		Body body;
+		if (pool.size > 0) {
+			body = pool.pop();
+		} else {
+			bodyDef.position.set(x, y);
+			body = world.createBody(bodyDef);
+			bodiesCreated++;
+		}
+		return new BoxProp(body, width, height, x, y);
+	}
+	
+	private void free(Body body) {
+		if (pool.size < maxPooledBodies)
+			pool.add(body);
+		else
+			world.destroyBody(body);
+	}
+	
+	/** Adds every live prop to the given array. */
+	public Array<BoxProp> getLiveProps(Array<BoxProp> out) {
+		for (int i = 0; i < resident.size; i++) {
+			Chunk chunk = resident.get(i);
+			for (int j = 0; j < chunk.live; j++)
+				out.add(chunk.props[j]);
+		}
+		return out;
+	}
+	
+	public int getChunkCount() {
+		return chunks.size;
+	}
+	
+	public int getResidentChunks() {
+		return resident.size;
+	}
+	
+	public int getPendingChunks() {
+		return pending.size;
+	}
+	
+	public int getLiveProps() {
+		return liveProps;
+	}
+	
+	public int getPooledBodies() {
+		return pool.size;
+	}
+	
+	/** Bodies ever created by this streamer; stays flat once the pool has warmed up. */
+	public int getBodiesCreated() {
+		return bodiesCreated;
+	}
+	
+	public void setBudgetNanos(long budgetNanos) {
+		this.budgetNanos = budgetNanos;
+	}
+	
+	public void setRadii(float activateRadius, float deactivateRadius) {
+		if (deactivateRadius < activateRadius)
+			throw new IllegalArgumentException("deactivateRadius must not be smaller than activateRadius");
+		this.activateRadius = activateRadius;
+		this.deactivateRadius = deactivateRadius;
+	}
+	
+	/**
+	 * Destroys every body the streamer made, live or pooled. Not needed if
+	 * the world itself is about to be disposed.
+	 */
+	public void dispose() {
+		for (int i = 0; i < resident.size; i++) {
+			Chunk chunk = resident.get(i);
+			for (int j = 0; j < chunk.live; j++) {
+				world.destroyBody(chunk.props[j].body);
+				chunk.props[j] = null;
+			}
+			chunk.live = 0;
+			chunk.wanted = false;
+			chunk.pending = false;
+		}
+		resident.clear();
+		pending.clear();
+		for (int i = 0; i < pool.size; i++)
+			world.destroyBody(pool.get(i));
+		pool.clear();
+		liveProps = 0;
+	}
+	
+	private static int key(int column, int row) {
+		return (column & 0xffff) << 16 | (row & 0xffff);
+	}
+}
@@ -0,0 +1,302 @@
+package com.signalsin.racer.trackfile;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * Turns an editable track source into the binary format TrackFile reads.
+ * The source is plain text, one entry per line, lengths in meters:
+ * <pre>
+ * # comment
+ * laps 3
+ * cell 8                        spatial index cell size, defaults to 8
+ * prop x y width height
+ * outline loop|open x y x y ... boundary, becomes a chain shape
+ * spawn x y angle               angle in radians
+ * checkpoint x y radius         the first one is the start/finish line
+ * </pre>
+ * Props are stored sorted by index cell, so props that are near each other
+ * in the world are near each other in the file.
+ *
+ * Run main() with the source and output paths to compile from the command line.
+ */
+public class TrackCompiler {
+	
+	private int laps = 3;
+	private float cellSize = 8;
+	private final FloatArray props = new FloatArray();
+	private final IntArray outlines = new IntArray();
+	private final FloatArray vertices = new FloatArray();
+	private final FloatArray spawns = new FloatArray();
+	private final FloatArray checkpoints = new FloatArray();
+	
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.err.println("usage: TrackCompiler <source> <output>");
+			System.exit(1);
+		}
+		TrackCompiler compiler = new TrackCompiler();
+		Reader source = new FileReader(args[0]);
+		try {
+			compiler.parse(source);
+		} finally {
+			source.close();
+		}
+		compiler.write(new File(args[1]));
+		System.out.println(args[1] + ": " + compiler.props.size / 4 + " props, "
+				+ compiler.outlines.size / 3 + " outlines, " + compiler.checkpoints.size / 3 + " checkpoints");
+	}
+	
+	/**
+	 * Adds everything in the source to the track being compiled.
+	 * @throws IOException on read errors or a malformed line
+	 */
+	public TrackCompiler parse(Reader source) throws IOException {
+		BufferedReader reader = new BufferedReader(source);
+		String line;
+		int number = 0;
+		while ((line = reader.readLine()) != null) {
+			number++;
+			int comment = line.indexOf('#');
+			if (comment >= 0)
+				line = line.substring(0, comment);
+			line = line.trim();
+			if (line.length() == 0)
+				continue;
+			
+			String[] words = line.split("\\s+");
+			try {
+				parseLine(words);
+			} catch (NumberFormatException e) {
+				throw new IOException("line " + number + ": " + e.getMessage());
+			} catch (IllegalArgumentException e) {
+				throw new IOException("line " + number + ": " + e.getMessage());
+			}
+		}
+		return this;
+	}
+	
+	private void parseLine(String[] words) {
+		String type = words[0];
+		if (type.equals("laps")) {
+			expect(words, 2);
+			laps = Integer.parseInt(words[1]);
+		} else if (type.equals("cell")) {
+			expect(words, 2);
+			cellSize = Float.parseFloat(words[1]);
+			if (cellSize <= 0)
+				throw new IllegalArgumentException("cell size must be positive");
+		} else if (type.equals("prop")) {
+			expect(words, 5);
+			addProp(number(words[1]), number(words[2]), number(words[3]), number(words[4]));
+		} else if (type.equals("outline")) {
+			if (words.length < 6 || words.length % 2 != 0)
+				throw new IllegalArgumentException("outline needs loop or open and at least two x y pairs");
+			boolean loop;
+			if (words[1].equals("loop"))
+				loop = true;
+			else if (words[1].equals("open"))
+				loop = false;
+			else
+				throw new IllegalArgumentException("outline must be loop or open, not " + words[1]);
+			float[] xy = new float[words.length - 2];
+			for (int i = 0; i < xy.length; i++)
+				xy[i] = number(words[i + 2]);
+			addOutline(xy, loop);
+		} else if (type.equals("spawn")) {
+			expect(words, 4);
+			addSpawn(number(words[1]), number(words[2]), number(words[3]));
+		} else if (type.equals("checkpoint")) {
+			expect(words, 4);
+			addCheckpoint(number(words[1]), number(words[2]), number(words[3]));
+		} else {
+			throw new IllegalArgumentException("unknown entry " + type);
+		}
+	}
+	
+	private static void expect(String[] words, int count) {
+		if (words.length != count)
+			throw new IllegalArgumentException(words[0] + " takes " + (count - 1) + " values");
+	}
+	
+	private static float number(String word) {
+		return Float.parseFloat(word);
+	}
+	
+	public TrackCompiler setLaps(int laps) {
+		this.laps = laps;
+		return this;
+	}
+	
+	public TrackCompiler setCellSize(float cellSize) {
+		this.cellSize = cellSize;
+		return this;
+	}
+	
+	public TrackCompiler addProp(float x, float y, float width, float height) {
+		props.add(x);
+		props.add(y);
+		props.add(width);
+		props.add(height);
+		return this;
+	}
+	
+	public TrackCompiler addOutline(float[] xy, boolean loop) {
+		outlines.add(vertices.size / 2);
+		outlines.add(xy.length / 2);
+		outlines.add(loop ? 1 : 0);
+		vertices.addAll(xy);
+		return this;
+	}
+	
+	public TrackCompiler addSpawn(float x, float y, float angle) {
+		spawns.add(x);
+		spawns.add(y);
+		spawns.add(angle);
+		return this;
+	}
+	
+	public TrackCompiler addCheckpoint(float x, float y, float radius) {
+		checkpoints.add(x);
+		checkpoints.add(y);
+		checkpoints.add(radius);
+		return this;
+	}
+	
+	/** Compiles everything added so far into a buffer ready for TrackFile.wrap(). */
+	public ByteBuffer compile() {
+		//bounds of everything on the track
+		float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+		float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+		for (int i = 0; i < props.size; i += 4) {
+			float halfWidth = props.get(i + 2) / 2, halfHeight = props.get(i + 3) / 2;
+			minX = Math.min(minX, props.get(i) - halfWidth);
+			minY = Math.min(minY, props.get(i + 1) - halfHeight);
+			maxX = Math.max(maxX, props.get(i) + halfWidth);
+			maxY = Math.max(maxY, props.get(i + 1) + halfHeight);
+		}
+		float[][] points = {vertices.items, spawns.items, checkpoints.items};
+		int[] sizes = {vertices.size, spawns.size, checkpoints.size};
+		int[] strides = {2, 3, 3};
+		for (int p = 0; p < points.length; p++) {
+			for (int i = 0; i < sizes[p]; i += strides[p]) {
+				minX = Math.min(minX, points[p][i]);
+				minY = Math.min(minY, points[p][i + 1]);
+				maxX = Math.max(maxX, points[p][i]);
+				maxY = Math.max(maxY, points[p][i + 1]);
+			}
+		}
+		if (minX > maxX) {
+			minX = minY = 0;
+			maxX = maxY = cellSize;
+		}
+		int columns = Math.max(1, (int) Math.ceil((maxX - minX) / cellSize));
+		int rows = Math.max(1, (int) Math.ceil((maxY - minY) / cellSize));
+		
+		//order props by the cell their centre is in
+		int propCount = props.size / 4;
+		Integer[] order = new Integer[propCount];
+		final int[] cellOf = new int[propCount];
+		for (int i = 0; i < propCount; i++) {
+			order[i] = i;
+			cellOf[i] = cell(props.get(i * 4 + 1), minY, rows) * columns + cell(props.get(i * 4), minX, columns);
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return cellOf[a] - cellOf[b];
+			}
+		});
+		float[] sorted = new float[props.size];
+		for (int i = 0; i < propCount; i++)
+			System.arraycopy(props.items, order[i] * 4, sorted, i * 4, 4);
+		
+		//index: every cell lists the props overlapping it
+		int cells = columns * rows;
+		int[] cellStart = new int[cells + 1];
+		int[] indexEntries = null;
+		for (int pass = 0; pass < 2; pass++) {
+			//first pass counts, second fills
+			int[] fill = pass == 0 ? null : new int[cells];
+			for (int i = 0; i < propCount; i++) {
+				int column0 = cell(sorted[i * 4] - sorted[i * 4 + 2] / 2, minX, columns);
+				int column1 = cell(sorted[i * 4] + sorted[i * 4 + 2] / 2, minX, columns);
+				int row0 = cell(sorted[i * 4 + 1] - sorted[i * 4 + 3] / 2, minY, rows);
+				int row1 = cell(sorted[i * 4 + 1] + sorted[i * 4 + 3] / 2, minY, rows);
+				for (int row = row0; row <= row1; row++) {
+					for (int column = column0; column <= column1; column++) {
+						int cell = row * columns + column;
+						if (pass == 0)
+							cellStart[cell + 1]++;
+						else
+							indexEntries[cellStart[cell] + fill[cell]++] = i;
+					}
+				}
+			}
+			if (pass == 0) {
+				for (int c = 0; c < cells; c++)
+					cellStart[c + 1] += cellStart[c];
+				indexEntries = new int[cellStart[cells]];
+			}
+		}
+		
+		int size = TrackFile.HEADER_SIZE
+				+ propCount * TrackFile.PROP_SIZE
+				+ outlines.size / 3 * TrackFile.OUTLINE_SIZE
+				+ vertices.size / 2 * TrackFile.VERTEX_SIZE
+				+ spawns.size / 3 * TrackFile.SPAWN_SIZE
+				+ checkpoints.size / 3 * TrackFile.CHECKPOINT_SIZE
+				+ (cells + 1) * 4
+				+ indexEntries.length * 4;
+		ByteBuffer out = ByteBuffer.allocate(size);
+		out.put((byte) 'R').put((byte) 'T').put(TrackFile.VERSION).put((byte) 0);
+		out.putInt(laps);
+		out.putFloat(minX).putFloat(minY).putFloat(maxX).putFloat(maxY);
+		out.putFloat(cellSize).putInt(columns).putInt(rows);
+		out.putInt(propCount).putInt(outlines.size / 3).putInt(vertices.size / 2);
+		out.putInt(spawns.size / 3).putInt(checkpoints.size / 3).putInt(indexEntries.length);
+		
+		for (int i = 0; i < sorted.length; i++)
+			out.putFloat(sorted[i]);
+		for (int i = 0; i < outlines.size; i++)
+			out.putInt(outlines.get(i));
+		for (int i = 0; i < vertices.size; i++)
+			out.putFloat(vertices.get(i));
+		for (int i = 0; i < spawns.size; i++)
+			out.putFloat(spawns.get(i));
+		for (int i = 0; i < checkpoints.size; i++)
+			out.putFloat(checkpoints.get(i));
+		for (int i = 0; i < cellStart.length; i++)
+			out.putInt(cellStart[i]);
+		for (int i = 0; i < indexEntries.length; i++)
+			out.putInt(indexEntries[i]);
+		out.flip();
+		return out;
+	}
+	
+	public void write(File file) throws IOException {
+		ByteBuffer data = compile();
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			while (data.hasRemaining())
+				out.getChannel().write(data);
+		} finally {
+			out.close();
+		}
+	}
+	
+	private int cell(float value, float min, int count) {
+		return MathUtils.clamp(MathUtils.floor((value - min) / cellSize), 0, count - 1);
+	}
+}
@@ -0,0 +1,271 @@
+package com.signalsin.racer.trackfile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.physics.box2d.World;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.signalsin.racer.car.BoxProp;
+import com.signalsin.racer.track.TrackGeometryBuilder;
+import com.signalsin.racer.track.TrackStreamer;
+
+/**
+ * A track compiled by TrackCompiler, read straight out of a buffer. Nothing
+ * is parsed or copied on load: every getter reads the mapped file, so opening
+ * even a huge track only costs the header check, and the operating system
+ * shares the pages between every race that uses it.
+ *
+ * Only absolute reads are used, so one instance can be handed to any number
+ * of headless races on different threads.
+ *
+ * Layout, big endian:
+ * <pre>
+ * header      'R' 'T' version 0, laps, bounds (4 floats), cell size, columns, rows,
+ *             counts of props, outlines, outline vertices, spawns, checkpoints, index entries
+ * props       x, y, width, height
+ * outlines    first vertex, vertex count, loop (0/1)
+ * vertices    x, y
+ * spawns      x, y, angle
+ * checkpoints x, y, radius
+ * cell starts columns * rows + 1 ints into the index entries
+ * index       prop numbers, grouped by cell
+ * </pre>
+ */
+public class TrackFile {
+	
+	static final byte VERSION = 1;
+	static final int HEADER_SIZE = 60;
+	
+	static final int PROP_SIZE = 16;
+	static final int OUTLINE_SIZE = 12;
+	static final int VERTEX_SIZE = 8;
+	static final int SPAWN_SIZE = 12;
+	static final int CHECKPOINT_SIZE = 12;
+	
+	private final ByteBuffer buffer;
+	
+	private final int laps;
+	private final float minX, minY, maxX, maxY;
+	private final float cellSize;
+	private final int columns, rows;
+	private final int propCount, outlineCount, vertexCount, spawnCount, checkpointCount, indexCount;
+	
+	private final int props, outlines, vertices, spawns, checkpoints, cellStarts, index;
+	
+	/** Maps the file read only. The mapping stays valid after the file is closed. */
+	public static TrackFile map(File file) throws IOException {
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = in.getChannel();
+			return new TrackFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		} finally {
+			in.close();
+		}
+	}
+	
+	/** Reads a track from a buffer that already holds it, e.g. from TrackCompiler. */
+	public static TrackFile wrap(ByteBuffer buffer) throws IOException {
+		return new TrackFile(buffer);
+	}
+	
+	private TrackFile(ByteBuffer buffer) throws IOException {
+		this.buffer = buffer;
+		int base = buffer.position();
+		if (buffer.remaining() < HEADER_SIZE || buffer.get(base) != 'R' || buffer.get(base + 1) != 'T')
+			throw new IOException("Not a track file");
+		if (buffer.get(base + 2) != VERSION)
+			throw new IOException("Unsupported track file version " + buffer.get(base + 2));
+		
+		laps = buffer.getInt(base + 4);
+		minX = buffer.getFloat(base + 8);
+		minY = buffer.getFloat(base + 12);
+		maxX = buffer.getFloat(base + 16);
+		maxY = buffer.getFloat(base + 20);
+		cellSize = buffer.getFloat(base + 24);
+		columns = buffer.getInt(base + 28);
+		rows = buffer.getInt(base + 32);
+		propCount = buffer.getInt(base + 36);
+		outlineCount = buffer.getInt(base + 40);
+		vertexCount = buffer.getInt(base + 44);
+		spawnCount = buffer.getInt(base + 48);
+		checkpointCount = buffer.getInt(base + 52);
+		indexCount = buffer.getInt(base + 56);
+		
+		props = base + HEADER_SIZE;
+		outlines = props + propCount * PROP_SIZE;
+		vertices = outlines + outlineCount * OUTLINE_SIZE;
+		spawns = vertices + vertexCount * VERTEX_SIZE;
+		checkpoints = spawns + spawnCount * SPAWN_SIZE;
+		cellStarts = checkpoints + checkpointCount * CHECKPOINT_SIZE;
+		index = cellStarts + (columns * rows + 1) * 4;
+		int end = index + indexCount * 4;
+		if (end > buffer.limit() || columns < 1 || rows < 1)
+			throw new IOException("Track file is truncated");
+	}
+	
+	/**
+	 * Creates the static track in the world: every prop and outline goes
+	 * through the given builder, whose report then covers this track.
+	 */
+	public Array<BoxProp> build(World world, TrackGeometryBuilder builder) {
+		for (int i = 0; i < propCount; i++) {
+			int at = props + i * PROP_SIZE;
+			builder.addBox(buffer.getFloat(at + 8), buffer.getFloat(at + 12), buffer.getFloat(at), buffer.getFloat(at + 4));
+		}
+		addOutlines(builder);
+		return builder.build(world);
+	}
+	
+	private void addOutlines(TrackGeometryBuilder builder) {
+		for (int i = 0; i < outlineCount; i++) {
+			int at = outlines + i * OUTLINE_SIZE;
+			int first = buffer.getInt(at);
+			int count = buffer.getInt(at + 4);
+			float[] xy = new float[count * 2];
+			for (int j = 0; j < count; j++) {
+				int vertex = vertices + (first + j) * VERTEX_SIZE;
+				xy[j * 2] = buffer.getFloat(vertex);
+				xy[j * 2 + 1] = buffer.getFloat(vertex + 4);
+			}
+			builder.addOutline(xy, buffer.getInt(at + 8) != 0);
+		}
+	}
+	
+	/**
+	 * Hands every prop to a streamer instead of building them all upfront.
+	 * The streamer only knows boxes, so the outlines are built into the world
+	 * right away as static chains; there are few of them and a chain costs
+	 * little while nothing touches it.
+	 */
+	public void stream(World world, TrackStreamer streamer) {
+		if (outlineCount > 0) {
+			TrackGeometryBuilder builder = new TrackGeometryBuilder(cellSize);
+			addOutlines(builder);
+			builder.build(world);
+		}
+		for (int i = 0; i < propCount; i++) {
+			int at = props + i * PROP_SIZE;
+			streamer.addProp(buffer.getFloat(at), buffer.getFloat(at + 4), buffer.getFloat(at + 8), buffer.getFloat(at + 12));
+		}
+	}
+	
+	/**
+	 * Adds the number of every prop overlapping the box to out, using the
+	 * index stored in the file. Each prop is added once.
+	 * @return how many were added
+	 */
+	public int query(float minX, float minY, float maxX, float maxY, IntArray out) {
+		int column0 = column(minX), row0 = row(minY);
+		int column1 = column(maxX), row1 = row(maxY);
+		int found = 0;
+		for (int row = row0; row <= row1; row++) {
+			for (int column = column0; column <= column1; column++) {
+				int cell = row * columns + column;
+				int end = buffer.getInt(cellStarts + (cell + 1) * 4);
+				for (int i = buffer.getInt(cellStarts + cell * 4); i < end; i++) {
+					int prop = buffer.getInt(index + i * 4);
+					int at = props + prop * PROP_SIZE;
+					float x = buffer.getFloat(at), y = buffer.getFloat(at + 4);
+					float halfWidth = buffer.getFloat(at + 8) / 2, halfHeight = buffer.getFloat(at + 12) / 2;
+					if (x + halfWidth < minX || x - halfWidth > maxX || y + halfHeight < minY || y - halfHeight > maxY)
+						continue;
+					//a prop in several cells is only reported from the first one the query shares with it
+					if (column != Math.max(column0, column(x - halfWidth)) || row != Math.max(row0, row(y - halfHeight)))
+						continue;
+					out.add(prop);
+					found++;
+				}
+			}
+		}
+		return found;
+	}
+	
+	private int column(float x) {
+		return MathUtils.clamp(MathUtils.floor((x - minX) / cellSize), 0, columns - 1);
+	}
+	
+	private int row(float y) {
+		return MathUtils.clamp(MathUtils.floor((y - minY) / cellSize), 0, rows - 1);
+	}
+	
+	public int getLaps() {
+		return laps;
+	}
+	
+	public float getMinX() {
+		return minX;
+	}
+	
+	public float getMinY() {
+		return minY;
+	}
+	
+	public float getMaxX() {
+		return maxX;
+	}
+	
+	public float getMaxY() {
+		return maxY;
+	}
+	
+	public int getPropCount() {
+		return propCount;
+	}
+	
+	public float getPropX(int prop) {
+		return buffer.getFloat(props + prop * PROP_SIZE);
+	}
+	
+	public float getPropY(int prop) {
+		return buffer.getFloat(props + prop * PROP_SIZE + 4);
+	}
+	
+	public float getPropWidth(int prop) {
+		return buffer.getFloat(props + prop * PROP_SIZE + 8);
+	}
+	
+	public float getPropHeight(int prop) {
+		return buffer.getFloat(props + prop * PROP_SIZE + 12);
+	}
+	
+	public int getOutlineCount() {
+		return outlineCount;
+	}
+	
+	public int getSpawnCount() {
+		return spawnCount;
+	}
+	
+	public float getSpawnX(int spawn) {
+		return buffer.getFloat(spawns + spawn * SPAWN_SIZE);
+	}
+	
+	public float getSpawnY(int spawn) {
+		return buffer.getFloat(spawns + spawn * SPAWN_SIZE + 4);
+	}
+	
+	public float getSpawnAngle(int spawn) {
+		return buffer.getFloat(spawns + spawn * SPAWN_SIZE + 8);
+	}
+	
+	public int getCheckpointCount() {
+		return checkpointCount;
+	}
+	
+	public float getCheckpointX(int checkpoint) {
+		return buffer.getFloat(checkpoints + checkpoint * CHECKPOINT_SIZE);
+	}
+	
+	public float getCheckpointY(int checkpoint) {
+		return buffer.getFloat(checkpoints + checkpoint * CHECKPOINT_SIZE + 4);
+	}
+	
+	public float getCheckpointRadius(int checkpoint) {
+		return buffer.getFloat(checkpoints + checkpoint * CHECKPOINT_SIZE + 8);
+	}
+}
@@ -0,0 +1,79 @@
+package com.signalsin.racer.car;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.World;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+
+/**
+ * Guards the allocation-free physics tick: after a warm up, a few thousand
+ * ticks of Car.update() and World.step() with changing inputs must not
+ * allocate on the Java heap. A car driving into a wall keeps contacts
+ * coming and going while it's measured.
+ *
+ * Runs without GL; needs gdx-natives.jar next to gdx.jar and a HotSpot style
+ * JVM that reports per thread allocation. Exits non-zero on failure.
+ */
+public class CarAllocationTest {
+	
+	private static final float STEP = 1 / 60f;
+	private static final int WARMUP_TICKS = 20000;
+	private static final int MEASURED_TICKS = 5000;
+	
+	private static final int[] STEERS = {Car.STEER_NONE, Car.STEER_LEFT, Car.STEER_HARD_RIGHT,
+			Car.STEER_RIGHT, Car.STEER_HARD_LEFT};
+	private static final int[] ACCELERATES = {Car.ACC_ACCELERATE, Car.ACC_ACCELERATE, Car.ACC_BRAKE, Car.ACC_NONE};
+	
+	public static void main(String[] args) {
+		GdxNativesLoader.load();
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean))
+			fail("this JVM can't report allocated bytes per thread");
+		com.sun.management.ThreadMXBean allocation = (com.sun.management.ThreadMXBean) bean;
+		if (!allocation.isThreadAllocatedMemorySupported())
+			fail("this JVM can't report allocated bytes per thread");
+		allocation.setThreadAllocatedMemoryEnabled(true);
+		long thread = Thread.currentThread().getId();
+		
+		World world = new World(new Vector2(0, 0), true);
+		Car car = new Car(world, 1, 2, new Vector2(0, 0), 0, 60, 15, 25, 100);
+		new BoxProp(world, 20, 1, new Vector2(0, -15));
+		
+		run(world, car, 0, WARMUP_TICKS);
+		//once before measuring so the call itself is warmed up too
+		allocation.getThreadAllocatedBytes(thread);
+		long before = allocation.getThreadAllocatedBytes(thread);
+		run(world, car, WARMUP_TICKS, MEASURED_TICKS);
+		long after = allocation.getThreadAllocatedBytes(thread);
+		
+		long bytes = after - before;
+		System.out.println(MEASURED_TICKS + " ticks allocated " + bytes + " bytes, "
+				+ ((double) bytes / MEASURED_TICKS) + " per tick");
+		//a few bytes from the measurement itself are noise, a byte per tick is not
+		if (bytes / MEASURED_TICKS > 0)
+			fail("Car.update + World.step allocates " + (bytes / MEASURED_TICKS) + " bytes per tick");
+		world.dispose();
+		System.out.println("CarAllocationTest passed");
+	}
+	
+	private static void run(World world, Car car, int firstTick, int ticks) {
+		for (int tick = firstTick; tick < firstTick + ticks; tick++) {
+			//new inputs every half second, covering every steer and pedal
+			int phase = tick / 30;
+			car.setSteer(STEERS[phase % STEERS.length]);
+			car.setAccelerate(ACCELERATES[phase % ACCELERATES.length]);
+			//back to the start now and then so the car keeps hitting the wall
+			if (tick % 600 == 0)
+				car.setSpeed(0);
+			car.update(STEP);
+			world.step(STEP, 3, 3);
+		}
+	}
+	
+	private static void fail(String message) {
+		System.err.println("FAILED " + message);
+		System.exit(1);
+	}
+}
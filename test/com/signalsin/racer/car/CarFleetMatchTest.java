@@ -0,0 +1,85 @@
+package com.signalsin.racer.car;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.World;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+
+/**
+ * Drives a Car and a CarFleet car through the same inputs in two empty worlds
+ * and checks after every tick that they are in the same place, facing the
+ * same way and moving at the same velocity. The fleet runs the same model with
+ * the maths reordered, so only float rounding may separate them.
+ *
+ * Runs without GL; needs gdx-natives.jar next to gdx.jar. Exits non-zero on
+ * failure.
+ */
+public class CarFleetMatchTest {
+	
+	private static final float STEP = 1 / 60f;
+	
+	//steer and accelerate for each phase, between them every input
+	private static final int[][] PHASES = {
+		{Car.STEER_NONE, Car.ACC_ACCELERATE},
+		{Car.STEER_LEFT, Car.ACC_ACCELERATE},
+		{Car.STEER_HARD_RIGHT, Car.ACC_ACCELERATE},
+		{Car.STEER_RIGHT, Car.ACC_NONE},
+		{Car.STEER_HARD_LEFT, Car.ACC_BRAKE},
+		{Car.STEER_NONE, Car.ACC_BRAKE},
+	};
+	private static final float PHASE_SECONDS = 1;
+	
+	private static final float MAX_DISTANCE = 0.01f;
+	private static final float MAX_HEADING_DEGREES = 0.1f;
+	private static final float MAX_VELOCITY = 0.01f;
+	
+	public static void main(String[] args) {
+		GdxNativesLoader.load();
+		World carWorld = new World(new Vector2(0, 0), true);
+		World fleetWorld = new World(new Vector2(0, 0), true);
+		Car car = new Car(carWorld, 1, 2, new Vector2(0, 0), 0, 60, 15, 25, 100);
+		CarFleet fleet = new CarFleet(fleetWorld, 1);
+		int index = fleet.add(1, 2, new Vector2(0, 0), 0, 60, 15, 25, 100);
+		Car fleetCar = fleet.getCar(index);
+		
+		int phaseTicks = Math.round(PHASE_SECONDS / STEP);
+		for (int tick = 0; tick < PHASES.length * phaseTicks; tick++) {
+			int[] phase = PHASES[tick / phaseTicks];
+			car.setSteer(phase[0]);
+			car.setAccelerate(phase[1]);
+			fleet.setSteer(index, phase[0]);
+			fleet.setAccelerate(index, phase[1]);
+			car.update(STEP);
+			fleet.update(STEP);
+			carWorld.step(STEP, 3, 3);
+			fleetWorld.step(STEP, 3, 3);
+			compare(tick, car, fleetCar);
+		}
+		
+		System.out.println("CarFleetMatchTest passed, car ended at " + car.body.getPosition()
+				+ ", fleet car at " + fleetCar.body.getPosition());
+		carWorld.dispose();
+		fleetWorld.dispose();
+	}
+	
+	private static void compare(int tick, Car car, Car fleetCar) {
+		Vector2 position = car.body.getPosition();
+		Vector2 fleetPosition = fleetCar.body.getPosition();
+		float distance = position.dst(fleetPosition);
+		float heading = Math.abs(car.body.getAngle() - fleetCar.body.getAngle()) * MathUtils.radiansToDegrees;
+		float velocity = car.body.getLinearVelocity().dst(fleetCar.body.getLinearVelocity());
+		String label = "tick " + tick + ": car at " + position + ", fleet car at " + fleetPosition;
+		
+		if (distance > MAX_DISTANCE)
+			fail(label + ", " + distance + "m apart");
+		if (heading > MAX_HEADING_DEGREES)
+			fail(label + ", headings differ by " + heading + " degrees");
+		if (velocity > MAX_VELOCITY)
+			fail(label + ", velocities differ by " + velocity + "m/s");
+	}
+	
+	private static void fail(String message) {
+		System.err.println("FAILED " + message);
+		System.exit(1);
+	}
+}
@@ -0,0 +1,82 @@
+package com.signalsin.racer.car;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.World;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+
+/**
+ * Drives a Car and a LightCar through the same inputs in two empty worlds
+ * and checks they end up in about the same place facing about the same way.
+ * The single body car is an approximation, so the bounds are loose; what it
+ * catches is a LightCar that steers the wrong way or not at all.
+ *
+ * Runs without GL; needs gdx-natives.jar next to gdx.jar. Exits non-zero on
+ * failure.
+ */
+public class LightCarHandlingTest {
+	
+	private static final float STEP = 1 / 60f;
+	
+	//seconds of each input phase
+	private static final float ACCELERATE = 1.5f;
+	private static final float TURN = 1.5f;
+	
+	private static final float MAX_DISTANCE = 1.5f;
+	private static final float MAX_HEADING_DEGREES = 15;
+	private static final float MIN_TURN_DEGREES = 30;
+	
+	public static void main(String[] args) {
+		GdxNativesLoader.load();
+		check(Car.STEER_HARD_LEFT);
+		check(Car.STEER_RIGHT);
+		System.out.println("LightCarHandlingTest passed");
+	}
+	
+	private static void check(int steer) {
+		World carWorld = new World(new Vector2(0, 0), true);
+		World lightWorld = new World(new Vector2(0, 0), true);
+		Car car = new Car(carWorld, 1, 2, new Vector2(0, 0), 0, 60, 15, 25, 100);
+		LightCar light = new LightCar(lightWorld, 1, 2, new Vector2(0, 0), 0, 60, 15, 25, 100);
+		
+		int accelerateTicks = Math.round(ACCELERATE / STEP);
+		int turnTicks = Math.round(TURN / STEP);
+		for (int tick = 0; tick < accelerateTicks + turnTicks; tick++) {
+			int s = tick < accelerateTicks ? Car.STEER_NONE : steer;
+			car.setSteer(s);
+			car.setAccelerate(Car.ACC_ACCELERATE);
+			light.setSteer(s);
+			light.setAccelerate(Car.ACC_ACCELERATE);
+			car.update(STEP);
+			light.update(STEP);
+			carWorld.step(STEP, 3, 3);
+			lightWorld.step(STEP, 3, 3);
+		}
+		
+		Vector2 carPosition = car.body.getPosition();
+		Vector2 lightPosition = light.body.getPosition();
+		float distance = carPosition.dst(lightPosition);
+		float carTurn = car.body.getAngle() * MathUtils.radiansToDegrees;
+		float lightTurn = light.body.getAngle() * MathUtils.radiansToDegrees;
+		String label = "steer " + steer + ": car at " + carPosition + " turned " + carTurn
+				+ ", light car at " + lightPosition + " turned " + lightTurn;
+		
+		if (Math.abs(carTurn) < MIN_TURN_DEGREES)
+			fail(label + ", the reference car hardly turned");
+		if (Math.signum(carTurn) != Math.signum(lightTurn))
+			fail(label + ", they turned opposite ways");
+		if (Math.abs(carTurn - lightTurn) > MAX_HEADING_DEGREES)
+			fail(label + ", headings differ by more than " + MAX_HEADING_DEGREES);
+		if (distance > MAX_DISTANCE)
+			fail(label + ", " + distance + "m apart");
+		System.out.println(label);
+		
+		carWorld.dispose();
+		lightWorld.dispose();
+	}
+	
+	private static void fail(String message) {
+		System.err.println("FAILED " + message);
+		System.exit(1);
+	}
+}